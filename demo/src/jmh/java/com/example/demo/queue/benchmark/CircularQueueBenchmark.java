@@ -0,0 +1,55 @@
+package com.example.demo.queue.benchmark;
+
+import com.example.demo.queue.model.CircularQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CircularQueue读写基准,通过-t调整并发线程数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CircularQueueBenchmark {
+
+    @Param({"30", "1024"})
+    public int capacity;
+
+    private CircularQueue<Long> queue;
+
+    private final Long element = 1L;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queue = new CircularQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            queue.addElementToQueue(element);
+        }
+    }
+
+    /**
+     * 队列已满时的覆盖写入
+     */
+    @Benchmark
+    public void add() {
+        queue.addElementToQueue(element);
+    }
+
+    /**
+     * 先写入再取出一个元素
+     */
+    @Benchmark
+    public Long addRemove() {
+        queue.addElementToQueue(element);
+        return queue.removeElementFromQueue();
+    }
+
+    @Benchmark
+    public Long peek() {
+        return queue.peek();
+    }
+}
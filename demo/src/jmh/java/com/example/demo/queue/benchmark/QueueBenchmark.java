@@ -0,0 +1,72 @@
+package com.example.demo.queue.benchmark;
+
+import com.example.demo.queue.absqueue.Queue;
+import com.example.demo.queue.config.QueueStorageType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Control;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue入队出队基准
+ *
+ * 生产者和消费者都是JMH线程,通过-tg调整比例,如 -tg 4,4
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueBenchmark {
+
+    @Param({"LINKED", "RING_BUFFER"})
+    public QueueStorageType storageType;
+
+    @Param({"1024", "65536"})
+    public int capacity;
+
+    @Param({"16", "1024"})
+    public int payloadSize;
+
+    private BenchQueue queue;
+
+    /**
+     * 不启动消费循环的队列,消息由基准线程取走
+     */
+    static class BenchQueue extends Queue<byte[]> {
+        @Override
+        public void svc() {
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queue = new BenchQueue();
+        queue.setStorageType(storageType);
+        queue.start("jmh-queue", 1, capacity);
+    }
+
+    @Benchmark
+    @Group("putGet")
+    @GroupThreads(1)
+    public int putq(Control control) {
+        byte[] payload = new byte[payloadSize];
+        int result;
+        while ((result = queue.putq(payload)) != 0 && !control.stopMeasurement) {
+            Thread.yield();
+        }
+        return result;
+    }
+
+    @Benchmark
+    @Group("putGet")
+    @GroupThreads(1)
+    public byte[] getq(Control control) {
+        byte[] payload;
+        while ((payload = queue.getq(1)) == null && !control.stopMeasurement) {
+            Thread.yield();
+        }
+        return payload;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.queue.benchmark;
+
+import com.example.demo.queue.model.QueueStatistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QueueStatistics计数开销基准,通过-t调整竞争线程数
+ * atomicLong为对照组
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class QueueStatisticsBenchmark {
+
+    private QueueStatistics statistics;
+
+    private final AtomicLong atomicLong = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        statistics = new QueueStatistics();
+        statistics.setQueueName("jmh-statistics");
+    }
+
+    @Benchmark
+    public void addReceived() {
+        statistics.addReceived(1);
+    }
+
+    @Benchmark
+    public void addHandled() {
+        statistics.addHandled(1);
+    }
+
+    @Benchmark
+    public long atomicLong() {
+        return atomicLong.incrementAndGet();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.queue.benchmark;
+
+import com.example.demo.queue.absqueue.SequenceQueue;
+import com.example.demo.queue.config.QueueStorageType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Control;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SequenceQueue按序号分发基准
+ *
+ * JMH线程作为生产者按随机序号入队,队列自身的工作线程消费,通过-t调整生产者数量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class SequenceQueueBenchmark {
+
+    @Param({"LINKED", "RING_BUFFER", "MPSC_RING"})
+    public QueueStorageType storageType;
+
+    @Param({"4"})
+    public int workers;
+
+    @Param({"1024", "65536"})
+    public int capacity;
+
+    @Param({"16"})
+    public int payloadSize;
+
+    @Param({"1024"})
+    public int keys;
+
+    private BenchSequenceQueue queue;
+
+    /**
+     * 工作线程只取走消息,不做处理
+     */
+    static class BenchSequenceQueue extends SequenceQueue<byte[]> {
+        volatile boolean running = true;
+
+        @Override
+        public void svc() {
+            while (running) {
+                getq(10);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queue = new BenchSequenceQueue();
+        queue.setStorageType(storageType);
+        queue.start("jmh-sequence-queue", workers, capacity);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queue.running = false;
+    }
+
+    @Benchmark
+    public int putq(Control control) {
+        int taskSeq = ThreadLocalRandom.current().nextInt(keys);
+        byte[] payload = new byte[payloadSize];
+        int result;
+        while ((result = queue.putq(taskSeq, payload)) != 0 && !control.stopMeasurement) {
+            Thread.yield();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.queue.benchmark;
+
+import com.example.demo.queue.mgr.TaskSeqMgr;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TaskSeqMgr序号申请基准,通过-t调整竞争线程数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class TaskSeqMgrBenchmark {
+
+    /**
+     * 服务ID数量,为1时所有线程竞争同一个序号
+     */
+    @Param({"1", "64"})
+    public int serviceCount;
+
+    private String[] serviceIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serviceIds = new String[serviceCount];
+        for (int i = 0; i < serviceCount; i++) {
+            serviceIds[i] = "service-" + i;
+        }
+    }
+
+    @Benchmark
+    public int applyTaskSeq() {
+        String serviceId = serviceIds[ThreadLocalRandom.current().nextInt(serviceCount)];
+        return TaskSeqMgr.getInstance().applyTaskSeq(serviceId);
+    }
+}
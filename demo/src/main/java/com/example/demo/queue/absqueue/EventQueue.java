@@ -0,0 +1,278 @@
+package com.example.demo.queue.absqueue;
+
+import com.example.demo.queue.buffer.EventRing;
+import com.example.demo.queue.config.QueueConfig;
+import com.example.demo.queue.config.QueueWorkerMode;
+import com.example.demo.queue.exception.QueueException;
+import com.example.demo.queue.exception.QueueFullException;
+import com.example.demo.queue.exception.QueueTimeoutException;
+import com.example.demo.queue.jfr.QueueEvents;
+import com.example.demo.queue.mgr.QueueMMLMgr;
+import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.QueueStatisticsMgr;
+import com.example.demo.queue.model.QueueStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 预分配事件的队列实现
+ *
+ * 特点:
+ * - start时按容量预先创建全部事件对象,之后只复用,稳定运行时入队出队不分配对象
+ * - 生产者claim一个槽位,在getEvent返回的事件上写入后publish;也可以用putq传入写入函数一次完成
+ * - 工作线程getq取到事件后原地处理,下一次getq时自动释放,也可以处理完后调用release提前释放
+ * - 事件释放前所在槽位不能被再次占用,处理慢时生产者看到的是队列已满
+ *
+ * 事件对象在释放后不会被清空,生产者应写入全部字段,工作线程不应在释放后继续持有事件。
+ */
+@Slf4j
+public abstract class EventQueue<EVENT> implements Queue_I {
+
+    /**
+     * 未持有槽位
+     */
+    private static final long NO_SEQUENCE = -1L;
+
+    // 基本配置
+    private String queueName;
+    private int threadCount = 1;
+    // 工作线程模式,需在start之前设置
+    private QueueWorkerMode workerMode = QueueWorkerMode.PLATFORM;
+
+    // 线程池
+    private Executor threadPoolExecutor;
+    // 预分配事件的环形缓冲区
+    private EventRing<EVENT> ring;
+
+    // 统计信息
+    QueueStatistics stats = new QueueStatistics();
+
+    // 当前工作线程持有的槽位,下一次getq时释放
+    private final ThreadLocal<long[]> takenSequence = ThreadLocal.withInitial(() -> new long[]{NO_SEQUENCE});
+
+    /**
+     * 具体的队列处理逻辑,由子类实现
+     */
+    public abstract void svc();
+
+    /**
+     * 创建一个事件对象,start时为每个槽位调用一次
+     */
+    protected abstract EVENT newEvent();
+
+    /**
+     * 设置工作线程模式,需在start之前调用
+     */
+    public void setWorkerMode(QueueWorkerMode workerMode) {
+        this.workerMode = workerMode == null ? QueueWorkerMode.PLATFORM : workerMode;
+    }
+
+    /**
+     * 按配置启动队列处理器
+     */
+    public void start(String queueName, QueueConfig config) {
+        QueueStatisticsMgr.getInstance().configureInterval(config.getStatisticsInterval());
+        this.stats.setHistorySize(config.getHistorySize());
+        setWorkerMode(config.getWorkerMode());
+        start(queueName, config.getDefaultThreadCount(), config.getDefaultQueueCapacity());
+    }
+
+    /**
+     * 启动队列处理器
+     *
+     * @param queueName 队列名称
+     * @param threadCount 处理线程数
+     * @param queueCapacity 事件槽位数,向上取整为2的幂
+     */
+    public void start(String queueName, int threadCount, int queueCapacity) {
+        this.queueName = queueName;
+        this.stats.setQueueName(queueName);
+        QueueMMLMgr.getInstance().registerQueueMML(queueName, this);
+
+        // 设置默认线程数和队列长度
+        this.threadCount = threadCount <= 0 ? 2 : threadCount;
+        queueCapacity = queueCapacity <= 0 ? 10000 : queueCapacity;
+
+        this.ring = new EventRing<>(queueCapacity, this::newEvent);
+        this.stats.setThreadCount(this.threadCount);
+        this.stats.setMaxQueueSize(this.ring.capacity());
+        this.threadPoolExecutor = this.workerMode.createExecutor(queueName, this.threadCount);
+
+        // 启动工作线程
+        for (int i = 0; i < this.threadCount; i++) {
+            this.threadPoolExecutor.execute(this::svc);
+        }
+
+        this.stats.setQueueInstance(this);
+        this.stats.register();
+    }
+
+    /**
+     * 占用一个空闲槽位,写入getEvent返回的事件后必须调用publish
+     *
+     * @return 槽位序列号,队列已满时返回-1
+     */
+    public long claim() {
+        long sequence = this.ring.tryClaim();
+        if (sequence < 0) {
+            QueueEvents.reject(this.queueName, 0, this.ring.size(), this.ring.capacity(), 0, 1);
+        }
+        return sequence;
+    }
+
+    /**
+     * 占用一个空闲槽位,队列满时最多等待timeoutMillis
+     *
+     * @param timeoutMillis 最长等待时间(毫秒),为0时不等待
+     * @return 槽位序列号
+     * @throws QueueFullException 不等待且队列已满
+     * @throws QueueTimeoutException 等待超时
+     */
+    public long claim(long timeoutMillis) {
+        Object event = QueueEvents.beginEnqueue();
+        long sequence;
+        try {
+            sequence = timeoutMillis <= 0 ? this.ring.tryClaim()
+                    : this.ring.claim(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueueException(String.format("队列[%s]等待空闲槽位被中断", this.queueName), e);
+        }
+        QueueEvents.endEnqueue(event, this.queueName, 0, this.ring.size(), sequence >= 0);
+        if (sequence < 0) {
+            QueueEvents.reject(this.queueName, 0, this.ring.size(), this.ring.capacity(), timeoutMillis, 1);
+            if (timeoutMillis <= 0) {
+                throw new QueueFullException(this.queueName, this.ring.capacity());
+            }
+            throw new QueueTimeoutException(this.queueName, timeoutMillis);
+        }
+        return sequence;
+    }
+
+    /**
+     * 获取已占用槽位上的事件
+     */
+    public EVENT getEvent(long sequence) {
+        return this.ring.get(sequence);
+    }
+
+    /**
+     * 发布已写好的槽位
+     */
+    public void publish(long sequence) {
+        this.ring.publish(sequence);
+        this.stats.getReceivedMessageCount().increment();
+    }
+
+    /**
+     * 占用槽位、写入事件并发布
+     * 写入函数不捕获外部变量时不分配对象,需要的数据通过arg传入
+     *
+     * @param translator 写入函数
+     * @param arg 写入函数的参数
+     * @return 成功返回0,队列已满返回-1
+     */
+    public <A> int putq(BiConsumer<? super EVENT, ? super A> translator, A arg) {
+        long sequence = this.ring.tryClaim();
+        if (sequence < 0) {
+            log.error("添加消息到队列失败, 队列名称[{}], 当前大小[{}]", this.queueName, this.ring.size());
+            QueueEvents.reject(this.queueName, 0, this.ring.size(), this.ring.capacity(), 0, 1);
+            return -1;
+        }
+        try {
+            translator.accept(this.ring.get(sequence), arg);
+        } finally {
+            // 占用的槽位必须发布,否则后面的槽位都无法被消费
+            publish(sequence);
+        }
+        return 0;
+    }
+
+    /**
+     * 释放当前工作线程上一次取到的事件,再取下一个事件(阻塞)
+     */
+    public EVENT getq() {
+        release();
+        this.stats.markIdle();
+        Object event = QueueEvents.beginDequeue();
+        try {
+            long sequence = this.ring.take();
+            QueueEvents.endDequeue(event, this.queueName, 0, 1);
+            return taken(sequence);
+        } catch (InterruptedException e) {
+            log.error("获取队列消息异常", e);
+            return null;
+        }
+    }
+
+    /**
+     * 释放当前工作线程上一次取到的事件,再取下一个事件(超时)
+     */
+    public EVENT getq(long milliSeconds) {
+        release();
+        this.stats.markIdle();
+        Object event = QueueEvents.beginDequeue();
+        try {
+            long sequence = this.ring.take(milliSeconds, TimeUnit.MILLISECONDS);
+            QueueEvents.endDequeue(event, this.queueName, 0, sequence < 0 ? 0 : 1);
+            return sequence < 0 ? null : taken(sequence);
+        } catch (InterruptedException e) {
+            log.error("获取队列消息异常", e);
+            return null;
+        }
+    }
+
+    private EVENT taken(long sequence) {
+        this.takenSequence.get()[0] = sequence;
+        this.stats.getProcessedMessageCount().increment();
+        this.stats.markBusy();
+        return this.ring.get(sequence);
+    }
+
+    /**
+     * 释放当前工作线程取到的事件,处理完后需要立即让出槽位时调用
+     */
+    public void release() {
+        long[] taken = this.takenSequence.get();
+        if (taken[0] != NO_SEQUENCE) {
+            this.ring.release(taken[0]);
+            taken[0] = NO_SEQUENCE;
+        }
+    }
+
+    public String getqName() {
+        return queueName;
+    }
+
+    /**
+     * 获取待处理事件数
+     */
+    public int getQueueSize() {
+        return this.ring.size();
+    }
+
+    /**
+     * 检查队列是否可以继续添加消息
+     * 当使用率超过80%时返回false
+     */
+    public boolean isCanPut() {
+        return this.ring != null && (double) this.ring.size() / this.ring.capacity() <= 0.8;
+    }
+
+    @Override
+    public List<QueueStatus> getQueueStatus() {
+        List<QueueStatus> status = new ArrayList<>();
+        QueueStatus queueStatus = new QueueStatus();
+        queueStatus.setQueueIndex(1);
+        queueStatus.setProcessedCount(this.stats.getProcessedMessageCount().sum());
+        queueStatus.setPendingCount(this.ring.size());
+        queueStatus.setCapacity(this.ring.capacity());
+        status.add(queueStatus);
+        return status;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo.queue.absqueue;
+
+import com.example.demo.queue.buffer.IntRing;
+import com.example.demo.queue.jfr.QueueEvents;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * int值的多线程队列实现
+ *
+ * 特点:
+ * - 元素保存在int数组环形队列中,入队出队不装箱,不分配节点对象
+ * - 所有工作线程共同消费一个队列,与Queue相同
+ * - 统计信息和getQueueStatus与Queue一致
+ */
+public abstract class IntQueue extends PrimitiveQueueSupport<IntRing> {
+
+    @Override
+    protected IntRing createRing(int capacity) {
+        return new IntRing(capacity);
+    }
+
+    @Override
+    protected IntRing[] newLanes(int threadCount) {
+        return new IntRing[1];
+    }
+
+    /**
+     * 添加消息到队列
+     *
+     * @return 成功返回0,队列已满返回-1
+     */
+    public int putq(int value) {
+        Object event = QueueEvents.beginEnqueue();
+        boolean accepted = this.lanes[0].offer(value);
+        enqueued(event, 0, accepted);
+        if (!accepted) {
+            return rejected(0);
+        }
+        received();
+        return 0;
+    }
+
+    /**
+     * 添加消息到队列,队列满时最多等待timeoutMillis
+     *
+     * @param value 消息
+     * @param timeoutMillis 最长等待时间(毫秒),为0时不等待
+     * @throws com.example.demo.queue.exception.QueueFullException 不等待且队列已满
+     * @throws com.example.demo.queue.exception.QueueTimeoutException 等待超时
+     */
+    public int putq(int value, long timeoutMillis) {
+        Object event = QueueEvents.beginEnqueue();
+        boolean accepted;
+        try {
+            accepted = timeoutMillis <= 0 ? this.lanes[0].offer(value)
+                    : this.lanes[0].offer(value, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+        enqueued(event, 0, accepted);
+        if (!accepted) {
+            throw rejected(0, timeoutMillis);
+        }
+        received();
+        return 0;
+    }
+
+    /**
+     * 获取消息,队列为空时一直等待
+     *
+     * @throws com.example.demo.queue.exception.QueueException 等待被中断
+     */
+    public int getq() {
+        Object event = idle();
+        try {
+            int value = this.lanes[0].take();
+            processed(0, event);
+            return value;
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    /**
+     * 获取消息,队列为空时最多等待milliSeconds
+     * 超时和取到等于emptyValue的消息都返回emptyValue,消息可能取任意值时使用tryGetq
+     *
+     * @param emptyValue 超时返回的值,应选择不会作为消息的值
+     */
+    public int getq(long milliSeconds, int emptyValue) {
+        Object event = idle();
+        long sequence = take(0, milliSeconds);
+        if (sequence < 0) {
+            empty(0, event);
+            return emptyValue;
+        }
+        int value = this.lanes[0].read(sequence);
+        processed(0, event);
+        return value;
+    }
+
+    /**
+     * 获取消息,队列为空时最多等待milliSeconds
+     * 取到消息时先计入处理数再交给action,超时返回false,可以区分空队列和任意取值的消息
+     *
+     * @param action 处理取到的消息,在当前线程中调用
+     * @return 取到消息时返回true
+     */
+    public boolean tryGetq(long milliSeconds, IntConsumer action) {
+        Object event = idle();
+        long sequence = take(0, milliSeconds);
+        if (sequence < 0) {
+            empty(0, event);
+            return false;
+        }
+        int value = this.lanes[0].read(sequence);
+        processed(0, event);
+        action.accept(value);
+        return true;
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.demo.queue.absqueue;
+
+import com.example.demo.queue.buffer.WaitSignal;
+import com.example.demo.queue.config.QueueConfig;
+import com.example.demo.queue.config.QueueWorkerMode;
+import com.example.demo.queue.jfr.QueueEvents;
+import com.example.demo.queue.mgr.QueueMMLMgr;
+import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.QueueStatisticsMgr;
+import com.example.demo.queue.model.QueueStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按键顺序执行的队列实现
+ *
+ * 特点:
+ * - 每个任务序号对应一个轻量级邮箱,同一序号的消息按入队顺序处理
+ * - 有消息的邮箱挂到序号对应工作线程的运行队列上
+ * - 工作线程从运行队列头部取邮箱,空闲线程从其他线程运行队列尾部整体窃取邮箱
+ * - 一个邮箱同一时间只被一个工作线程持有,窃取的是整个邮箱而不是单条消息,不会打乱同一序号的顺序
+ * - 工作线程在下一次getq时才释放上一条消息所在的邮箱
+ *
+ * 与SequenceQueue相比,热点序号或处理慢的序号不会阻塞哈希到同一线程的其他序号。
+ */
+@Slf4j
+public abstract class KeyedSequenceQueue<MESSAGE_BLOCK> implements Queue_I {
+
+    /**
+     * 连续处理同一个邮箱的消息数上限,超过后运行队列中有其他邮箱时让出
+     */
+    private static final int MAILBOX_QUANTUM = 64;
+
+    // 基本配置
+    private String queueName;
+    private int threadCount = 1;
+    private int queueCapacity;
+    // 工作线程模式,需在start之前设置
+    private QueueWorkerMode workerMode = QueueWorkerMode.PLATFORM;
+
+    // 线程池相关
+    private Executor threadPoolExecutor;
+    private final AtomicInteger workerIndex = new AtomicInteger(0);
+
+    // 序号 -> 邮箱,邮箱处理空后移除
+    private final ConcurrentHashMap<Integer, Mailbox<MESSAGE_BLOCK>> mailboxes = new ConcurrentHashMap<>();
+    // 每个工作线程的运行队列,本线程从头部取,其他线程从尾部窃取
+    private ConcurrentLinkedDeque<Mailbox<MESSAGE_BLOCK>>[] runQueues;
+    // 空闲工作线程等待通知
+    private final WaitSignal workAvailable = new WaitSignal();
+    // 所有邮箱中未处理的消息数
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+
+    // 统计信息
+    QueueStatistics stats = new QueueStatistics();
+    private LongAdder[] workerMessageCounters;
+    private LongAdder[] workerStealCounters;
+
+    // 线程本地的工作线程状态
+    private final ThreadLocal<Worker<MESSAGE_BLOCK>> worker = ThreadLocal.withInitial(
+            () -> new Worker<>(workerIndex.getAndIncrement() % threadCount));
+
+    /**
+     * 每个序号的消息邮箱
+     */
+    private static final class Mailbox<M> {
+        private final int key;
+        private final ArrayDeque<M> messages = new ArrayDeque<>();
+        // 是否在某个运行队列上或被某个工作线程持有
+        private boolean scheduled;
+        // 已从邮箱表移除,生产者需重新获取
+        private boolean dead;
+
+        private Mailbox(int key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 工作线程状态
+     */
+    private static final class Worker<M> {
+        private final int index;
+        // 当前持有的邮箱
+        private Mailbox<M> current;
+        // 从当前邮箱连续取出的消息数
+        private int runLength;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * 具体的队列处理逻辑,由子类实现
+     */
+    public abstract void svc();
+
+    /**
+     * 设置工作线程模式,需在start之前调用
+     */
+    public void setWorkerMode(QueueWorkerMode workerMode) {
+        this.workerMode = workerMode == null ? QueueWorkerMode.PLATFORM : workerMode;
+    }
+
+    /**
+     * 按配置启动队列处理器
+     */
+    public void start(String queueName, QueueConfig config) {
+        QueueStatisticsMgr.getInstance().configureInterval(config.getStatisticsInterval());
+        this.stats.setHistorySize(config.getHistorySize());
+        setWorkerMode(config.getWorkerMode());
+        start(queueName, config.getDefaultThreadCount(), config.getDefaultQueueCapacity());
+    }
+
+    /**
+     * 启动队列处理器
+     *
+     * @param queueName 队列名称
+     * @param threadCount 处理线程数
+     * @param queueCapacity 所有序号未处理消息总数上限
+     */
+    @SuppressWarnings("unchecked")
+    public void start(String queueName, int threadCount, int queueCapacity) {
+        this.queueName = queueName;
+        this.stats.setQueueName(queueName);
+        QueueMMLMgr.getInstance().registerQueueMML(queueName, this);
+
+        // 设置默认线程数和队列长度
+        this.threadCount = threadCount <= 0 ? 2 : threadCount;
+        this.queueCapacity = queueCapacity <= 0 ? 10000 : queueCapacity;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ConcurrentLinkedDeque<Mailbox<MESSAGE_BLOCK>>[] runQueues = new ConcurrentLinkedDeque[this.threadCount];
+        this.runQueues = runQueues;
+        this.workerMessageCounters = new LongAdder[this.threadCount];
+        this.workerStealCounters = new LongAdder[this.threadCount];
+        for (int i = 0; i < this.threadCount; i++) {
+            this.runQueues[i] = new ConcurrentLinkedDeque<>();
+            this.workerMessageCounters[i] = new LongAdder();
+            this.workerStealCounters[i] = new LongAdder();
+        }
+        this.stats.setThreadCount(this.threadCount);
+        this.stats.setMaxQueueSize(this.queueCapacity);
+        this.threadPoolExecutor = this.workerMode.createExecutor(queueName, this.threadCount);
+
+        // 启动工作线程
+        for (int i = 0; i < this.threadCount; i++) {
+            this.threadPoolExecutor.execute(this::runWorker);
+        }
+
+        this.stats.setQueueInstance(this);
+        this.stats.register();
+    }
+
+    /**
+     * 运行svc,svc异常退出时释放当前持有的邮箱
+     */
+    private void runWorker() {
+        try {
+            svc();
+        } finally {
+            releaseCurrent();
+        }
+    }
+
+    /**
+     * 把当前工作线程持有的邮箱放回运行队列,由其他工作线程窃取继续处理,
+     * 否则邮箱一直处于已调度状态,该序号之后的消息都不会再被处理
+     */
+    private void releaseCurrent() {
+        Worker<MESSAGE_BLOCK> self = this.worker.get();
+        Mailbox<MESSAGE_BLOCK> mailbox = self.current;
+        if (mailbox == null) {
+            return;
+        }
+        self.current = null;
+        self.runLength = 0;
+        log.error("队列[{}]工作线程异常退出, 序号[{}]的邮箱交给其他工作线程", this.queueName, mailbox.key);
+        this.runQueues[self.index].addLast(mailbox);
+        this.workAvailable.signalIfWaiting();
+    }
+
+    /**
+     * 添加消息到指定序号的邮箱
+     */
+    public int putq(int taskSeq, MESSAGE_BLOCK messageBlock) {
+        if (messageBlock == null) {
+            throw new NullPointerException();
+        }
+        if (this.pendingCount.incrementAndGet() > this.queueCapacity) {
+            this.pendingCount.decrementAndGet();
+            log.error("添加消息到队列失败, 队列名称[{}], 当前大小[{}]", this.queueName, this.pendingCount.get());
+            QueueEvents.reject(this.queueName, Math.abs(taskSeq % this.threadCount), this.pendingCount.get(),
+                    this.queueCapacity, 0, 1);
+            return -1;
+        }
+
+        Mailbox<MESSAGE_BLOCK> mailbox;
+        boolean schedule;
+        while (true) {
+            mailbox = this.mailboxes.computeIfAbsent(taskSeq, Mailbox::new);
+            synchronized (mailbox) {
+                if (mailbox.dead) {
+                    continue;
+                }
+                mailbox.messages.add(messageBlock);
+                schedule = !mailbox.scheduled;
+                mailbox.scheduled = true;
+            }
+            break;
+        }
+        if (schedule) {
+            this.runQueues[Math.abs(taskSeq % this.threadCount)].addLast(mailbox);
+            this.workAvailable.signalIfWaiting();
+        }
+        this.stats.getReceivedMessageCount().increment();
+        return 0;
+    }
+
+    public int putq(long taskSeq, MESSAGE_BLOCK messageBlock) {
+        return putq((int) taskSeq, messageBlock);
+    }
+
+    /**
+     * 获取下一条消息,同时释放上一条消息所在的邮箱
+     */
+    public MESSAGE_BLOCK getq() {
+        try {
+            return take(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            log.error("获取队列消息异常", e);
+            return null;
+        }
+    }
+
+    /**
+     * 获取下一条消息(超时)
+     */
+    public MESSAGE_BLOCK getq(long milliSeconds) {
+        try {
+            return take(TimeUnit.MILLISECONDS.toNanos(milliSeconds));
+        } catch (InterruptedException e) {
+            log.error("获取队列消息异常", e);
+            return null;
+        }
+    }
+
+    private MESSAGE_BLOCK take(long nanos) throws InterruptedException {
+        Worker<MESSAGE_BLOCK> self = this.worker.get();
+        this.stats.markIdle();
+        Object event = QueueEvents.beginDequeue();
+        while (true) {
+            MESSAGE_BLOCK message = pollCurrent(self);
+            if (message != null) {
+                this.pendingCount.decrementAndGet();
+                this.stats.getProcessedMessageCount().increment();
+                this.workerMessageCounters[self.index].increment();
+                this.stats.markBusy();
+                QueueEvents.endDequeue(event, this.queueName, self.index, 1);
+                return message;
+            }
+            Mailbox<MESSAGE_BLOCK> next = this.runQueues[self.index].pollFirst();
+            if (next == null) {
+                next = steal(self);
+            }
+            if (next != null) {
+                self.current = next;
+                self.runLength = 0;
+                continue;
+            }
+            if (nanos <= 0) {
+                QueueEvents.endDequeue(event, this.queueName, self.index, 0);
+                return null;
+            }
+            nanos = this.workAvailable.await(this::hasRunnableMailbox, nanos);
+        }
+    }
+
+    /**
+     * 从当前持有的邮箱取消息,邮箱处理空时释放,连续处理过多时让出
+     */
+    private MESSAGE_BLOCK pollCurrent(Worker<MESSAGE_BLOCK> self) {
+        Mailbox<MESSAGE_BLOCK> mailbox = self.current;
+        if (mailbox == null) {
+            return null;
+        }
+        if (self.runLength >= MAILBOX_QUANTUM && !this.runQueues[self.index].isEmpty()) {
+            self.current = null;
+            this.runQueues[self.index].addLast(mailbox);
+            this.workAvailable.signalIfWaiting();
+            return null;
+        }
+        MESSAGE_BLOCK message;
+        synchronized (mailbox) {
+            message = mailbox.messages.poll();
+            if (message == null) {
+                mailbox.scheduled = false;
+                mailbox.dead = true;
+                this.mailboxes.remove(mailbox.key, mailbox);
+            }
+        }
+        if (message == null) {
+            self.current = null;
+        } else {
+            self.runLength++;
+        }
+        return message;
+    }
+
+    /**
+     * 从其他工作线程运行队列尾部窃取一个邮箱
+     */
+    private Mailbox<MESSAGE_BLOCK> steal(Worker<MESSAGE_BLOCK> self) {
+        int start = ThreadLocalRandom.current().nextInt(this.threadCount);
+        for (int i = 0; i < this.threadCount; i++) {
+            int victim = (start + i) % this.threadCount;
+            if (victim == self.index) {
+                continue;
+            }
+            Mailbox<MESSAGE_BLOCK> mailbox = this.runQueues[victim].pollLast();
+            if (mailbox != null) {
+                this.workerStealCounters[self.index].increment();
+                return mailbox;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasRunnableMailbox() {
+        for (ConcurrentLinkedDeque<Mailbox<MESSAGE_BLOCK>> runQueue : this.runQueues) {
+            if (!runQueue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取所有序号未处理的消息数
+     */
+    public int getQueueSize() {
+        return this.pendingCount.get();
+    }
+
+    /**
+     * 获取有未处理消息的序号数
+     */
+    public int getMailboxCount() {
+        return this.mailboxes.size();
+    }
+
+    public String getqName() {
+        return queueName;
+    }
+
+    /**
+     * 检查队列是否可以继续添加消息
+     * 当未处理消息数超过容量80%时返回false
+     */
+    public boolean isCanPut() {
+        return (double) this.pendingCount.get() / this.queueCapacity <= 0.8;
+    }
+
+    /**
+     * 每个工作线程一条状态,未处理数为运行队列上等待的邮箱数
+     */
+    @Override
+    public List<QueueStatus> getQueueStatus() {
+        List<QueueStatus> status = new ArrayList<>();
+        for (int i = 0; i < this.threadCount; i++) {
+            QueueStatus queueStatus = new QueueStatus();
+            queueStatus.setQueueIndex(i + 1);
+            queueStatus.setProcessedCount(this.workerMessageCounters[i].sum());
+            queueStatus.setPendingCount(this.runQueues[i].size());
+            queueStatus.setCapacity(this.queueCapacity);
+            queueStatus.setStolenCount(this.workerStealCounters[i].sum());
+            status.add(queueStatus);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.demo.queue.absqueue;
+
+import com.example.demo.queue.buffer.LongRing;
+import com.example.demo.queue.jfr.QueueEvents;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * long值的顺序队列实现
+ *
+ * 特点:
+ * - 每个工作线程对应一个long数组环形队列,入队出队不装箱,不分配节点对象
+ * - 按任务序号取模选择线程队列,同一序号的消息按入队顺序处理
+ * - 统计信息和getQueueStatus与SequenceQueue一致
+ */
+public abstract class LongSequenceQueue extends PrimitiveQueueSupport<LongRing> {
+
+    @Override
+    protected LongRing createRing(int capacity) {
+        return new LongRing(capacity);
+    }
+
+    @Override
+    protected LongRing[] newLanes(int threadCount) {
+        return new LongRing[threadCount];
+    }
+
+    /**
+     * 添加消息到指定序号的队列
+     *
+     * @return 成功返回0,队列已满返回-1
+     */
+    public int putq(int taskSeq, long value) {
+        int index = laneOf(taskSeq);
+        Object event = QueueEvents.beginEnqueue();
+        boolean accepted = this.lanes[index].offer(value);
+        enqueued(event, index, accepted);
+        if (!accepted) {
+            return rejected(index);
+        }
+        received();
+        return 0;
+    }
+
+    /**
+     * 添加消息到指定序号的队列,队列满时最多等待timeoutMillis
+     *
+     * @param taskSeq 任务序号
+     * @param value 消息
+     * @param timeoutMillis 最长等待时间(毫秒),为0时不等待
+     * @throws com.example.demo.queue.exception.QueueFullException 不等待且队列已满
+     * @throws com.example.demo.queue.exception.QueueTimeoutException 等待超时
+     */
+    public int putq(int taskSeq, long value, long timeoutMillis) {
+        int index = laneOf(taskSeq);
+        Object event = QueueEvents.beginEnqueue();
+        boolean accepted;
+        try {
+            accepted = timeoutMillis <= 0 ? this.lanes[index].offer(value)
+                    : this.lanes[index].offer(value, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+        enqueued(event, index, accepted);
+        if (!accepted) {
+            throw rejected(index, timeoutMillis);
+        }
+        received();
+        return 0;
+    }
+
+    /**
+     * 从当前线程对应的队列获取消息,队列为空时一直等待
+     *
+     * @throws com.example.demo.queue.exception.QueueException 等待被中断
+     */
+    public long getq() {
+        int index = currentLaneIndex();
+        Object event = idle();
+        try {
+            long value = this.lanes[index].take();
+            processed(index, event);
+            return value;
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    /**
+     * 从当前线程对应的队列获取消息,队列为空时最多等待milliSeconds
+     * 超时和取到等于emptyValue的消息都返回emptyValue,消息可能取任意值时使用tryGetq
+     *
+     * @param emptyValue 超时返回的值,应选择不会作为消息的值
+     */
+    public long getq(long milliSeconds, long emptyValue) {
+        int index = currentLaneIndex();
+        Object event = idle();
+        long sequence = take(index, milliSeconds);
+        if (sequence < 0) {
+            empty(index, event);
+            return emptyValue;
+        }
+        long value = this.lanes[index].read(sequence);
+        processed(index, event);
+        return value;
+    }
+
+    /**
+     * 从当前线程对应的队列获取消息,队列为空时最多等待milliSeconds
+     * 取到消息时先计入处理数再交给action,超时返回false,可以区分空队列和任意取值的消息
+     *
+     * @param action 处理取到的消息,在当前线程中调用
+     * @return 取到消息时返回true
+     */
+    public boolean tryGetq(long milliSeconds, LongConsumer action) {
+        int index = currentLaneIndex();
+        Object event = idle();
+        long sequence = take(index, milliSeconds);
+        if (sequence < 0) {
+            empty(index, event);
+            return false;
+        }
+        long value = this.lanes[index].read(sequence);
+        processed(index, event);
+        action.accept(value);
+        return true;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.queue.absqueue;
+
+/**
+ * 可在运行中调整的队列
+ * 由JMX等管理接口调用,不在消息处理路径上使用
+ */
+public interface ManageableQueue extends Queue_I {
+
+    /**
+     * 调整工作线程数
+     *
+     * @param threadCount 目标工作线程数
+     * @return 是否已开始调整,当前模式不支持或上一次调整未完成时返回false
+     */
+    boolean resize(int threadCount);
+
+    /**
+     * 暂停消费,工作线程在下一次getq时等待恢复,入队不受影响
+     */
+    void pause();
+
+    /**
+     * 恢复消费
+     */
+    void resume();
+
+    /**
+     * 是否已暂停消费
+     */
+    boolean isPaused();
+}
@@ -0,0 +1,65 @@
+package com.example.demo.queue.absqueue;
+
+import com.example.demo.queue.buffer.WaitSignal;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 工作线程暂停开关
+ *
+ * 未暂停时getq只读取一次volatile标志;暂停后工作线程在取消息前等待恢复,
+ * 已取出的消息照常处理,生产者不受影响,积压由队列容量和水位控制。
+ */
+@Slf4j
+class PauseGate {
+
+    private final WaitSignal resumed = new WaitSignal();
+    private volatile boolean paused;
+
+    void pause() {
+        this.paused = true;
+    }
+
+    void resume() {
+        this.paused = false;
+        this.resumed.signalAllIfWaiting();
+    }
+
+    boolean isPaused() {
+        return this.paused;
+    }
+
+    /**
+     * 暂停时一直等待恢复
+     *
+     * @return 是否已恢复,等待被中断时返回false
+     */
+    boolean awaitResumed() {
+        if (!this.paused) {
+            return true;
+        }
+        try {
+            this.resumed.await(() -> !this.paused);
+            return true;
+        } catch (InterruptedException e) {
+            log.error("等待队列恢复被中断", e);
+            return false;
+        }
+    }
+
+    /**
+     * 暂停时最多等待nanos
+     *
+     * @return 剩余等待时间,仍处于暂停状态时调用方应放弃本次获取
+     */
+    long awaitResumed(long nanos) {
+        if (!this.paused) {
+            return nanos;
+        }
+        try {
+            return this.resumed.await(() -> !this.paused, nanos);
+        } catch (InterruptedException e) {
+            log.error("等待队列恢复被中断", e);
+            return 0;
+        }
+    }
+}
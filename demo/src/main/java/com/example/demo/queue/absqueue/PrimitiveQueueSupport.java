@@ -0,0 +1,272 @@
+package com.example.demo.queue.absqueue;
+
+import com.example.demo.queue.buffer.SequencedRing;
+import com.example.demo.queue.config.QueueConfig;
+import com.example.demo.queue.config.QueueWorkerMode;
+import com.example.demo.queue.exception.QueueException;
+import com.example.demo.queue.exception.QueueFullException;
+import com.example.demo.queue.exception.QueueTimeoutException;
+import com.example.demo.queue.jfr.QueueEvents;
+import com.example.demo.queue.mgr.QueueMMLMgr;
+import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.QueueStatisticsMgr;
+import com.example.demo.queue.model.QueueStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基本类型队列的公共部分
+ *
+ * 管理线程队列、工作线程和统计信息,入队出队由子类按元素类型实现。
+ * 只有一个线程队列时所有工作线程共同消费;有多个线程队列时每个工作线程消费一个线程队列。
+ */
+@Slf4j
+abstract class PrimitiveQueueSupport<RING extends SequencedRing> implements Queue_I {
+
+    // 基本配置
+    private String queueName;
+    protected int threadCount = 1;
+    // 工作线程模式,需在start之前设置
+    private QueueWorkerMode workerMode = QueueWorkerMode.PLATFORM;
+
+    // 线程池相关
+    private Executor threadPoolExecutor;
+    private final AtomicInteger laneAssignIndex = new AtomicInteger(0);
+    // 线程队列
+    protected RING[] lanes;
+
+    // 统计信息
+    QueueStatistics stats = new QueueStatistics();
+    private LongAdder[] laneProcessedCounters;
+
+    // 线程本地的线程队列序号,工作线程启动时绑定
+    private final ThreadLocal<Integer> laneIndex = ThreadLocal.withInitial(
+            () -> laneAssignIndex.getAndIncrement() % lanes.length);
+
+    /**
+     * 具体的队列处理逻辑,由子类实现
+     */
+    public abstract void svc();
+
+    /**
+     * 创建一个线程队列
+     */
+    protected abstract RING createRing(int capacity);
+
+    /**
+     * 按线程数创建线程队列数组,数组长度即线程队列数
+     */
+    protected abstract RING[] newLanes(int threadCount);
+
+    /**
+     * 设置工作线程模式,需在start之前调用
+     */
+    public void setWorkerMode(QueueWorkerMode workerMode) {
+        this.workerMode = workerMode == null ? QueueWorkerMode.PLATFORM : workerMode;
+    }
+
+    /**
+     * 按配置启动队列处理器
+     */
+    public void start(String queueName, QueueConfig config) {
+        QueueStatisticsMgr.getInstance().configureInterval(config.getStatisticsInterval());
+        this.stats.setHistorySize(config.getHistorySize());
+        setWorkerMode(config.getWorkerMode());
+        start(queueName, config.getDefaultThreadCount(), config.getDefaultQueueCapacity());
+    }
+
+    /**
+     * 启动队列处理器
+     *
+     * @param queueName 队列名称
+     * @param threadCount 处理线程数
+     * @param queueCapacity 每个线程队列的容量,向上取整为2的幂
+     */
+    public void start(String queueName, int threadCount, int queueCapacity) {
+        this.queueName = queueName;
+        this.stats.setQueueName(queueName);
+        QueueMMLMgr.getInstance().registerQueueMML(queueName, this);
+
+        // 设置默认线程数和队列长度
+        this.threadCount = threadCount <= 0 ? 2 : threadCount;
+        queueCapacity = queueCapacity <= 0 ? 10000 : queueCapacity;
+
+        this.lanes = newLanes(this.threadCount);
+        int count = this.lanes.length;
+        this.laneProcessedCounters = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            this.lanes[i] = createRing(queueCapacity);
+            this.laneProcessedCounters[i] = new LongAdder();
+        }
+        this.stats.setThreadCount(this.threadCount);
+        this.stats.setMaxQueueSize(this.lanes[0].capacity());
+        this.threadPoolExecutor = this.workerMode.createExecutor(queueName, this.threadCount);
+
+        // 启动工作线程,按序号绑定线程队列
+        for (int i = 0; i < this.threadCount; i++) {
+            int lane = i % count;
+            this.threadPoolExecutor.execute(() -> {
+                this.laneIndex.set(lane);
+                svc();
+            });
+        }
+
+        this.stats.setQueueInstance(this);
+        this.stats.register();
+    }
+
+    /**
+     * 任务序号对应的线程队列序号
+     */
+    protected int laneOf(int taskSeq) {
+        return Math.abs(taskSeq % this.lanes.length);
+    }
+
+    /**
+     * 当前线程消费的线程队列序号
+     */
+    protected int currentLaneIndex() {
+        return this.laneIndex.get();
+    }
+
+    /**
+     * 记录一条入队的消息
+     */
+    protected void received() {
+        this.stats.getReceivedMessageCount().increment();
+    }
+
+    /**
+     * 等待入队结束,等待时间超过阈值时记录Enqueue事件
+     *
+     * @param event QueueEvents.beginEnqueue返回的对象
+     */
+    protected void enqueued(Object event, int lane, boolean accepted) {
+        QueueEvents.endEnqueue(event, this.queueName, lane, this.lanes[lane].size(), accepted);
+    }
+
+    /**
+     * 工作线程回到getq,累计上一条消息的处理时间并开始计时等待
+     *
+     * @return 传给processed或empty的出队事件
+     */
+    protected Object idle() {
+        this.stats.markIdle();
+        return QueueEvents.beginDequeue();
+    }
+
+    /**
+     * 记录一条从线程队列取出的消息
+     */
+    protected void processed(int lane, Object event) {
+        this.stats.getProcessedMessageCount().increment();
+        this.laneProcessedCounters[lane].increment();
+        this.stats.markBusy();
+        QueueEvents.endDequeue(event, this.queueName, lane, 1);
+    }
+
+    /**
+     * 占用线程队列中一条消息的槽位,由子类读取并释放
+     *
+     * @return 槽位序列号,超时返回-1
+     * @throws QueueException 等待被中断
+     */
+    protected long take(int lane, long milliSeconds) {
+        try {
+            return this.lanes[lane].takeSequence(milliSeconds, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    /**
+     * 等待超时未取到消息
+     */
+    protected void empty(int lane, Object event) {
+        QueueEvents.endDequeue(event, this.queueName, lane, 0);
+    }
+
+    /**
+     * 入队失败时记录日志
+     *
+     * @return -1
+     */
+    protected int rejected(int lane) {
+        log.error("添加消息到队列失败, 队列名称[{}], 当前大小[{}]", this.queueName, this.lanes[lane].size());
+        QueueEvents.reject(this.queueName, lane, this.lanes[lane].size(), this.lanes[lane].capacity(), 0, 1);
+        return -1;
+    }
+
+    /**
+     * 等待入队失败时抛出的异常
+     *
+     * @param timeoutMillis 最长等待时间(毫秒),为0时表示未等待
+     */
+    protected QueueException rejected(int lane, long timeoutMillis) {
+        QueueEvents.reject(this.queueName, lane, this.lanes[lane].size(), this.lanes[lane].capacity(),
+                timeoutMillis, 1);
+        if (timeoutMillis <= 0) {
+            return new QueueFullException(this.queueName, this.lanes[lane].capacity());
+        }
+        return new QueueTimeoutException(this.queueName, timeoutMillis);
+    }
+
+    /**
+     * 等待被中断时抛出的异常,同时恢复中断标志
+     */
+    protected QueueException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new QueueException(String.format("队列[%s]等待被中断", this.queueName), e);
+    }
+
+    public String getqName() {
+        return queueName;
+    }
+
+    /**
+     * 获取所有线程队列中的消息数
+     */
+    public int getQueueSize() {
+        int size = 0;
+        for (RING lane : this.lanes) {
+            size += lane.size();
+        }
+        return size;
+    }
+
+    /**
+     * 检查队列是否可以继续添加消息
+     * 当任一线程队列使用率超过80%时返回false
+     */
+    public boolean isCanPut() {
+        if (this.lanes == null) {
+            return false;
+        }
+        for (RING lane : this.lanes) {
+            if ((double) lane.size() / lane.capacity() > 0.8) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public List<QueueStatus> getQueueStatus() {
+        List<QueueStatus> status = new ArrayList<>();
+        for (int i = 0; i < this.lanes.length; i++) {
+            QueueStatus queueStatus = new QueueStatus();
+            queueStatus.setQueueIndex(i + 1);
+            queueStatus.setProcessedCount(this.laneProcessedCounters[i].sum());
+            queueStatus.setPendingCount(this.lanes[i].size());
+            queueStatus.setCapacity(this.lanes[i].capacity());
+            status.add(queueStatus);
+        }
+        return status;
+    }
+}
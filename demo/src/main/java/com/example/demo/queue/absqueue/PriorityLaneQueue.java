@@ -0,0 +1,394 @@
+package com.example.demo.queue.absqueue;
+
+import com.example.demo.queue.buffer.TimedBlockingQueue;
+import com.example.demo.queue.buffer.WaitSignal;
+import com.example.demo.queue.config.QueueConfig;
+import com.example.demo.queue.config.QueueStorageType;
+import com.example.demo.queue.config.QueueWorkerMode;
+import com.example.demo.queue.exception.QueueException;
+import com.example.demo.queue.exception.QueueFullException;
+import com.example.demo.queue.exception.QueueTimeoutException;
+import com.example.demo.queue.jfr.QueueEvents;
+import com.example.demo.queue.mgr.QueueMMLMgr;
+import com.example.demo.queue.model.LatencyHistogram;
+import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.QueueStatisticsMgr;
+import com.example.demo.queue.model.QueueStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多优先级通道队列实现
+ *
+ * 特点:
+ * - 固定数量的优先级通道,通道0优先级最高,入队时按优先级直接选择通道
+ * - 所有工作线程共享全部通道,按权重轮询取消息: 每轮在一个通道上最多连续取weight条再换下一个通道,空通道直接跳过
+ * - 高优先级通道在饱和时获得weight占比的处理能力,低优先级通道不会饿死
+ * - 按通道报告积压、处理量和延迟分布
+ */
+@Slf4j
+public abstract class PriorityLaneQueue<MESSAGE_BLOCK> implements Queue_I {
+
+    /**
+     * 默认通道权重: 高、中、低三个通道
+     */
+    private static final int[] DEFAULT_LANE_WEIGHTS = {8, 2, 1};
+
+    // 基本配置
+    private String queueName;
+    private int laneCapacity;
+    // 每个通道的权重,数组长度即通道数,需在start之前设置
+    private int[] laneWeights = DEFAULT_LANE_WEIGHTS;
+    // 存储类型,需在start之前设置
+    private QueueStorageType storageType = QueueStorageType.LINKED;
+    // 是否统计排队时间和处理时间,需在start之前设置
+    private boolean latencyTracking = false;
+    // 工作线程模式,需在start之前设置
+    private QueueWorkerMode workerMode = QueueWorkerMode.PLATFORM;
+
+    // 线程池相关
+    private Executor threadPoolExecutor;
+    private BlockingQueue<MESSAGE_BLOCK>[] lanes;
+    // 任一通道有消息时唤醒空闲工作线程
+    private final WaitSignal notEmpty = new WaitSignal();
+
+    // 统计信息
+    QueueStatistics stats = new QueueStatistics();
+    private LongAdder[] laneMessageCounters;
+    // 每个通道的排队时间和处理时间直方图,开启延迟统计时创建
+    private LatencyHistogram[] laneWaitHistograms;
+    private LatencyHistogram[] laneServiceHistograms;
+
+    // 线程本地的轮询位置
+    private final ThreadLocal<DrainCursor> cursor = ThreadLocal.withInitial(DrainCursor::new);
+
+    /**
+     * 工作线程的加权轮询位置
+     */
+    private static final class DrainCursor {
+        // 当前通道
+        private int lane;
+        // 当前通道剩余可连续取的消息数
+        private int credit = -1;
+        // 上一条消息所在通道,用于记录处理时间
+        private int lastLane;
+    }
+
+    /**
+     * 具体的队列处理逻辑,由子类实现
+     */
+    public abstract void svc();
+
+    /**
+     * 设置通道权重,需在start之前调用
+     * 数组长度即通道数,下标0优先级最高;权重越大,饱和时该通道获得的处理能力占比越高
+     */
+    public void setLaneWeights(int... laneWeights) {
+        if (laneWeights == null || laneWeights.length == 0) {
+            this.laneWeights = DEFAULT_LANE_WEIGHTS;
+            return;
+        }
+        this.laneWeights = new int[laneWeights.length];
+        for (int i = 0; i < laneWeights.length; i++) {
+            this.laneWeights[i] = Math.max(1, laneWeights[i]);
+        }
+    }
+
+    /**
+     * 设置每个通道的存储类型,需在start之前调用
+     */
+    public void setStorageType(QueueStorageType storageType) {
+        this.storageType = storageType == null ? QueueStorageType.LINKED : storageType;
+    }
+
+    /**
+     * 设置是否统计每个通道的排队时间和处理时间分布,需在start之前调用
+     */
+    public void setLatencyTracking(boolean latencyTracking) {
+        this.latencyTracking = latencyTracking;
+    }
+
+    /**
+     * 设置工作线程模式,需在start之前调用
+     */
+    public void setWorkerMode(QueueWorkerMode workerMode) {
+        this.workerMode = workerMode == null ? QueueWorkerMode.PLATFORM : workerMode;
+    }
+
+    /**
+     * 按配置启动队列处理器
+     */
+    public void start(String queueName, QueueConfig config) {
+        QueueStatisticsMgr.getInstance().configureInterval(config.getStatisticsInterval());
+        this.stats.setHistorySize(config.getHistorySize());
+        setLaneWeights(config.getPriorityLaneWeights());
+        setStorageType(config.getStorageType());
+        setLatencyTracking(config.isLatencyTracking());
+        setWorkerMode(config.getWorkerMode());
+        start(queueName, config.getDefaultThreadCount(), config.getDefaultQueueCapacity());
+    }
+
+    /**
+     * 启动队列处理器
+     *
+     * @param queueName 队列名称
+     * @param threadNum 处理线程数
+     * @param laneCapacity 每个通道的容量
+     */
+    @SuppressWarnings("unchecked")
+    public void start(String queueName, int threadNum, int laneCapacity) {
+        this.queueName = queueName;
+        this.stats.setQueueName(queueName);
+        QueueMMLMgr.getInstance().registerQueueMML(queueName, this);
+
+        // 设置默认线程数和队列长度
+        threadNum = threadNum <= 0 ? 2 : threadNum;
+        laneCapacity = laneCapacity <= 0 ? 10000 : laneCapacity;
+
+        // 多个工作线程共享通道,不能使用单消费者存储
+        if (threadNum > 1 && this.storageType.isSingleConsumer()) {
+            log.warn("队列[{}]有[{}]个工作线程, 存储类型[{}]退化为[{}]", queueName, threadNum,
+                    this.storageType, this.storageType.forMultiConsumer());
+            this.storageType = this.storageType.forMultiConsumer();
+        }
+
+        int laneCount = this.laneWeights.length;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        BlockingQueue<MESSAGE_BLOCK>[] lanes = new BlockingQueue[laneCount];
+        this.lanes = lanes;
+        this.laneMessageCounters = new LongAdder[laneCount];
+        if (this.latencyTracking) {
+            this.stats.enableLatencyTracking();
+            this.laneWaitHistograms = new LatencyHistogram[laneCount];
+            this.laneServiceHistograms = new LatencyHistogram[laneCount];
+        }
+        for (int i = 0; i < laneCount; i++) {
+            if (this.latencyTracking) {
+                this.laneWaitHistograms[i] = new LatencyHistogram();
+                this.laneServiceHistograms[i] = new LatencyHistogram();
+                this.lanes[i] = new TimedBlockingQueue<>(this.storageType.createQueue(laneCapacity),
+                        this.stats.getWaitTimeHistogram(), this.laneWaitHistograms[i]);
+            } else {
+                this.lanes[i] = this.storageType.createQueue(laneCapacity);
+            }
+            this.laneMessageCounters[i] = new LongAdder();
+        }
+        // 环形缓冲区的实际容量会取整为2的幂
+        this.laneCapacity = this.lanes[0].remainingCapacity();
+        this.stats.setThreadCount(threadNum);
+        this.stats.setMaxQueueSize(this.laneCapacity * laneCount);
+        this.threadPoolExecutor = this.workerMode.createExecutor(queueName, threadNum);
+
+        // 启动工作线程
+        for (int i = 0; i < threadNum; i++) {
+            this.threadPoolExecutor.execute(this::svc);
+        }
+
+        this.stats.setQueueInstance(this);
+        this.stats.register();
+    }
+
+    /**
+     * 按优先级选择通道,超出范围的优先级归到最近的通道
+     */
+    private int laneOf(int priority) {
+        return priority <= 0 ? 0 : Math.min(priority, this.lanes.length - 1);
+    }
+
+    /**
+     * 添加消息到最低优先级通道
+     */
+    public int putq(MESSAGE_BLOCK messageBlock) {
+        return putq(this.lanes.length - 1, messageBlock);
+    }
+
+    /**
+     * 添加消息到指定优先级的通道
+     *
+     * @param priority 优先级,0最高
+     * @param messageBlock 消息
+     */
+    public int putq(int priority, MESSAGE_BLOCK messageBlock) {
+        int lane = laneOf(priority);
+        if (!this.lanes[lane].offer(messageBlock)) {
+            log.error("添加消息到队列失败, 队列名称[{}], 通道[{}], 当前大小[{}]",
+                    this.queueName, lane, this.lanes[lane].size());
+            QueueEvents.reject(this.queueName, lane, this.lanes[lane].size(), this.laneCapacity, 0, 1);
+            return -1;
+        }
+        this.stats.getReceivedMessageCount().increment();
+        this.notEmpty.signalIfWaiting();
+        return 0;
+    }
+
+    /**
+     * 添加消息到指定优先级的通道,通道满时最多等待timeoutMillis
+     *
+     * @param priority 优先级,0最高
+     * @param messageBlock 消息
+     * @param timeoutMillis 最长等待时间(毫秒),为0时不等待
+     * @throws QueueFullException 不等待且通道已满
+     * @throws QueueTimeoutException 等待超时
+     */
+    public int putq(int priority, MESSAGE_BLOCK messageBlock, long timeoutMillis) {
+        int lane = laneOf(priority);
+        Object event = QueueEvents.beginEnqueue();
+        boolean accepted;
+        try {
+            accepted = timeoutMillis <= 0
+                    ? this.lanes[lane].offer(messageBlock)
+                    : this.lanes[lane].offer(messageBlock, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueueException(String.format("队列[%s]等待添加消息被中断", this.queueName), e);
+        }
+        QueueEvents.endEnqueue(event, this.queueName, lane, this.lanes[lane].size(), accepted);
+        if (!accepted) {
+            QueueEvents.reject(this.queueName, lane, this.lanes[lane].size(), this.laneCapacity, timeoutMillis, 1);
+            if (timeoutMillis <= 0) {
+                throw new QueueFullException(this.queueName, this.laneCapacity);
+            }
+            throw new QueueTimeoutException(this.queueName, timeoutMillis);
+        }
+        this.stats.getReceivedMessageCount().increment();
+        this.notEmpty.signalIfWaiting();
+        return 0;
+    }
+
+    /**
+     * 按权重轮询获取消息,所有通道为空时等待
+     */
+    public MESSAGE_BLOCK getq() {
+        try {
+            return take(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            log.error("获取队列消息异常", e);
+            return null;
+        }
+    }
+
+    /**
+     * 按权重轮询获取消息(超时)
+     */
+    public MESSAGE_BLOCK getq(long milliSeconds) {
+        try {
+            return take(TimeUnit.MILLISECONDS.toNanos(milliSeconds));
+        } catch (InterruptedException e) {
+            log.error("获取队列消息异常", e);
+            return null;
+        }
+    }
+
+    private MESSAGE_BLOCK take(long nanos) throws InterruptedException {
+        DrainCursor drain = this.cursor.get();
+        this.stats.markIdle();
+        Object event = QueueEvents.beginDequeue();
+        while (true) {
+            MESSAGE_BLOCK messageBlock = poll(drain);
+            if (messageBlock != null) {
+                this.stats.getProcessedMessageCount().increment();
+                this.laneMessageCounters[drain.lastLane].increment();
+                this.stats.markBusy();
+                QueueEvents.endDequeue(event, this.queueName, drain.lastLane, 1);
+                return messageBlock;
+            }
+            if (nanos <= 0) {
+                QueueEvents.endDequeue(event, this.queueName, drain.lastLane, 0);
+                return null;
+            }
+            nanos = this.notEmpty.await(this::hasMessage, nanos);
+        }
+    }
+
+    /**
+     * 加权轮询: 当前通道还有额度且有消息时继续取,否则换到下一个通道并重置额度
+     * 每条消息最多检查一遍所有通道
+     */
+    private MESSAGE_BLOCK poll(DrainCursor drain) {
+        int laneCount = this.lanes.length;
+        for (int i = 0; i <= laneCount; i++) {
+            if (drain.credit > 0) {
+                MESSAGE_BLOCK messageBlock = this.lanes[drain.lane].poll();
+                if (messageBlock != null) {
+                    drain.credit--;
+                    drain.lastLane = drain.lane;
+                    return messageBlock;
+                }
+                drain.lane = drain.lane + 1 == laneCount ? 0 : drain.lane + 1;
+            } else if (drain.credit == 0) {
+                drain.lane = drain.lane + 1 == laneCount ? 0 : drain.lane + 1;
+            } else {
+                // 第一次取消息从最高优先级通道开始
+                drain.lane = 0;
+            }
+            drain.credit = this.laneWeights[drain.lane];
+        }
+        return null;
+    }
+
+    private boolean hasMessage() {
+        for (BlockingQueue<MESSAGE_BLOCK> lane : this.lanes) {
+            if (!lane.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 记录一条消息的处理耗时,由svc在处理完消息后调用
+     * 同时计入队列级和消息所在通道的直方图,未开启延迟统计时不做任何事
+     *
+     * @param startNanos 开始处理时的System.nanoTime()
+     */
+    public void recordServiceTime(long startNanos) {
+        if (this.laneServiceHistograms == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        this.stats.getServiceTimeHistogram().record(elapsed);
+        this.laneServiceHistograms[this.cursor.get().lastLane].record(elapsed);
+    }
+
+    /**
+     * 获取所有通道积压的消息数
+     */
+    public int getQueueSize() {
+        int size = 0;
+        for (BlockingQueue<MESSAGE_BLOCK> lane : this.lanes) {
+            size += lane.size();
+        }
+        return size;
+    }
+
+    public String getqName() {
+        return queueName;
+    }
+
+    /**
+     * 每个通道一条状态,队列位置ID为优先级+1
+     */
+    @Override
+    public List<QueueStatus> getQueueStatus() {
+        List<QueueStatus> status = new ArrayList<>();
+        for (int i = 0; i < this.lanes.length; i++) {
+            QueueStatus queueStatus = new QueueStatus();
+            queueStatus.setQueueIndex(i + 1);
+            queueStatus.setProcessedCount(this.laneMessageCounters[i].sum());
+            queueStatus.setPendingCount(this.lanes[i].size());
+            queueStatus.setCapacity(this.laneCapacity);
+            if (this.laneWaitHistograms != null) {
+                queueStatus.setWaitTime(this.laneWaitHistograms[i].summarize(false));
+                queueStatus.setServiceTime(this.laneServiceHistograms[i].summarize(false));
+            }
+            status.add(queueStatus);
+        }
+        return status;
+    }
+}
@@ -1,13 +1,43 @@
 package com.example.demo.queue.absqueue;
 
+import com.example.demo.queue.buffer.AbstractRingBlockingQueue;
+import com.example.demo.queue.buffer.JournaledBlockingQueue;
+import com.example.demo.queue.buffer.OffHeapBlockingQueue;
+import com.example.demo.queue.buffer.SpillingBlockingQueue;
+import com.example.demo.queue.buffer.TimedBlockingQueue;
+import com.example.demo.queue.codec.MessageCodec;
+import com.example.demo.queue.codec.SerializableCodec;
+import com.example.demo.queue.config.QueueConfig;
+import com.example.demo.queue.config.QueueStorageType;
+import com.example.demo.queue.config.QueueWaitStrategy;
+import com.example.demo.queue.config.QueueWorkerMode;
+import com.example.demo.queue.exception.QueueException;
+import com.example.demo.queue.exception.QueueFullException;
+import com.example.demo.queue.exception.QueueTimeoutException;
+import com.example.demo.queue.exception.WorkerRetiredException;
+import com.example.demo.queue.jfr.QueueEvents;
 import com.example.demo.queue.mgr.QueueMMLMgr;
+import com.example.demo.queue.model.LatencyHistogram;
+import com.example.demo.queue.model.QueueSnapshot;
 import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.QueueStatisticsMgr;
 import com.example.demo.queue.model.QueueStatus;
+import com.example.demo.queue.store.JournalRecord;
+import com.example.demo.queue.store.SpillLog;
+import com.example.demo.queue.store.WriteAheadJournal;
+import com.example.demo.queue.timer.TimeScheduler;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * 多线程阻塞队列实现
@@ -19,7 +49,18 @@ import java.util.concurrent.*;
  * - 支持队列容量限制
  */
 @Slf4j
-public abstract class Queue<MESSAGE_BLOCK> implements Queue_I {
+public abstract class Queue<MESSAGE_BLOCK> implements ManageableQueue {
+
+    /**
+     * 弹性模式下空闲工作线程检查回收请求的间隔(毫秒)
+     */
+    private static final long IDLE_CHECK_MILLIS = 1000;
+
+    /**
+     * 弹性模式下线程池中空闲线程的存活时间(秒)
+     */
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+
     // 队列统计信息
     QueueStatistics queueStatistics = new QueueStatistics();
 
@@ -31,8 +72,221 @@ public abstract class Queue<MESSAGE_BLOCK> implements Queue_I {
     private BlockingQueue<MESSAGE_BLOCK> messageQueue = null;
     // 队列容量
     private int queueCapacity;
+    // 存储类型,需在start之前设置
+    private QueueStorageType storageType = QueueStorageType.LINKED;
+    // 消费者等待策略
+    private QueueWaitStrategy waitStrategy = QueueWaitStrategy.BLOCKING;
+    // 是否统计排队时间和处理时间,需在start之前设置
+    private boolean latencyTracking = false;
+    // 工作线程模式,需在start之前设置
+    private QueueWorkerMode workerMode = QueueWorkerMode.PLATFORM;
+    // 消息编解码器,消息需要写入磁盘时使用
+    private MessageCodec<MESSAGE_BLOCK> messageCodec;
+    // 磁盘溢出目录,为null时不开启溢出
+    private String spillDirectory;
+    // 溢出文件段大小(字节)
+    private int spillSegmentBytes;
+    // 溢出文件磁盘占用上限(字节)
+    private long spillMaxBytes;
+    // 堆外存储字节上限,为0时消息存放在堆内
+    private long offHeapMaxBytes;
+    // 预写日志目录,为null时不开启预写日志
+    private String journalDirectory;
+    // 预写日志段大小(字节)
+    private int journalSegmentBytes;
+    // 预写日志刷盘间隔(毫秒)
+    private long journalFlushIntervalMillis;
+    // 是否等待刷盘完成后putq才返回
+    private boolean journalSyncWrites;
+    // 预写日志
+    private WriteAheadJournal<MESSAGE_BLOCK> journal;
+    // 是否根据积压和处理速率自动调整工作线程数,需在start之前设置
+    private boolean elastic;
+    // 弹性模式最少/最多工作线程数
+    private int minWorkers;
+    private int maxWorkers;
+    // 扩容/缩容冷却时间(毫秒)
+    private long scaleUpCooldownMillis;
+    private long scaleDownCooldownMillis;
+    // 运行中的工作线程数
+    private final AtomicInteger activeWorkers = new AtomicInteger(0);
+    // 待回收的工作线程数,由空闲的工作线程在getq中认领
+    private final AtomicInteger retireRequests = new AtomicInteger(0);
+    // 上次调整线程数的时间,只在采样线程中读写
+    private long lastScaleTime;
+    // 上次采样时的积压消息数,只在采样线程中读写
+    private int previousBacklog;
+    // 高水位和低水位比例,需在start之前设置
+    private double highWatermark = 0.8;
+    private double lowWatermark = 0.5;
+    // 水位检测
+    private final WatermarkMonitor watermark = new WatermarkMonitor();
+    // 暂停开关
+    private final PauseGate pauseGate = new PauseGate();
+    // 工作线程正在处理的批次,JFR开启SvcBatch事件时才有值
+    private final ThreadLocal<Object> svcBatch = new ThreadLocal<>();
+
+    /**
+     * 设置队列存储类型,需在start之前调用
+     */
+    public void setStorageType(QueueStorageType storageType) {
+        this.storageType = storageType == null ? QueueStorageType.LINKED : storageType;
+    }
+
+    /**
+     * 设置消费者等待策略
+     */
+    public void setWaitStrategy(QueueWaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy == null ? QueueWaitStrategy.BLOCKING : waitStrategy;
+    }
+
+    /**
+     * 获取实际使用的等待策略,虚拟线程模式下自旋类策略在start时退化为BLOCKING
+     */
+    public QueueWaitStrategy getWaitStrategy() {
+        return this.waitStrategy;
+    }
+
+    /**
+     * 设置是否统计排队时间和处理时间分布,需在start之前调用
+     * 开启后每条消息入队时额外包装一个时间戳对象
+     */
+    public void setLatencyTracking(boolean latencyTracking) {
+        this.latencyTracking = latencyTracking;
+    }
+
+    /**
+     * 设置工作线程模式,需在start之前调用
+     * VIRTUAL模式下每个工作线程是一个虚拟线程,可以把线程数设到数千以并发处理阻塞型任务
+     */
+    public void setWorkerMode(QueueWorkerMode workerMode) {
+        this.workerMode = workerMode == null ? QueueWorkerMode.PLATFORM : workerMode;
+    }
+
+    /**
+     * 设置消息编解码器,未设置时使用Java序列化
+     */
+    public void setMessageCodec(MessageCodec<MESSAGE_BLOCK> messageCodec) {
+        this.messageCodec = messageCodec;
+    }
+
+    /**
+     * 开启磁盘溢出,需在start之前调用
+     * 内存队列写满后消息写入内存映射文件,消费者追上后再按顺序搬回内存队列
+     *
+     * @param directory 溢出文件目录,实际使用其下以队列名称命名的子目录
+     * @param segmentBytes 单个文件段大小(字节)
+     * @param maxBytes 磁盘占用上限(字节)
+     */
+    public void enableSpill(String directory, int segmentBytes, long maxBytes) {
+        this.spillDirectory = directory;
+        this.spillSegmentBytes = segmentBytes;
+        this.spillMaxBytes = maxBytes;
+    }
+
+    /**
+     * 开启堆外存储,需在start之前调用
+     * 消息入队时用编解码器编码后存放在堆外缓冲区,工作线程getq时才解码,大量积压不再占用堆内存。
+     * 与预写日志同时开启时只使用预写日志;开启延迟统计时只统计处理时间,不统计排队时间。
+     *
+     * @param maxBytes 堆外缓冲区字节上限,start时按该值一次性分配,
+     *                 所有开启堆外存储的队列之和不应超过-XX:MaxDirectMemorySize
+     */
+    public void enableOffHeap(long maxBytes) {
+        this.offHeapMaxBytes = maxBytes;
+    }
+
+    /**
+     * 开启预写日志,需在start之前调用
+     * 消息入队前先写日志,工作线程下一次getq或调用ack时确认上一次取出的消息,
+     * 重启后未确认的消息按原顺序重放到队列。与磁盘溢出同时开启时只使用预写日志。
+     *
+     * @param directory 日志目录,实际使用其下以队列名称命名的子目录
+     * @param segmentBytes 单个日志段大小(字节)
+     * @param flushIntervalMillis 刷盘间隔(毫秒),同一间隔内的写入合并为一次刷盘
+     * @param syncWrites 是否等待刷盘完成后putq才返回
+     */
+    public void enableJournal(String directory, int segmentBytes, long flushIntervalMillis, boolean syncWrites) {
+        this.journalDirectory = directory;
+        this.journalSegmentBytes = segmentBytes;
+        this.journalFlushIntervalMillis = flushIntervalMillis;
+        this.journalSyncWrites = syncWrites;
+    }
+
+    /**
+     * 开启弹性线程数,需在start之前调用
+     * 每次统计采样后,积压增长或处理速率落后于接收速率时扩容,连续两次采样无积压时回收一个空闲线程。
+     * 被回收的线程在getq中抛出WorkerRetiredException结束svc循环,svc不应吞掉该异常。
+     *
+     * @param minThreads 最少工作线程数
+     * @param maxThreads 最多工作线程数
+     * @param scaleUpCooldownMillis 扩容冷却时间(毫秒)
+     * @param scaleDownCooldownMillis 缩容冷却时间(毫秒)
+     */
+    public void enableElastic(int minThreads, int maxThreads, long scaleUpCooldownMillis, long scaleDownCooldownMillis) {
+        this.elastic = true;
+        this.minWorkers = Math.max(1, minThreads);
+        this.maxWorkers = Math.max(this.minWorkers, maxThreads);
+        this.scaleUpCooldownMillis = scaleUpCooldownMillis;
+        this.scaleDownCooldownMillis = scaleDownCooldownMillis;
+    }
+
+    /**
+     * 设置高低水位比例,需在start之前调用
+     * 积压达到高水位时isCanPut返回false并通知监听器,回落到低水位以下才通知回落
+     *
+     * @param high 高水位比例(0-1)
+     * @param low 低水位比例(0-1)
+     */
+    public void setWatermarks(double high, double low) {
+        this.highWatermark = high;
+        this.lowWatermark = Math.min(low, high);
+    }
+
+    /**
+     * 添加水位监听器,生产者据此调整发送速率而不必轮询isCanPut
+     */
+    public void addWatermarkListener(WatermarkListener listener) {
+        this.watermark.addListener(listener);
+    }
 
-    
+    /**
+     * 移除水位监听器
+     */
+    public void removeWatermarkListener(WatermarkListener listener) {
+        this.watermark.removeListener(listener);
+    }
+
+    /**
+     * 按配置启动队列处理器
+     *
+     * @param queueName 队列名称
+     * @param config 队列配置
+     */
+    public void start(String queueName, QueueConfig config) {
+        QueueStatisticsMgr.getInstance().configureInterval(config.getStatisticsInterval());
+        this.queueStatistics.setHistorySize(config.getHistorySize());
+        setStorageType(config.getStorageType());
+        setWaitStrategy(config.getWaitStrategy());
+        setLatencyTracking(config.isLatencyTracking());
+        setWorkerMode(config.getWorkerMode());
+        setWatermarks(config.getWarningThreshold(), config.getLowWatermarkThreshold());
+        if (config.isSpillEnabled()) {
+            enableSpill(config.getSpillDirectory(), config.getSpillSegmentBytes(), config.getSpillMaxBytes());
+        }
+        if (config.isOffHeapEnabled()) {
+            enableOffHeap(config.getOffHeapMaxBytes());
+        }
+        if (config.isJournalEnabled()) {
+            enableJournal(config.getJournalDirectory(), config.getJournalSegmentBytes(),
+                    config.getJournalFlushIntervalMillis(), config.isJournalSyncWrites());
+        }
+        if (config.isElasticEnabled()) {
+            enableElastic(config.getElasticMinThreads(), config.getElasticMaxThreads(),
+                    config.getElasticScaleUpCooldownMillis(), config.getElasticScaleDownCooldownMillis());
+        }
+        start(queueName, config.getDefaultThreadCount(), config.getDefaultQueueCapacity());
+    }
 
     /**
      * 启动队列处理器
@@ -43,30 +297,316 @@ public abstract class Queue<MESSAGE_BLOCK> implements Queue_I {
      */
     public void start(String queueName, int threadNum, int queueCapacity) {
         this.queueName = queueName;
-        QueueMMLMgr.getInstance().registerQueueMML(queueName, (BlockingQueue<Object>) this);
+        QueueMMLMgr.getInstance().registerQueueMML(queueName, this);
         this.queueStatistics.setQueueName(queueName);
 
         // 设置默认线程数和队列长度
         threadNum = threadNum <= 0 ? 2 : threadNum;
         queueCapacity = queueCapacity <= 0 ? 10000 : queueCapacity;
+        // 弹性模式按最多线程数创建线程池,初始线程数限制在上下限之间
+        int poolSize = threadNum;
+        if (this.elastic) {
+            threadNum = Math.min(Math.max(threadNum, this.minWorkers), this.maxWorkers);
+            poolSize = this.maxWorkers;
+        }
         
-        this.queueStatistics.setThreadCount(threadNum);
-        this.queueStatistics.setMaxQueueSize(queueCapacity);
-        this.queueCapacity = queueCapacity;
+        // 多个工作线程共享一个队列,不能使用单消费者存储
+        if (poolSize > 1 && this.storageType.isSingleConsumer()) {
+            log.warn("队列[{}]有[{}]个工作线程, 存储类型[{}]退化为[{}]", queueName, threadNum,
+                    this.storageType, this.storageType.forMultiConsumer());
+            this.storageType = this.storageType.forMultiConsumer();
+        }
+
+        // 虚拟线程忙等会一直占住载体线程,自旋类等待策略退化为阻塞
+        if (this.workerMode.effective() == QueueWorkerMode.VIRTUAL && this.waitStrategy.isSpinning()) {
+            log.warn("队列[{}]使用虚拟线程, 等待策略[{}]退化为[{}]", queueName,
+                    this.waitStrategy, QueueWaitStrategy.BLOCKING);
+            this.waitStrategy = QueueWaitStrategy.BLOCKING;
+        }
+
+        // 预写日志的记录包含确认序号,不能按消息编解码器写入堆外
+        if (this.offHeapMaxBytes > 0 && this.journalDirectory != null) {
+            log.warn("队列[{}]已开启预写日志, 不再开启堆外存储", queueName);
+            this.offHeapMaxBytes = 0;
+        }
+
+        // 初始化阻塞队列和线程池,环形缓冲区的实际容量会取整为2的幂
+        if (this.offHeapMaxBytes > 0) {
+            if (this.latencyTracking) {
+                // 排队时间戳无法随消息编码,只统计处理时间
+                this.queueStatistics.enableLatencyTracking();
+            }
+            this.messageQueue = createOffHeapQueue(queueCapacity);
+        } else if (this.latencyTracking) {
+            this.queueStatistics.enableLatencyTracking();
+            this.messageQueue = new TimedBlockingQueue<>(this.storageType.createQueue(queueCapacity),
+                    this.queueStatistics.getWaitTimeHistogram());
+        } else {
+            this.messageQueue = this.storageType.createQueue(queueCapacity);
+        }
+        this.queueCapacity = this.messageQueue.remainingCapacity();
+        this.watermark.init(queueName, 1, this.queueCapacity, this.highWatermark, this.lowWatermark);
+        List<JournalRecord<MESSAGE_BLOCK>> recovered = Collections.emptyList();
+        if (this.journalDirectory != null) {
+            if (this.spillDirectory != null) {
+                log.warn("队列[{}]已开启预写日志, 不再开启磁盘溢出", queueName);
+            }
+            recovered = openJournal();
+        } else if (this.spillDirectory != null) {
+            this.messageQueue = createSpillingQueue(this.messageQueue);
+        }
 
-        // 初始化阻塞队列和线程池
-        this.messageQueue = new LinkedBlockingQueue<>(queueCapacity);
-        this.threadPoolExecutor = Executors.newFixedThreadPool(threadNum);
+        this.queueStatistics.setThreadCount(threadNum);
+        this.queueStatistics.setMaxQueueSize(this.queueCapacity);
+        this.threadPoolExecutor = this.workerMode.createExecutor(queueName, poolSize);
+        if (this.elastic && this.threadPoolExecutor instanceof ThreadPoolExecutor) {
+            // 回收工作线程后让线程池中的空闲线程也退出
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) this.threadPoolExecutor;
+            pool.setKeepAliveTime(IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            pool.allowCoreThreadTimeOut(true);
+        }
 
         // 启动工作线程
         for (int i = 0; i < threadNum; i++) {
-            this.threadPoolExecutor.execute(this::svc);
+            startWorker();
+        }
+        replayJournal(recovered);
+        if (this.elastic) {
+            this.lastScaleTime = System.currentTimeMillis();
+            this.queueStatistics.addSnapshotListener(this::autoscale);
+            log.info("队列[{}]开启弹性线程数, 初始[{}], 最少[{}], 最多[{}]", queueName, threadNum,
+                    this.minWorkers, this.maxWorkers);
         }
 
         this.queueStatistics.setQueueInstance(this);
         this.queueStatistics.register();
     }
 
+    /**
+     * 创建堆外存储的阻塞队列,容量同时受消息数和字节数限制
+     */
+    private BlockingQueue<MESSAGE_BLOCK> createOffHeapQueue(int queueCapacity) {
+        MessageCodec<MESSAGE_BLOCK> codec = this.messageCodec != null ? this.messageCodec : new SerializableCodec<>();
+        log.info("队列[{}]开启堆外存储, 字节上限[{}]", this.queueName, this.offHeapMaxBytes);
+        try {
+            return new OffHeapBlockingQueue<>(codec, queueCapacity, this.offHeapMaxBytes);
+        } catch (OutOfMemoryError e) {
+            throw new QueueException(String.format("队列[%s]分配堆外缓冲区[%d]字节失败, 超过-XX:MaxDirectMemorySize剩余额度",
+                    this.queueName, this.offHeapMaxBytes), e);
+        }
+    }
+
+    /**
+     * 为内存队列加上磁盘溢出层,创建失败时只使用内存队列
+     */
+    private BlockingQueue<MESSAGE_BLOCK> createSpillingQueue(BlockingQueue<MESSAGE_BLOCK> memoryQueue) {
+        MessageCodec<MESSAGE_BLOCK> codec = this.messageCodec != null ? this.messageCodec : new SerializableCodec<>();
+        try {
+            SpillLog<MESSAGE_BLOCK> spillLog = new SpillLog<>(Paths.get(this.spillDirectory, this.queueName),
+                    this.spillSegmentBytes, this.spillMaxBytes, codec);
+            log.info("队列[{}]开启磁盘溢出, 目录[{}], 段大小[{}], 上限[{}]", this.queueName,
+                    this.spillDirectory, this.spillSegmentBytes, this.spillMaxBytes);
+            return new SpillingBlockingQueue<>(memoryQueue, spillLog);
+        } catch (IOException e) {
+            log.error("队列[{}]创建溢出目录失败, 只使用内存队列", this.queueName, e);
+            return memoryQueue;
+        }
+    }
+
+    /**
+     * 打开预写日志并为内存队列加上日志层,打开失败时只使用内存队列
+     *
+     * @return 上次运行未确认的消息
+     */
+    private List<JournalRecord<MESSAGE_BLOCK>> openJournal() {
+        MessageCodec<MESSAGE_BLOCK> codec = this.messageCodec != null ? this.messageCodec : new SerializableCodec<>();
+        try {
+            WriteAheadJournal<MESSAGE_BLOCK> wal = new WriteAheadJournal<>(
+                    Paths.get(this.journalDirectory, this.queueName), this.journalSegmentBytes,
+                    this.journalFlushIntervalMillis, this.journalSyncWrites, codec);
+            List<JournalRecord<MESSAGE_BLOCK>> recovered = wal.recover();
+            this.journal = wal;
+            this.messageQueue = new JournaledBlockingQueue<>(this.messageQueue, wal, 0);
+            log.info("队列[{}]开启预写日志, 目录[{}], 刷盘间隔[{}ms], 同步写[{}], 待重放[{}]", this.queueName,
+                    this.journalDirectory, this.journalFlushIntervalMillis, this.journalSyncWrites, recovered.size());
+            return recovered;
+        } catch (IOException e) {
+            log.error("队列[{}]打开预写日志失败, 只使用内存队列", this.queueName, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 重放上次运行未确认的消息,在工作线程启动后执行,队列满时等待工作线程消费
+     */
+    private void replayJournal(List<JournalRecord<MESSAGE_BLOCK>> recovered) {
+        if (recovered.isEmpty()) {
+            return;
+        }
+        JournaledBlockingQueue<MESSAGE_BLOCK> journaled = (JournaledBlockingQueue<MESSAGE_BLOCK>) this.messageQueue;
+        int count = 0;
+        try {
+            for (JournalRecord<MESSAGE_BLOCK> record : recovered) {
+                journaled.restore(record);
+                count++;
+            }
+        } catch (InterruptedException e) {
+            log.error("队列[{}]重放预写日志被中断, 已重放[{}]", this.queueName, count, e);
+        }
+        this.queueStatistics.addReceived(count);
+        log.info("队列[{}]重放预写日志[{}]条", this.queueName, count);
+    }
+
+    /**
+     * 确认当前工作线程已取出的消息处理完成,同时提交上一批消息的SvcBatch事件
+     * getq会自动确认上一次取出的消息,处理完后需要立即确认时调用。未开启预写日志和JFR事件时不做任何事
+     */
+    public void ack() {
+        if (this.journal != null) {
+            this.journal.ackTaken();
+        }
+        endSvcBatch();
+    }
+
+    /**
+     * 提交一个运行svc的工作线程
+     */
+    private void startWorker() {
+        this.activeWorkers.incrementAndGet();
+        this.threadPoolExecutor.execute(() -> {
+            try {
+                svc();
+            } catch (WorkerRetiredException e) {
+                log.info("队列[{}]回收空闲工作线程, 剩余[{}]", this.queueName, this.activeWorkers.get() - 1);
+            } finally {
+                endSvcBatch();
+                this.activeWorkers.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * 根据一次统计采样调整工作线程数,在采样线程中执行
+     * - 积压增长或处理速率落后于接收速率时,按当前线程数的一半扩容
+     * - 连续两次采样没有积压时回收一个线程
+     * - 距上次调整不足冷却时间时不调整
+     */
+    private void autoscale(QueueSnapshot snapshot) {
+        int backlog = this.messageQueue.size();
+        int previous = this.previousBacklog;
+        this.previousBacklog = backlog;
+        int workers = this.activeWorkers.get() - this.retireRequests.get();
+        long sinceLastScale = snapshot.getEndTime() - this.lastScaleTime;
+
+        boolean fallingBehind = backlog > 0
+                && (backlog > previous || snapshot.getHandledCount() < snapshot.getReceivedCount());
+        if (fallingBehind && workers < this.maxWorkers && sinceLastScale >= this.scaleUpCooldownMillis) {
+            int add = Math.min(Math.max(1, workers / 2), this.maxWorkers - workers);
+            for (int i = 0; i < add; i++) {
+                // 有尚未被认领的回收请求时先撤销,不必新建线程
+                int requests = this.retireRequests.get();
+                if (requests > 0 && this.retireRequests.compareAndSet(requests, requests - 1)) {
+                    continue;
+                }
+                startWorker();
+            }
+            this.lastScaleTime = snapshot.getEndTime();
+            log.info("队列[{}]积压[{}], 接收[{}], 处理[{}], 工作线程扩容[{}] -> [{}]", this.queueName, backlog,
+                    snapshot.getReceivedCount(), snapshot.getHandledCount(), workers, workers + add);
+            workers += add;
+        } else if (backlog == 0 && previous == 0 && workers > this.minWorkers
+                && sinceLastScale >= this.scaleDownCooldownMillis) {
+            this.retireRequests.incrementAndGet();
+            this.lastScaleTime = snapshot.getEndTime();
+            log.info("队列[{}]无积压, 工作线程缩容[{}] -> [{}]", this.queueName, workers, workers - 1);
+            workers--;
+        }
+        this.queueStatistics.setThreadCount(workers);
+    }
+
+    /**
+     * 队列为空时认领一个回收请求
+     */
+    private boolean claimRetire() {
+        if (this.messageQueue.isEmpty()) {
+            int requests;
+            while ((requests = this.retireRequests.get()) > 0) {
+                if (this.retireRequests.compareAndSet(requests, requests - 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 弹性模式下的获取消息,空闲时定期检查是否需要回收当前线程
+     */
+    private MESSAGE_BLOCK takeOrRetire() throws InterruptedException {
+        while (true) {
+            MESSAGE_BLOCK message = this.waitStrategy.poll(this.messageQueue, IDLE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            if (message != null) {
+                return message;
+            }
+            if (claimRetire()) {
+                this.queueStatistics.getProcessedMessageCount().decrement();
+                throw new WorkerRetiredException(this.queueName);
+            }
+        }
+    }
+
+    /**
+     * 调整工作线程数,只在弹性模式下可用,目标线程数限制在1和最多线程数之间
+     * 增加时立即启动线程,减少时由空闲的工作线程认领回收请求。调整后重新计算扩缩容冷却时间。
+     */
+    @Override
+    public synchronized boolean resize(int threadCount) {
+        if (!this.elastic || this.threadPoolExecutor == null) {
+            log.warn("队列[{}]未开启弹性线程数, 不能调整工作线程数", this.queueName);
+            return false;
+        }
+        int target = Math.min(Math.max(1, threadCount), this.maxWorkers);
+        int workers = this.activeWorkers.get() - this.retireRequests.get();
+        for (int i = workers; i < target; i++) {
+            int requests = this.retireRequests.get();
+            if (requests > 0 && this.retireRequests.compareAndSet(requests, requests - 1)) {
+                continue;
+            }
+            startWorker();
+        }
+        if (workers > target) {
+            this.retireRequests.addAndGet(workers - target);
+        }
+        this.lastScaleTime = System.currentTimeMillis();
+        this.queueStatistics.setThreadCount(target);
+        log.info("队列[{}]调整工作线程数[{}] -> [{}]", this.queueName, workers, target);
+        return true;
+    }
+
+    @Override
+    public void pause() {
+        this.pauseGate.pause();
+        log.info("队列[{}]暂停消费", this.queueName);
+    }
+
+    @Override
+    public void resume() {
+        this.pauseGate.resume();
+        log.info("队列[{}]恢复消费", this.queueName);
+    }
+
+    @Override
+    public boolean isPaused() {
+        return this.pauseGate.isPaused();
+    }
+
+    /**
+     * 获取运行中的工作线程数
+     */
+    public int getActiveWorkerCount() {
+        return this.activeWorkers.get();
+    }
+
     /**
      * 具体的队列处理逻辑,由子类实现
      */
@@ -74,25 +614,181 @@ public abstract class Queue<MESSAGE_BLOCK> implements Queue_I {
 
     /**
      * 添加消息到队列
+     * 队列已满或存储层拒绝消息(如堆外存储编码失败、编码后超过缓冲区容量)时返回-1
      */
     public int putq(MESSAGE_BLOCK message) {
-        if (!this.messageQueue.offer(message)) {
+        Object event = QueueEvents.beginEnqueue();
+        boolean accepted;
+        try {
+            accepted = this.messageQueue.offer(message);
+        } catch (RuntimeException e) {
+            log.error("队列添加消息失败, 存储层拒绝消息, 队列名称[{}]", this.queueName, e);
+            accepted = false;
+        }
+        QueueEvents.endEnqueue(event, this.queueName, 0, this.messageQueue.size(), accepted);
+        if (!accepted) {
             log.error("队列添加消息失败, 队列名称[{}], 当前大小[{}]", this.queueName, this.messageQueue.size());
+            QueueEvents.reject(this.queueName, 0, this.messageQueue.size(), this.queueCapacity, 0, 1);
             return -1;
         }
-        this.queueStatistics.getReceivedMessageCount().incrementAndGet();
+        this.queueStatistics.getReceivedMessageCount().increment();
+        checkWatermark();
+        return 0;
+    }
+
+    /**
+     * 添加消息到队列,队列满时最多等待timeoutMillis
+     *
+     * @param message 消息
+     * @param timeoutMillis 最长等待时间(毫秒),为0时不等待
+     * @throws QueueFullException 不等待且队列已满
+     * @throws QueueTimeoutException 等待超时
+     */
+    public int putq(MESSAGE_BLOCK message, long timeoutMillis) {
+        Object event = QueueEvents.beginEnqueue();
+        boolean accepted;
+        try {
+            accepted = timeoutMillis <= 0
+                    ? this.messageQueue.offer(message)
+                    : this.messageQueue.offer(message, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueueException(String.format("队列[%s]等待添加消息被中断", this.queueName), e);
+        } catch (RuntimeException e) {
+            throw rejected(e, timeoutMillis);
+        }
+        QueueEvents.endEnqueue(event, this.queueName, 0, this.messageQueue.size(), accepted);
+        if (!accepted) {
+            QueueEvents.reject(this.queueName, 0, this.messageQueue.size(), this.queueCapacity, timeoutMillis, 1);
+            if (timeoutMillis <= 0) {
+                throw new QueueFullException(this.queueName, this.queueCapacity);
+            }
+            throw new QueueTimeoutException(this.queueName, timeoutMillis);
+        }
+        this.queueStatistics.getReceivedMessageCount().increment();
+        checkWatermark();
         return 0;
     }
 
     /**
-     * 从队列获取消息(阻塞)
+     * 添加消息到队列,队列满时一直等待
+     */
+    public int putqBlocking(MESSAGE_BLOCK message) {
+        Object event = QueueEvents.beginEnqueue();
+        try {
+            this.messageQueue.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueueException(String.format("队列[%s]等待添加消息被中断", this.queueName), e);
+        } catch (RuntimeException e) {
+            throw rejected(e, Long.MAX_VALUE);
+        }
+        QueueEvents.endEnqueue(event, this.queueName, 0, this.messageQueue.size(), true);
+        this.queueStatistics.getReceivedMessageCount().increment();
+        checkWatermark();
+        return 0;
+    }
+
+    /**
+     * 存储层拒绝消息时记录Reject事件,转换为QueueException
+     */
+    private QueueException rejected(RuntimeException cause, long timeoutMillis) {
+        QueueEvents.reject(this.queueName, 0, this.messageQueue.size(), this.queueCapacity, timeoutMillis, 1);
+        if (cause instanceof QueueException) {
+            return (QueueException) cause;
+        }
+        return new QueueException(String.format("队列[%s]存储层拒绝消息", this.queueName), cause);
+    }
+
+    /**
+     * 延迟投递消息,到期后由时间轮线程调用putq
+     * 每条消息只占用时间轮中的一个数组槽位,不经过ScheduledExecutorService的堆
+     * 到期时队列已满则丢弃消息(记录日志和Reject事件),需要处理拒绝时使用带onRejected的重载
+     *
+     * @param message 消息
+     * @param delay 延迟
+     * @param unit 时间单位
+     * @return 定时句柄,可通过TimeScheduler.cancel取消投递
+     */
+    public long putqDelayed(MESSAGE_BLOCK message, long delay, TimeUnit unit) {
+        return putqDelayed(message, delay, unit, null);
+    }
+
+    /**
+     * 延迟投递消息,到期后由时间轮线程调用putq
+     * 时间轮线程不能等待队列腾出空间,到期时队列已满则拒绝消息并调用onRejected,
+     * 调用方可以在回调中重新投递、转存或计数。时间轮线程是额外的生产线程,SPSC_RING存储的队列不支持延迟投递
+     *
+     * @param message 消息
+     * @param delay 延迟
+     * @param unit 时间单位
+     * @param onRejected 消息被拒绝时在时间轮线程中调用,不能阻塞,为null时丢弃消息
+     * @return 定时句柄,可通过TimeScheduler.cancel取消投递
+     */
+    public long putqDelayed(MESSAGE_BLOCK message, long delay, TimeUnit unit,
+                            Consumer<? super MESSAGE_BLOCK> onRejected) {
+        if (this.storageType.isSingleProducer()) {
+            throw new QueueException(String.format("队列[%s]只允许一个生产线程, 不支持延迟投递", this.queueName));
+        }
+        return TimeScheduler.getInstance().schedule(() -> {
+            if (putq(message) != 0 && onRejected != null) {
+                onRejected.accept(message);
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * 有水位监听器时检查当前积压
+     */
+    private void checkWatermark() {
+        if (this.watermark.hasListeners()) {
+            this.watermark.update(0, this.messageQueue.size());
+        }
+    }
+
+    /**
+     * 批量添加消息到队列,统计信息按批更新一次
+     *
+     * @param messages 消息集合
+     * @return 成功入队的消息数,队列满时剩余消息不入队
+     */
+    public int putqAll(Collection<? extends MESSAGE_BLOCK> messages) {
+        int count = AbstractRingBlockingQueue.offerAll(this.messageQueue, messages);
+        if (count > 0) {
+            this.queueStatistics.addReceived(count);
+            checkWatermark();
+        }
+        if (count < messages.size()) {
+            log.error("队列批量添加消息失败, 队列名称[{}], 当前大小[{}], 丢弃[{}]",
+                    this.queueName, this.messageQueue.size(), messages.size() - count);
+            QueueEvents.reject(this.queueName, 0, this.messageQueue.size(), this.queueCapacity, 0,
+                    messages.size() - count);
+        }
+        return count;
+    }
+
+    /**
+     * 从队列获取消息(按等待策略等待)
      */
     public MESSAGE_BLOCK getq() {
+        ack();
+        this.queueStatistics.markIdle();
+        if (this.elastic && claimRetire()) {
+            throw new WorkerRetiredException(this.queueName);
+        }
+        Object event = QueueEvents.beginDequeue();
+        if (!this.pauseGate.awaitResumed()) {
+            return null;
+        }
         try {
-            this.queueStatistics.getProcessedMessageCount().incrementAndGet();
-            return this.messageQueue.take();
+            this.queueStatistics.getProcessedMessageCount().increment();
+            MESSAGE_BLOCK message = this.elastic ? takeOrRetire() : this.waitStrategy.take(this.messageQueue);
+            checkWatermark();
+            QueueEvents.endDequeue(event, this.queueName, 0, 1);
+            this.queueStatistics.markBusy();
+            return message;
         } catch (InterruptedException e) {
-            this.queueStatistics.getProcessedMessageCount().decrementAndGet();
+            this.queueStatistics.getProcessedMessageCount().decrement();
             log.error("获取队列消息异常", e);
         }
         return null;
@@ -102,16 +798,107 @@ public abstract class Queue<MESSAGE_BLOCK> implements Queue_I {
      * 从队列获取消息(超时)
      */
     public MESSAGE_BLOCK getq(long milliSeconds) {
+        ack();
+        this.queueStatistics.markIdle();
+        if (this.elastic && claimRetire()) {
+            throw new WorkerRetiredException(this.queueName);
+        }
+        Object event = QueueEvents.beginDequeue();
+        long nanos = this.pauseGate.awaitResumed(TimeUnit.MILLISECONDS.toNanos(milliSeconds));
+        if (this.pauseGate.isPaused()) {
+            return null;
+        }
         try {
-            this.queueStatistics.getProcessedMessageCount().incrementAndGet();
-            return this.messageQueue.poll(milliSeconds, TimeUnit.MILLISECONDS);
+            this.queueStatistics.getProcessedMessageCount().increment();
+            MESSAGE_BLOCK message = this.waitStrategy.poll(this.messageQueue, Math.max(0, nanos), TimeUnit.NANOSECONDS);
+            checkWatermark();
+            QueueEvents.endDequeue(event, this.queueName, 0, message == null ? 0 : 1);
+            if (message != null) {
+                this.queueStatistics.markBusy();
+            }
+            return message;
         } catch (InterruptedException e) {
-            this.queueStatistics.getProcessedMessageCount().decrementAndGet();
+            this.queueStatistics.getProcessedMessageCount().decrement();
             log.error("获取队列消息异常", e);
         }
         return null;
     }
 
+    /**
+     * 批量获取消息
+     * 先取走队列中已有的消息,不足maxBatch时最多再等待lingerMillis
+     *
+     * @param maxBatch 每批最多消息数
+     * @param lingerMillis 凑批最长等待时间(毫秒),为0时只取已有消息
+     * @return 消息列表,可能为空
+     */
+    public List<MESSAGE_BLOCK> getq(int maxBatch, long lingerMillis) {
+        List<MESSAGE_BLOCK> batch = new ArrayList<>(Math.min(maxBatch, 256));
+        getq(batch, maxBatch, lingerMillis);
+        return batch;
+    }
+
+    /**
+     * 批量获取消息到调用方提供的集合,便于复用集合对象
+     *
+     * @param buffer 接收消息的集合
+     * @param maxBatch 每批最多消息数
+     * @param lingerMillis 凑批最长等待时间(毫秒)
+     * @return 获取到的消息数
+     */
+    public int getq(Collection<? super MESSAGE_BLOCK> buffer, int maxBatch, long lingerMillis) {
+        ack();
+        this.queueStatistics.markIdle();
+        if (this.elastic && claimRetire()) {
+            throw new WorkerRetiredException(this.queueName);
+        }
+        Object event = QueueEvents.beginDequeue();
+        if (!this.pauseGate.awaitResumed()) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            count = this.waitStrategy.drain(this.messageQueue, buffer, maxBatch, lingerMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            log.error("批量获取队列消息异常", e);
+        }
+        QueueEvents.endDequeue(event, this.queueName, 0, count);
+        if (count > 0) {
+            this.queueStatistics.addHandled(count);
+            checkWatermark();
+            this.queueStatistics.markBusy();
+            Object batch = QueueEvents.startSvcBatch(this.queueName, 0, count);
+            if (batch != null) {
+                this.svcBatch.set(batch);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 提交当前工作线程上一批消息的处理事件
+     */
+    private void endSvcBatch() {
+        Object batch = this.svcBatch.get();
+        if (batch != null) {
+            this.svcBatch.remove();
+            QueueEvents.endSvcBatch(batch);
+        }
+    }
+
+    /**
+     * 记录一条消息的处理耗时,由svc在处理完消息后调用
+     * 未开启延迟统计时不做任何事
+     *
+     * @param startNanos 开始处理时的System.nanoTime()
+     */
+    public void recordServiceTime(long startNanos) {
+        LatencyHistogram histogram = this.queueStatistics.getServiceTimeHistogram();
+        if (histogram != null) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+    }
+
     /**
      * 获取当前队列大小
      */
@@ -123,18 +910,19 @@ public abstract class Queue<MESSAGE_BLOCK> implements Queue_I {
      * 获取已入队的消息总数
      */
     public long getHasPutElementsLength() {
-        return this.queueStatistics.getReceivedMessageCount().get();
+        return this.queueStatistics.getReceivedMessageCount().sum();
     }
 
     /**
      * 检查队列是否可以继续添加消息
-     * 当队列使用率超过80%时返回false
+     * 当队列使用率超过高水位(默认80%)时返回false
      */
     public boolean isCanPut() {
-        if (this.messageQueue.size() / queueCapacity > 0.8) {
-            log.info("队列[{}]已达到容量上限(80%), 总容量[{}], 当前大小[{}], 累计接收[{}]",
-                    this.queueName, queueCapacity, this.messageQueue.size(), 
-                    this.queueStatistics.getReceivedMessageCount().get());
+        int size = this.messageQueue.size();
+        if ((double) size / queueCapacity > this.highWatermark) {
+            log.info("队列[{}]已达到高水位({}), 总容量[{}], 当前大小[{}], 累计接收[{}]",
+                    this.queueName, this.highWatermark, queueCapacity, size, 
+                    this.queueStatistics.getReceivedMessageCount().sum());
             return false;
         }
         return true;
@@ -155,7 +943,7 @@ public abstract class Queue<MESSAGE_BLOCK> implements Queue_I {
         QueueStatus queueStatus = new QueueStatus();
         queueStatus.setQueueIndex(1);
         queueStatus.setPendingCount(this.messageQueue.size());
-        queueStatus.setProcessedCount(this.queueStatistics.getProcessedMessageCount().get());
+        queueStatus.setProcessedCount(this.queueStatistics.getProcessedMessageCount().sum());
         queueStatus.setCapacity(queueCapacity);
         statusList.add(queueStatus);
         return statusList;
@@ -1,16 +1,44 @@
 package com.example.demo.queue.absqueue;
 
+import com.example.demo.queue.buffer.AbstractRingBlockingQueue;
+import com.example.demo.queue.buffer.JournaledBlockingQueue;
+import com.example.demo.queue.buffer.TimedBlockingQueue;
+import com.example.demo.queue.codec.MessageCodec;
+import com.example.demo.queue.codec.SerializableCodec;
+import com.example.demo.queue.config.QueueConfig;
+import com.example.demo.queue.config.QueueStorageType;
+import com.example.demo.queue.config.QueueWaitStrategy;
+import com.example.demo.queue.config.QueueWorkerMode;
+import com.example.demo.queue.exception.QueueException;
+import com.example.demo.queue.exception.QueueFullException;
+import com.example.demo.queue.exception.QueueTimeoutException;
+import com.example.demo.queue.exception.WorkerRetiredException;
+import com.example.demo.queue.jfr.QueueEvents;
 import com.example.demo.queue.mgr.QueueMMLMgr;
+import com.example.demo.queue.model.LatencyHistogram;
 import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.QueueStatisticsMgr;
 import com.example.demo.queue.model.QueueStatus;
+import com.example.demo.queue.store.JournalRecord;
+import com.example.demo.queue.store.WriteAheadJournal;
+import com.example.demo.queue.timer.TimeScheduler;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * 顺序队列实现
@@ -18,15 +46,99 @@ import java.util.concurrent.atomic.AtomicLong;
  * 特点:
  * - 每个线程对应一个阻塞队列
  * - 根据任务序号分配到对应线程队列
+ * - 任务序号先映射到固定数量的虚拟分区,再由分区表映射到线程队列,运行中可通过repartition调整线程队列数
  * - 支持队列状态监控
  */
 @Slf4j
-public abstract class SequenceQueue<MESSAGE_BLOCK> implements Queue_I {
+public abstract class SequenceQueue<MESSAGE_BLOCK> implements ManageableQueue {
+
+    /**
+     * 虚拟分区数,线程队列数不能超过该值
+     */
+    public static final int VIRTUAL_PARTITIONS = 1024;
+
+    /**
+     * 迁移消息或放入控制标记时目标线程队列已满的重试间隔
+     */
+    private static final long FULL_RETRY_NANOS = 1_000_000L;
+
+    /**
+     * holdIfFenced的结果: 分区未在迁移、已暂存、目标线程队列已满、预写日志拒绝写入
+     */
+    private static final int NOT_FENCED = 0;
+    private static final int HELD = 1;
+    private static final int HOLD_FULL = 2;
+    private static final int HOLD_REJECTED = 3;
+
+    /**
+     * 等待线程队列腾出空间的putq每次持有入队纪元的最长时间,超过后退出纪元重新路由,
+     * 重新分区等待旧纪元的putq退出时最多等待这么久
+     */
+    private static final long PUT_EPOCH_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * 可重新分区时线程池空闲线程的存活时间(秒)
+     */
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
 
     // 基本配置
     private String queueName;
-    protected int threadCount = 1;
+    protected volatile int threadCount = 1;
+    // 线程队列数上限,需在start之前设置,0表示与启动时的线程数相同
+    private int maxThreadCount;
     private int queueCapacity;
+    // 存储类型,需在start之前设置
+    private QueueStorageType storageType = QueueStorageType.LINKED;
+    // 消费者等待策略
+    protected QueueWaitStrategy waitStrategy = QueueWaitStrategy.BLOCKING;
+    // 是否统计排队时间和处理时间,需在start之前设置
+    private boolean latencyTracking = false;
+    // 热点统计采样率,0表示不统计,需在start之前设置
+    private int hotKeySampleRate;
+    // 工作线程模式,需在start之前设置
+    private QueueWorkerMode workerMode = QueueWorkerMode.PLATFORM;
+    // 消息编解码器,消息需要写入磁盘时使用
+    private MessageCodec<MESSAGE_BLOCK> messageCodec;
+    // 预写日志目录,为null时不开启预写日志
+    private String journalDirectory;
+    // 预写日志段大小(字节)
+    private int journalSegmentBytes;
+    // 预写日志刷盘间隔(毫秒)
+    private long journalFlushIntervalMillis;
+    // 是否等待刷盘完成后putq才返回
+    private boolean journalSyncWrites;
+    // 预写日志,所有线程队列共享
+    private WriteAheadJournal<MESSAGE_BLOCK> journal;
+    // 写预写日志的线程队列,与messageQueueArray一一对应
+    private JournaledBlockingQueue<MESSAGE_BLOCK>[] journaledLanes;
+    // 高水位和低水位比例,需在start之前设置
+    private double highWatermark = 0.8;
+    private double lowWatermark = 0.5;
+    // 每个线程队列的水位检测
+    private final WatermarkMonitor watermark = new WatermarkMonitor();
+    // 暂停开关
+    private final PauseGate pauseGate = new PauseGate();
+
+    // 虚拟分区到线程队列的映射,重新分区时整体替换
+    private volatile int[] partitionTable;
+    // 正在迁移的虚拟分区,迁移完成前这些分区的新消息暂存在这里
+    private final Map<Integer, PartitionFence> fences = new HashMap<>();
+    private final Object fenceLock = new Object();
+    // 是否有正在迁移的虚拟分区
+    private volatile boolean fencing;
+    // 每个线程队列暂存在迁移中分区的消息数,在fenceLock内修改,暂存的消息计入目标线程队列的容量
+    private int[] heldCounts;
+    // 重新分区互斥
+    private final Object repartitionLock = new Object();
+    // 入队纪元,重新分区时切换,用于等待按旧分区表路由的putq完成
+    private volatile int putEpoch;
+    private final LongAdder[] inFlightPuts = {new LongAdder(), new LongAdder()};
+    // 已放入线程队列尚未被处理的控制标记数
+    private final AtomicInteger pendingControls = new AtomicInteger();
+    // 正在下线的线程队列数
+    private final AtomicInteger retiringLanes = new AtomicInteger();
+    // 批量获取时取到的控制标记,由该线程队列的工作线程在下一次getq时处理
+    private ArrayDeque<LaneControl>[] deferredControls;
     
     // 线程池相关
     private Executor threadPoolExecutor;
@@ -35,24 +147,194 @@ public abstract class SequenceQueue<MESSAGE_BLOCK> implements Queue_I {
     
     // 统计信息
     QueueStatistics stats = new QueueStatistics();
-    private AtomicLong[] threadMessageCounters;
-    private HashMap<Integer, AtomicLong> threadIndexToMessageCountMap = new HashMap<>();
+    private LongAdder[] threadMessageCounters;
+    // 每个线程队列的排队时间和处理时间直方图,开启延迟统计时创建
+    private LatencyHistogram[] laneWaitHistograms;
+    private LatencyHistogram[] laneServiceHistograms;
+    // 每个线程队列工作线程处理消息的累计时间,用于计算工作线程忙碌比例
+    private LongAdder[] laneBusyNanos;
+    // 工作线程从getq返回消息的时间,只由该线程队列的工作线程读写,0表示正在getq中等待
+    private long[] laneResumeNanos;
+
+    // 线程本地队列序号,getQ之前初始化每个线程对应的队列
+    private final ThreadLocal<Integer> threadLocalIndex = ThreadLocal.withInitial(() -> threadQueueIndex.getAndIncrement());
 
     // 线程本地队列
     private final ThreadLocal<BlockingQueue<MESSAGE_BLOCK>> threadLocalQueue = new ThreadLocal<BlockingQueue<MESSAGE_BLOCK>>() {
         // getQ之前,初始化每个线程对应的队列
         @Override
         protected BlockingQueue<MESSAGE_BLOCK> initialValue() {
-            int qIndex = threadQueueIndex.getAndIncrement();
-            return messageQueueArray[qIndex];
+            return messageQueueArray[threadLocalIndex.get()];
         }
     };
 
+    // 工作线程正在处理的批次,JFR开启SvcBatch事件时才有值
+    private final ThreadLocal<Object> svcBatch = new ThreadLocal<>();
+
+    /**
+     * 线程队列中的控制标记,由getq处理,不会返回给svc
+     */
+    private static final class LaneControl {
+        // 在该线程队列中的旧消息已全部处理完的虚拟分区
+        private final int[] partitions;
+        // 线程队列已下线,工作线程退出
+        private final boolean retire;
+
+        private LaneControl(int[] partitions, boolean retire) {
+            this.partitions = partitions;
+            this.retire = retire;
+        }
+    }
+
+    /**
+     * 迁移中的虚拟分区
+     */
+    private final class PartitionFence {
+        // 迁移到的线程队列
+        private final int targetLane;
+        // 迁移完成前收到的消息,开启预写日志时记录ID为已写入的日志记录,否则为-1
+        private final ArrayDeque<JournalRecord<MESSAGE_BLOCK>> held = new ArrayDeque<>();
+
+        private PartitionFence(int targetLane) {
+            this.targetLane = targetLane;
+        }
+    }
+
     /**
      * 具体的队列处理逻辑,由子类实现
+     * 重新分区缩容时,被下线线程队列的工作线程在getq中抛出WorkerRetiredException结束svc循环,svc不应吞掉该异常
      */
     public abstract void svc();
 
+    /**
+     * 每个线程队列是否只被一个工作线程消费
+     * 为true时线程队列可以使用MPSC_RING/SPSC_RING存储
+     */
+    protected boolean hasExclusiveLaneConsumer() {
+        return true;
+    }
+
+    /**
+     * 设置每个线程队列的存储类型,需在start之前调用
+     * 每个线程队列只有一个消费线程,可使用MPSC_RING;只有一个固定的生产线程时可使用SPSC_RING。
+     * 重新分区时调用repartition的线程和迁出线程队列的工作线程也会写入线程队列,
+     * 所以线程队列数上限大于启动线程数时SPSC_RING在start时退化为MPSC_RING,
+     * SPSC_RING队列不支持repartition和putqDelayed
+     */
+    public void setStorageType(QueueStorageType storageType) {
+        this.storageType = storageType == null ? QueueStorageType.LINKED : storageType;
+    }
+
+    /**
+     * 设置消费者等待策略
+     */
+    public void setWaitStrategy(QueueWaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy == null ? QueueWaitStrategy.BLOCKING : waitStrategy;
+    }
+
+    /**
+     * 设置是否统计排队时间和处理时间分布,需在start之前调用
+     * 开启后每条消息入队时额外包装一个时间戳对象
+     */
+    public void setLatencyTracking(boolean latencyTracking) {
+        this.latencyTracking = latencyTracking;
+    }
+
+    /**
+     * 开启热点统计,需在start之前调用
+     * 统计快照中记录消息数最多的任务序号和每个线程队列工作线程的忙碌比例,用于找出限制顺序处理吞吐的热点序号
+     *
+     * @param sampleRate 采样率,每sampleRate条消息采样一条,0表示不统计
+     */
+    public void setHotKeyTracking(int sampleRate) {
+        this.hotKeySampleRate = Math.max(0, sampleRate);
+    }
+
+    /**
+     * 设置工作线程模式,需在start之前调用
+     * VIRTUAL模式下每个工作线程是一个虚拟线程,可以把线程数设到数千以并发处理阻塞型任务
+     */
+    public void setWorkerMode(QueueWorkerMode workerMode) {
+        this.workerMode = workerMode == null ? QueueWorkerMode.PLATFORM : workerMode;
+    }
+
+    /**
+     * 设置消息编解码器,未设置时使用Java序列化
+     */
+    public void setMessageCodec(MessageCodec<MESSAGE_BLOCK> messageCodec) {
+        this.messageCodec = messageCodec;
+    }
+
+    /**
+     * 开启预写日志,需在start之前调用
+     * 日志记录任务序号,重启后未确认的消息按原顺序重放到任务序号对应的线程队列
+     *
+     * @param directory 日志目录,实际使用其下以队列名称命名的子目录
+     * @param segmentBytes 单个日志段大小(字节)
+     * @param flushIntervalMillis 刷盘间隔(毫秒),同一间隔内的写入合并为一次刷盘
+     * @param syncWrites 是否等待刷盘完成后putq才返回
+     */
+    public void enableJournal(String directory, int segmentBytes, long flushIntervalMillis, boolean syncWrites) {
+        this.journalDirectory = directory;
+        this.journalSegmentBytes = segmentBytes;
+        this.journalFlushIntervalMillis = flushIntervalMillis;
+        this.journalSyncWrites = syncWrites;
+    }
+
+    /**
+     * 设置线程队列数上限,需在start之前调用
+     * repartition扩容时不能超过该值,未设置时与启动时的线程数相同
+     */
+    public void setMaxThreadCount(int maxThreadCount) {
+        this.maxThreadCount = maxThreadCount;
+    }
+
+    /**
+     * 设置高低水位比例,需在start之前调用
+     * 任一线程队列积压达到高水位时isCanPut返回false并通知监听器,回落到低水位以下才通知回落
+     *
+     * @param high 高水位比例(0-1)
+     * @param low 低水位比例(0-1)
+     */
+    public void setWatermarks(double high, double low) {
+        this.highWatermark = high;
+        this.lowWatermark = Math.min(low, high);
+    }
+
+    /**
+     * 添加水位监听器,按线程队列分别通知
+     */
+    public void addWatermarkListener(WatermarkListener listener) {
+        this.watermark.addListener(listener);
+    }
+
+    /**
+     * 移除水位监听器
+     */
+    public void removeWatermarkListener(WatermarkListener listener) {
+        this.watermark.removeListener(listener);
+    }
+
+    /**
+     * 按配置启动队列处理器
+     */
+    public void start(String queueName, QueueConfig config) {
+        QueueStatisticsMgr.getInstance().configureInterval(config.getStatisticsInterval());
+        this.stats.setHistorySize(config.getHistorySize());
+        setStorageType(config.getStorageType());
+        setWaitStrategy(config.getWaitStrategy());
+        setLatencyTracking(config.isLatencyTracking());
+        setHotKeyTracking(config.isHotKeyTracking() ? config.getHotKeySampleRate() : 0);
+        setWorkerMode(config.getWorkerMode());
+        setWatermarks(config.getWarningThreshold(), config.getLowWatermarkThreshold());
+        setMaxThreadCount(config.getSequenceMaxThreadCount());
+        if (config.isJournalEnabled()) {
+            enableJournal(config.getJournalDirectory(), config.getJournalSegmentBytes(),
+                    config.getJournalFlushIntervalMillis(), config.isJournalSyncWrites());
+        }
+        start(queueName, config.getDefaultThreadCount(), config.getDefaultQueueCapacity());
+    }
+
     /**
      * 启动队列处理器
      */
@@ -60,55 +342,755 @@ public abstract class SequenceQueue<MESSAGE_BLOCK> implements Queue_I {
     public void start(String queueName, int threadCount, int queueCapacity) {
         this.queueName = queueName;
         this.stats.setQueueName(queueName);
-        QueueMMLMgr.getInstance().registerQueueMML(queueName, (BlockingQueue<Object>) this);
+        QueueMMLMgr.getInstance().registerQueueMML(queueName, this);
 
         // 设置默认线程数和队列长度
         threadCount = threadCount <= 0 ? 2 : threadCount;
         queueCapacity = queueCapacity <= 0 ? 10000 : queueCapacity;
         
-        this.stats.setThreadCount(threadCount);
-        this.stats.setMaxQueueSize(queueCapacity);
-        this.queueCapacity = queueCapacity;
         this.threadCount = threadCount;
+        this.maxThreadCount = Math.min(Math.max(this.maxThreadCount, threadCount), VIRTUAL_PARTITIONS);
+        this.queueCapacity = queueCapacity;
+
+        // 线程队列不是由单个线程独占消费时,不能使用单消费者存储
+        if (!hasExclusiveLaneConsumer() && this.storageType.isSingleConsumer()) {
+            log.warn("队列[{}]的线程队列可能被多个线程消费, 存储类型[{}]退化为[{}]", queueName,
+                    this.storageType, this.storageType.forMultiConsumer());
+            this.storageType = this.storageType.forMultiConsumer();
+        }
+
+        // 可以重新分区时控制标记和迁移的消息由其他线程写入,不能使用单生产者存储
+        if (this.maxThreadCount > threadCount && this.storageType.isSingleProducer()) {
+            log.warn("队列[{}]可以重新分区, 线程队列会有多个生产线程, 存储类型[{}]退化为[{}]", queueName,
+                    this.storageType, this.storageType.forMultiProducer());
+            this.storageType = this.storageType.forMultiProducer();
+        }
+
+        // 虚拟线程忙等会一直占住载体线程,自旋类等待策略退化为阻塞
+        if (this.workerMode.effective() == QueueWorkerMode.VIRTUAL && this.waitStrategy.isSpinning()) {
+            log.warn("队列[{}]使用虚拟线程, 等待策略[{}]退化为[{}]", queueName,
+                    this.waitStrategy, QueueWaitStrategy.BLOCKING);
+            this.waitStrategy = QueueWaitStrategy.BLOCKING;
+        }
+
+        // 初始化队列数组和计数器,按线程队列数上限分配,扩容时不需要替换数组
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        BlockingQueue<MESSAGE_BLOCK>[] queues = new BlockingQueue[this.maxThreadCount];
+        this.messageQueueArray = queues;
+        this.threadMessageCounters = new LongAdder[this.maxThreadCount];
+        this.heldCounts = new int[this.maxThreadCount];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayDeque<LaneControl>[] controls = new ArrayDeque[this.maxThreadCount];
+        this.deferredControls = controls;
+        this.threadPoolExecutor = this.workerMode.createExecutor(queueName, this.maxThreadCount);
+        if (this.maxThreadCount > threadCount && this.threadPoolExecutor instanceof ThreadPoolExecutor) {
+            // 缩容后让线程池中的空闲线程也退出
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) this.threadPoolExecutor;
+            pool.setKeepAliveTime(IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            pool.allowCoreThreadTimeOut(true);
+        }
 
-        // 初始化队列数组和计数器
-        this.messageQueueArray = new BlockingQueue[threadCount];
-        this.threadMessageCounters = new AtomicLong[threadCount];
-        this.threadPoolExecutor = Executors.newFixedThreadPool(threadCount);
+        if (this.latencyTracking) {
+            this.stats.enableLatencyTracking();
+            this.laneWaitHistograms = new LatencyHistogram[this.maxThreadCount];
+            this.laneServiceHistograms = new LatencyHistogram[this.maxThreadCount];
+        }
+        if (this.hotKeySampleRate > 0) {
+            this.stats.enableHotKeyTracking(this.hotKeySampleRate);
+        }
+        this.laneBusyNanos = new LongAdder[this.maxThreadCount];
+        this.laneResumeNanos = new long[this.maxThreadCount];
+        this.stats.setLaneBusyTracking(true);
 
         // 为每个线程创建队列和计数器
         for (int i = 0; i < threadCount; i++) {
-            AtomicLong messageCounter = new AtomicLong(0);
-            this.threadIndexToMessageCountMap.put(i, messageCounter);
-            this.messageQueueArray[i] = new LinkedBlockingQueue<>(queueCapacity);
-            this.threadMessageCounters[i] = new AtomicLong(0);
+            createLane(i);
+        }
+        int[] table = new int[VIRTUAL_PARTITIONS];
+        for (int partition = 0; partition < VIRTUAL_PARTITIONS; partition++) {
+            table[partition] = partition % threadCount;
         }
+        this.partitionTable = table;
+        List<JournalRecord<MESSAGE_BLOCK>> recovered = this.journalDirectory != null
+                ? openJournal() : Collections.emptyList();
+        // 环形缓冲区的实际容量会取整为2的幂
+        this.queueCapacity = this.messageQueueArray[0].remainingCapacity();
+        this.watermark.init(queueName, this.maxThreadCount, this.queueCapacity, this.highWatermark, this.lowWatermark);
+        this.stats.setThreadCount(threadCount);
+        this.stats.setMaxQueueSize(this.queueCapacity);
 
         // 启动工作线程
         for (int i = 0; i < threadCount; i++) {
-            this.threadPoolExecutor.execute(this::svc);
+            startWorker(i);
         }
+        replayJournal(recovered);
 
         this.stats.setQueueInstance(this);
         this.stats.register();
     }
 
+    /**
+     * 打开预写日志并为每个线程队列加上日志层,打开失败时只使用内存队列
+     *
+     * @return 上次运行未确认的消息
+     */
+    @SuppressWarnings("unchecked")
+    private List<JournalRecord<MESSAGE_BLOCK>> openJournal() {
+        MessageCodec<MESSAGE_BLOCK> codec = this.messageCodec != null ? this.messageCodec : new SerializableCodec<>();
+        try {
+            WriteAheadJournal<MESSAGE_BLOCK> wal = new WriteAheadJournal<>(
+                    Paths.get(this.journalDirectory, this.queueName), this.journalSegmentBytes,
+                    this.journalFlushIntervalMillis, this.journalSyncWrites, codec);
+            List<JournalRecord<MESSAGE_BLOCK>> recovered = wal.recover();
+            this.journal = wal;
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            JournaledBlockingQueue<MESSAGE_BLOCK>[] lanes = new JournaledBlockingQueue[this.maxThreadCount];
+            this.journaledLanes = lanes;
+            for (int i = 0; i < this.threadCount; i++) {
+                this.journaledLanes[i] = new JournaledBlockingQueue<>(this.messageQueueArray[i], wal, i);
+                this.messageQueueArray[i] = this.journaledLanes[i];
+            }
+            log.info("队列[{}]开启预写日志, 目录[{}], 刷盘间隔[{}ms], 同步写[{}], 待重放[{}]", this.queueName,
+                    this.journalDirectory, this.journalFlushIntervalMillis, this.journalSyncWrites, recovered.size());
+            return recovered;
+        } catch (IOException e) {
+            log.error("队列[{}]打开预写日志失败, 只使用内存队列", this.queueName, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 按记录中的任务序号重放上次运行未确认的消息,在工作线程启动后执行,线程队列满时等待消费
+     */
+    private void replayJournal(List<JournalRecord<MESSAGE_BLOCK>> recovered) {
+        if (recovered.isEmpty()) {
+            return;
+        }
+        int count = 0;
+        try {
+            for (JournalRecord<MESSAGE_BLOCK> record : recovered) {
+                int index = this.partitionTable[partitionOf(record.getKey())];
+                this.journaledLanes[index].restore(record);
+                this.threadMessageCounters[index].increment();
+                count++;
+            }
+        } catch (InterruptedException e) {
+            log.error("队列[{}]重放预写日志被中断, 已重放[{}]", this.queueName, count, e);
+        }
+        this.stats.addReceived(count);
+        log.info("队列[{}]重放预写日志[{}]条", this.queueName, count);
+    }
+
+    /**
+     * 创建线程队列,开启预写日志后创建的线程队列同样写日志
+     */
+    @SuppressWarnings("unchecked")
+    private void createLane(int index) {
+        BlockingQueue<MESSAGE_BLOCK> lane = this.storageType.createQueue(this.queueCapacity);
+        if (this.latencyTracking) {
+            this.laneWaitHistograms[index] = new LatencyHistogram();
+            this.laneServiceHistograms[index] = new LatencyHistogram();
+            lane = new TimedBlockingQueue<>(lane, this.stats.getWaitTimeHistogram(), this.laneWaitHistograms[index]);
+        }
+        if (this.journal != null) {
+            this.journaledLanes[index] = new JournaledBlockingQueue<>(lane, this.journal, index);
+            lane = this.journaledLanes[index];
+        }
+        this.messageQueueArray[index] = lane;
+        if (this.threadMessageCounters[index] == null) {
+            this.threadMessageCounters[index] = new LongAdder();
+        }
+        if (this.laneBusyNanos[index] == null) {
+            this.laneBusyNanos[index] = new LongAdder();
+        }
+    }
+
+    /**
+     * 启动消费指定线程队列的工作线程
+     */
+    private void startWorker(int index) {
+        this.threadPoolExecutor.execute(() -> {
+            // 线程池中的线程可能被复用,显式绑定线程队列
+            this.threadLocalIndex.set(index);
+            this.threadLocalQueue.set(this.messageQueueArray[index]);
+            this.laneResumeNanos[index] = 0;
+            try {
+                svc();
+            } catch (WorkerRetiredException e) {
+                log.info("队列[{}]线程队列[{}]已下线, 工作线程退出", this.queueName, index);
+            } finally {
+                endSvcBatch();
+                this.threadLocalIndex.remove();
+                this.threadLocalQueue.remove();
+            }
+        });
+    }
+
+    /**
+     * 在线调整线程队列数
+     * 只有分到其他线程队列的虚拟分区需要迁移: 先暂存这些分区的新消息,在旧线程队列尾部放入迁移标记,
+     * 旧线程队列处理完标记之前的消息后再把暂存消息按顺序转入新线程队列,同一任务序号的消息始终按顺序处理。
+     * 缩容时被移除的线程队列处理完剩余消息后工作线程退出。方法在放入迁移标记后返回,不等待迁移完成。
+     * 迁出分区的旧线程队列已满时等待消费腾出放迁移标记的位置;暂停消费期间不会腾出位置,直接返回false
+     *
+     * @param newThreadCount 新的线程队列数,不能超过setMaxThreadCount设置的上限
+     * @return 上一次重新分区尚未完成或队列已暂停时返回false
+     */
+    public boolean repartition(int newThreadCount) {
+        if (!hasExclusiveLaneConsumer()) {
+            throw new QueueException(String.format("队列[%s]的线程队列不是由单个线程独占消费, 不支持重新分区", this.queueName));
+        }
+        if (this.partitionTable == null) {
+            throw new QueueException(String.format("队列[%s]未启动", this.queueName));
+        }
+        if (this.storageType.isSingleProducer()) {
+            throw new QueueException(String.format("队列[%s]的线程队列只允许一个生产线程, 不支持重新分区", this.queueName));
+        }
+        if (newThreadCount < 1 || newThreadCount > this.maxThreadCount) {
+            throw new IllegalArgumentException(String.format("队列[%s]线程队列数[%d]超出范围[1, %d]",
+                    this.queueName, newThreadCount, this.maxThreadCount));
+        }
+        synchronized (this.repartitionLock) {
+            if (isRepartitioning() || isPaused()) {
+                return false;
+            }
+            int oldThreadCount = this.threadCount;
+            if (newThreadCount == oldThreadCount) {
+                return true;
+            }
+            for (int i = oldThreadCount; i < newThreadCount; i++) {
+                createLane(i);
+                startWorker(i);
+            }
+
+            int[] oldTable = this.partitionTable;
+            int[] newTable = rebalance(oldTable, newThreadCount, this.maxThreadCount);
+            int[] movedCounts = new int[oldThreadCount];
+            synchronized (this.fenceLock) {
+                for (int partition = 0; partition < VIRTUAL_PARTITIONS; partition++) {
+                    if (newTable[partition] != oldTable[partition]) {
+                        this.fences.put(partition, new PartitionFence(newTable[partition]));
+                        movedCounts[oldTable[partition]]++;
+                    }
+                }
+                this.fencing = !this.fences.isEmpty();
+            }
+
+            // 切换纪元后等待按旧分区表路由的putq完成,之后的putq都能看到迁移中的分区
+            // 等待线程队列腾出空间的putq每隔PUT_EPOCH_SLICE_NANOS退出一次纪元,等待时间有上限
+            int epoch = this.putEpoch;
+            this.putEpoch = epoch + 1;
+            while (this.inFlightPuts[epoch & 1].sum() != 0) {
+                LockSupport.parkNanos(FULL_RETRY_NANOS);
+            }
+            this.partitionTable = newTable;
+
+            // 迁移标记排在迁出分区的所有旧消息之后
+            int[][] moved = new int[oldThreadCount][];
+            for (int lane = 0; lane < oldThreadCount; lane++) {
+                moved[lane] = new int[movedCounts[lane]];
+                movedCounts[lane] = 0;
+            }
+            for (int partition = 0; partition < VIRTUAL_PARTITIONS; partition++) {
+                if (newTable[partition] != oldTable[partition]) {
+                    int lane = oldTable[partition];
+                    moved[lane][movedCounts[lane]++] = partition;
+                }
+            }
+            for (int lane = 0; lane < oldThreadCount; lane++) {
+                if (moved[lane].length > 0) {
+                    offerControl(lane, new LaneControl(moved[lane], false));
+                }
+            }
+            for (int lane = newThreadCount; lane < oldThreadCount; lane++) {
+                this.retiringLanes.incrementAndGet();
+                offerControl(lane, new LaneControl(null, true));
+            }
+
+            this.threadCount = newThreadCount;
+            this.stats.setThreadCount(newThreadCount);
+            log.info("队列[{}]线程队列数从[{}]调整为[{}], 迁移虚拟分区[{}]", this.queueName, oldThreadCount,
+                    newThreadCount, this.fences.size());
+            return true;
+        }
+    }
+
+    /**
+     * 是否有尚未完成的重新分区: 仍有分区在迁移或线程队列在下线
+     */
+    public boolean isRepartitioning() {
+        return this.fencing || this.retiringLanes.get() > 0;
+    }
+
+    /**
+     * 调整线程队列数,等同于repartition
+     * 线程队列不是由单个线程独占消费或只允许一个生产线程时不支持,返回false
+     */
+    @Override
+    public boolean resize(int threadCount) {
+        if (!hasExclusiveLaneConsumer() || this.storageType.isSingleProducer()) {
+            log.warn("队列[{}]当前模式不支持调整线程队列数", this.queueName);
+            return false;
+        }
+        return repartition(threadCount);
+    }
+
+    @Override
+    public void pause() {
+        this.pauseGate.pause();
+        log.info("队列[{}]暂停消费", this.queueName);
+    }
+
+    @Override
+    public void resume() {
+        this.pauseGate.resume();
+        log.info("队列[{}]恢复消费", this.queueName);
+    }
+
+    @Override
+    public boolean isPaused() {
+        return this.pauseGate.isPaused();
+    }
+
+    /**
+     * 计算新的分区表: 各线程队列分到的虚拟分区数相差不超过1,只移动超出份额或所在线程队列被移除的分区
+     */
+    private static int[] rebalance(int[] table, int laneCount, int maxLaneCount) {
+        int[] newTable = table.clone();
+        int[] counts = new int[maxLaneCount];
+        for (int lane : table) {
+            counts[lane]++;
+        }
+        int base = VIRTUAL_PARTITIONS / laneCount;
+        int extra = VIRTUAL_PARTITIONS % laneCount;
+        int[] movable = new int[VIRTUAL_PARTITIONS];
+        int movableCount = 0;
+        for (int partition = 0; partition < VIRTUAL_PARTITIONS; partition++) {
+            int lane = table[partition];
+            int quota = lane >= laneCount ? 0 : base + (lane < extra ? 1 : 0);
+            if (counts[lane] > quota) {
+                counts[lane]--;
+                movable[movableCount++] = partition;
+            }
+        }
+        int next = 0;
+        for (int lane = 0; lane < laneCount; lane++) {
+            int quota = base + (lane < extra ? 1 : 0);
+            while (counts[lane] < quota) {
+                newTable[movable[next++]] = lane;
+                counts[lane]++;
+            }
+        }
+        return newTable;
+    }
+
+    /**
+     * 任务序号对应的虚拟分区
+     */
+    private static int partitionOf(int taskSeq) {
+        return Math.abs(taskSeq % VIRTUAL_PARTITIONS);
+    }
+
+    /**
+     * 进入putq,返回当前纪元。重新分区切换纪元后会等待旧纪元的putq全部退出
+     */
+    private int enterPut() {
+        while (true) {
+            int epoch = this.putEpoch;
+            this.inFlightPuts[epoch & 1].increment();
+            if (this.putEpoch == epoch) {
+                return epoch;
+            }
+            this.inFlightPuts[epoch & 1].decrement();
+        }
+    }
+
+    private void exitPut(int epoch) {
+        this.inFlightPuts[epoch & 1].decrement();
+    }
+
+    /**
+     * 虚拟分区正在迁移时暂存消息,迁移完成后按顺序转入新线程队列
+     * 暂存的消息计入目标线程队列的容量;开启预写日志时先写日志再暂存,与直接入队一样在putq返回前写入日志
+     *
+     * @return NOT_FENCED、HELD、HOLD_FULL或HOLD_REJECTED
+     */
+    private int holdIfFenced(int partition, int taskSeq, MESSAGE_BLOCK messageBlock) {
+        if (!this.fencing) {
+            return NOT_FENCED;
+        }
+        int lane;
+        synchronized (this.fenceLock) {
+            PartitionFence fence = this.fences.get(partition);
+            if (fence == null) {
+                return NOT_FENCED;
+            }
+            int result = hold(fence, taskSeq, messageBlock);
+            if (result != HELD) {
+                return result;
+            }
+            lane = fence.targetLane;
+        }
+        checkWatermark(lane);
+        return HELD;
+    }
+
+    /**
+     * 批量暂存,目标线程队列放不下时只暂存放得下的部分
+     *
+     * @return 分区未在迁移时返回-1,否则返回暂存的消息数
+     */
+    private int holdIfFenced(int partition, int taskSeq, Collection<? extends MESSAGE_BLOCK> messageBlocks) {
+        if (!this.fencing) {
+            return -1;
+        }
+        int count = 0;
+        int lane;
+        synchronized (this.fenceLock) {
+            PartitionFence fence = this.fences.get(partition);
+            if (fence == null) {
+                return -1;
+            }
+            for (MESSAGE_BLOCK messageBlock : messageBlocks) {
+                if (hold(fence, taskSeq, messageBlock) != HELD) {
+                    break;
+                }
+                count++;
+            }
+            lane = fence.targetLane;
+        }
+        if (count > 0) {
+            checkWatermark(lane);
+        }
+        return count;
+    }
+
+    /**
+     * 在fenceLock内暂存一条消息
+     *
+     * @return HELD、HOLD_FULL或HOLD_REJECTED
+     */
+    private int hold(PartitionFence fence, int taskSeq, MESSAGE_BLOCK messageBlock) {
+        int lane = fence.targetLane;
+        if (this.heldCounts[lane] >= this.messageQueueArray[lane].remainingCapacity()) {
+            return HOLD_FULL;
+        }
+        long id = -1;
+        if (this.journal != null) {
+            id = this.journal.append(taskSeq, messageBlock);
+            if (id < 0) {
+                return HOLD_REJECTED;
+            }
+        }
+        fence.held.addLast(new JournalRecord<>(id, taskSeq, messageBlock));
+        this.heldCounts[lane]++;
+        return HELD;
+    }
+
+    /**
+     * 放入控制标记,线程队列满时等待消费,不占用CPU
+     */
+    @SuppressWarnings("unchecked")
+    private void offerControl(int lane, LaneControl control) {
+        this.pendingControls.incrementAndGet();
+        MESSAGE_BLOCK element = (MESSAGE_BLOCK) control;
+        while (this.journaledLanes == null
+                ? !this.messageQueueArray[lane].offer(element)
+                : !this.journaledLanes[lane].offerControl(element)) {
+            LockSupport.parkNanos(FULL_RETRY_NANOS);
+        }
+    }
+
+    /**
+     * 处理工作线程取到的控制标记,此时该线程之前取出的消息都已处理完
+     *
+     * @return 线程队列已下线时返回true
+     */
+    private boolean handleControl(LaneControl control) {
+        this.pendingControls.decrementAndGet();
+        if (control.retire) {
+            this.retiringLanes.decrementAndGet();
+            return true;
+        }
+        for (int partition : control.partitions) {
+            releaseFence(partition);
+        }
+        return false;
+    }
+
+    /**
+     * 把迁移中分区暂存的消息按顺序转入新线程队列,转完后解除暂存
+     * 新线程队列满时释放锁等待消费,期间该分区的新消息继续暂存
+     */
+    private void releaseFence(int partition) {
+        while (true) {
+            synchronized (this.fenceLock) {
+                PartitionFence fence = this.fences.get(partition);
+                if (fence == null) {
+                    return;
+                }
+                int lane = fence.targetLane;
+                int count = 0;
+                JournalRecord<MESSAGE_BLOCK> record;
+                while ((record = fence.held.peekFirst()) != null) {
+                    // 暂存时已写过日志,转入时不再重复写
+                    boolean accepted = this.journaledLanes == null
+                            ? this.messageQueueArray[lane].offer(record.getMessage())
+                            : this.journaledLanes[lane].offer(record);
+                    if (!accepted) {
+                        break;
+                    }
+                    fence.held.pollFirst();
+                    count++;
+                }
+                if (count > 0) {
+                    this.heldCounts[lane] -= count;
+                    this.threadMessageCounters[lane].add(count);
+                    checkWatermark(lane);
+                }
+                if (fence.held.isEmpty()) {
+                    this.fences.remove(partition);
+                    this.fencing = !this.fences.isEmpty();
+                    return;
+                }
+            }
+            LockSupport.parkNanos(FULL_RETRY_NANOS);
+        }
+    }
+
+    /**
+     * 处理上一次批量获取时取到的控制标记
+     *
+     * @throws WorkerRetiredException 当前线程队列已下线
+     */
+    private void runDeferredControls() {
+        if (this.pendingControls.get() == 0) {
+            return;
+        }
+        ArrayDeque<LaneControl> deferred = this.deferredControls[currentLaneIndex()];
+        LaneControl control;
+        while (deferred != null && (control = deferred.pollFirst()) != null) {
+            if (handleControl(control)) {
+                throw new WorkerRetiredException(this.queueName);
+            }
+        }
+    }
+
+    /**
+     * 从批量获取的结果中移除控制标记,留到下一次getq时处理: 此时同一批中标记之前的消息还没有处理完
+     *
+     * @return 移除的控制标记数
+     */
+    private int deferControls(Collection<?> buffer) {
+        int removed = 0;
+        for (Iterator<?> iterator = buffer.iterator(); iterator.hasNext(); ) {
+            Object element = iterator.next();
+            if (element instanceof LaneControl) {
+                iterator.remove();
+                int lane = currentLaneIndex();
+                if (this.deferredControls[lane] == null) {
+                    this.deferredControls[lane] = new ArrayDeque<>();
+                }
+                this.deferredControls[lane].addLast((LaneControl) element);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 确认当前工作线程已取出的消息处理完成,同时提交上一批消息的SvcBatch事件
+     * getq会自动确认上一次取出的消息,处理完后需要立即确认时调用。未开启预写日志和JFR事件时不做任何事
+     */
+    public void ack() {
+        if (this.journal != null) {
+            this.journal.ackTaken();
+        }
+        endSvcBatch();
+    }
+
     /**
      * 添加消息到指定序号的队列
      */
     public int putq(int taskSeq, MESSAGE_BLOCK messageBlock) {
         taskSeq = Math.abs(taskSeq); // 处理负数序号
-        int index = taskSeq % this.threadCount;
-        
-        if (!this.messageQueueArray[index].offer(messageBlock)) {
-            log.error("添加消息到队列失败, 队列名称[{}]", this.queueName);
-            return -1;
+        int partition = partitionOf(taskSeq);
+        this.stats.recordKey(taskSeq);
+
+        Object event = QueueEvents.beginEnqueue();
+        int epoch = enterPut();
+        try {
+            int held = holdIfFenced(partition, taskSeq, messageBlock);
+            int index = this.partitionTable[partition];
+            if (held == HELD) {
+                QueueEvents.endEnqueue(event, this.queueName, index, this.messageQueueArray[index].size(), true);
+                this.stats.getReceivedMessageCount().increment();
+                return 0;
+            }
+            boolean accepted = held == NOT_FENCED && (this.journaledLanes == null
+                    ? this.messageQueueArray[index].offer(messageBlock)
+                    : this.journaledLanes[index].offer(taskSeq, messageBlock));
+            QueueEvents.endEnqueue(event, this.queueName, index, this.messageQueueArray[index].size(), accepted);
+            if (!accepted) {
+                log.error("添加消息到队列失败, 队列名称[{}]", this.queueName);
+                QueueEvents.reject(this.queueName, index, this.messageQueueArray[index].size(), this.queueCapacity, 0, 1);
+                return -1;
+            }
+
+            this.stats.getReceivedMessageCount().increment();
+            this.threadMessageCounters[index].increment();
+            checkWatermark(index);
+            return 0;
+        } finally {
+            exitPut(epoch);
         }
+    }
 
-        this.stats.getReceivedMessageCount().incrementAndGet();
-        this.threadMessageCounters[index].incrementAndGet();
-        this.threadIndexToMessageCountMap.get(index).incrementAndGet();
-        return 0;
+    /**
+     * 添加消息到指定序号的队列,队列满时最多等待timeoutMillis
+     *
+     * @param taskSeq 任务序号
+     * @param messageBlock 消息
+     * @param timeoutMillis 最长等待时间(毫秒),为0时不等待
+     * @throws QueueFullException 不等待且队列已满
+     * @throws QueueTimeoutException 等待超时
+     */
+    public int putq(int taskSeq, MESSAGE_BLOCK messageBlock, long timeoutMillis) {
+        taskSeq = Math.abs(taskSeq); // 处理负数序号
+        int partition = partitionOf(taskSeq);
+        this.stats.recordKey(taskSeq);
+
+        Object event = QueueEvents.beginEnqueue();
+        // 每次最多在一个纪元内等待PUT_EPOCH_SLICE_NANOS,避免重新分区一直等待阻塞中的putq;
+        // 重新进入纪元后按新的分区表路由
+        long remaining = TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMillis));
+        int index;
+        while (true) {
+            long sliceStart = System.nanoTime();
+            int held;
+            int epoch = enterPut();
+            try {
+                held = holdIfFenced(partition, taskSeq, messageBlock);
+                index = this.partitionTable[partition];
+                if (held == HELD) {
+                    this.stats.getReceivedMessageCount().increment();
+                    QueueEvents.endEnqueue(event, this.queueName, index, this.messageQueueArray[index].size(), true);
+                    return 0;
+                }
+                if (held == HOLD_REJECTED) {
+                    QueueEvents.endEnqueue(event, this.queueName, index, this.messageQueueArray[index].size(), false);
+                    QueueEvents.reject(this.queueName, index, this.messageQueueArray[index].size(), this.queueCapacity,
+                            timeoutMillis, 1);
+                    throw new QueueException(String.format("队列[%s]消息写入预写日志失败", this.queueName));
+                }
+                if (held == NOT_FENCED
+                        && offerToLane(index, taskSeq, messageBlock, Math.min(remaining, PUT_EPOCH_SLICE_NANOS))) {
+                    this.stats.getReceivedMessageCount().increment();
+                    this.threadMessageCounters[index].increment();
+                    checkWatermark(index);
+                    QueueEvents.endEnqueue(event, this.queueName, index, this.messageQueueArray[index].size(), true);
+                    return 0;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new QueueException(String.format("队列[%s]等待添加消息被中断", this.queueName), e);
+            } finally {
+                exitPut(epoch);
+            }
+            if (held == HOLD_FULL && remaining > 0) {
+                // 目标线程队列加上暂存的消息已满,等待迁移的工作线程转出暂存消息
+                LockSupport.parkNanos(Math.min(remaining, FULL_RETRY_NANOS));
+            }
+            remaining -= System.nanoTime() - sliceStart;
+            if (remaining <= 0) {
+                break;
+            }
+        }
+
+        QueueEvents.endEnqueue(event, this.queueName, index, this.messageQueueArray[index].size(), false);
+        QueueEvents.reject(this.queueName, index, this.messageQueueArray[index].size(), this.queueCapacity,
+                timeoutMillis, 1);
+        if (timeoutMillis <= 0) {
+            throw new QueueFullException(this.queueName, this.queueCapacity);
+        }
+        throw new QueueTimeoutException(this.queueName, timeoutMillis);
+    }
+
+    /**
+     * 把消息放入线程队列,开启预写日志时同时写日志
+     *
+     * @param nanos 线程队列满时最长等待时间,小于等于0时不等待
+     * @return 线程队列满且等待超时时返回false
+     */
+    private boolean offerToLane(int index, int taskSeq, MESSAGE_BLOCK messageBlock, long nanos)
+            throws InterruptedException {
+        if (nanos <= 0) {
+            return this.journaledLanes == null
+                    ? this.messageQueueArray[index].offer(messageBlock)
+                    : this.journaledLanes[index].offer(taskSeq, messageBlock);
+        }
+        return this.journaledLanes == null
+                ? this.messageQueueArray[index].offer(messageBlock, nanos, TimeUnit.NANOSECONDS)
+                : this.journaledLanes[index].offer(taskSeq, messageBlock, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 添加消息到指定序号的队列,队列满时一直等待
+     */
+    public int putqBlocking(int taskSeq, MESSAGE_BLOCK messageBlock) {
+        return putq(taskSeq, messageBlock, Long.MAX_VALUE);
+    }
+
+    /**
+     * 延迟投递消息到指定序号的队列,到期后由时间轮线程调用putq
+     * 同一序号的延迟消息按到期时间入队,到期时间相同的顺序不保证
+     * 到期时线程队列已满则丢弃消息(记录日志和Reject事件),需要处理拒绝时使用带onRejected的重载
+     *
+     * @param taskSeq 任务序号
+     * @param messageBlock 消息
+     * @param delay 延迟
+     * @param unit 时间单位
+     * @return 定时句柄,可通过TimeScheduler.cancel取消投递
+     */
+    public long putqDelayed(int taskSeq, MESSAGE_BLOCK messageBlock, long delay, TimeUnit unit) {
+        return putqDelayed(taskSeq, messageBlock, delay, unit, null);
+    }
+
+    /**
+     * 延迟投递消息到指定序号的队列,到期后由时间轮线程调用putq
+     * 时间轮线程不能等待队列腾出空间,到期时线程队列已满则拒绝消息并调用onRejected。
+     * 时间轮线程是额外的生产线程,SPSC_RING存储的队列不支持延迟投递
+     *
+     * @param taskSeq 任务序号
+     * @param messageBlock 消息
+     * @param delay 延迟
+     * @param unit 时间单位
+     * @param onRejected 消息被拒绝时在时间轮线程中调用,不能阻塞,为null时丢弃消息
+     * @return 定时句柄,可通过TimeScheduler.cancel取消投递
+     */
+    public long putqDelayed(int taskSeq, MESSAGE_BLOCK messageBlock, long delay, TimeUnit unit,
+                            Consumer<? super MESSAGE_BLOCK> onRejected) {
+        if (this.storageType.isSingleProducer()) {
+            throw new QueueException(String.format("队列[%s]的线程队列只允许一个生产线程, 不支持延迟投递", this.queueName));
+        }
+        return TimeScheduler.getInstance().schedule(() -> {
+            if (putq(taskSeq, messageBlock) != 0 && onRejected != null) {
+                onRejected.accept(messageBlock);
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * 有水位监听器时检查线程队列当前积压
+     *
+     * @param index 线程队列序号
+     */
+    protected void checkWatermark(int index) {
+        if (this.watermark.hasListeners()) {
+            // 迁移中暂存的消息同样计入积压,读取不加锁,允许短暂不准确
+            int held = this.fencing ? this.heldCounts[index] : 0;
+            this.watermark.update(index, this.messageQueueArray[index].size() + held);
+        }
     }
 
     public int putq(long taskSeq, MESSAGE_BLOCK messageBlock) {
@@ -116,14 +1098,86 @@ public abstract class SequenceQueue<MESSAGE_BLOCK> implements Queue_I {
     }
 
     /**
-     * 从当前线程对应的队列获取消息(阻塞)
+     * 批量添加同一序号的消息,统计信息按批更新一次
+     *
+     * @param taskSeq 任务序号
+     * @param messageBlocks 消息集合
+     * @return 成功入队的消息数,队列满时剩余消息不入队
+     */
+    public int putqAll(int taskSeq, Collection<? extends MESSAGE_BLOCK> messageBlocks) {
+        taskSeq = Math.abs(taskSeq); // 处理负数序号
+        int partition = partitionOf(taskSeq);
+        this.stats.recordKey(taskSeq, messageBlocks.size());
+
+        int epoch = enterPut();
+        try {
+            int held = holdIfFenced(partition, taskSeq, messageBlocks);
+            if (held >= 0) {
+                if (held < messageBlocks.size()) {
+                    log.error("批量添加消息到队列失败, 队列名称[{}], 丢弃[{}]", this.queueName, messageBlocks.size() - held);
+                }
+                this.stats.addReceived(held);
+                return held;
+            }
+            int index = this.partitionTable[partition];
+            int count = 0;
+            if (this.journaledLanes == null) {
+                count = AbstractRingBlockingQueue.offerAll(this.messageQueueArray[index], messageBlocks);
+            } else {
+                // 日志需要记录任务序号,逐条写入
+                for (MESSAGE_BLOCK messageBlock : messageBlocks) {
+                    if (!this.journaledLanes[index].offer(taskSeq, messageBlock)) {
+                        break;
+                    }
+                    count++;
+                }
+            }
+            if (count < messageBlocks.size()) {
+                log.error("批量添加消息到队列失败, 队列名称[{}], 丢弃[{}]", this.queueName, messageBlocks.size() - count);
+            }
+            if (count > 0) {
+                this.stats.addReceived(count);
+                this.threadMessageCounters[index].add(count);
+                checkWatermark(index);
+            }
+            return count;
+        } finally {
+            exitPut(epoch);
+        }
+    }
+
+    public int putqAll(long taskSeq, Collection<? extends MESSAGE_BLOCK> messageBlocks) {
+        return putqAll((int) taskSeq, messageBlocks);
+    }
+
+    /**
+     * 从当前线程对应的队列获取消息(按等待策略等待)
      */
     public MESSAGE_BLOCK getq() {
+        ack();
+        runDeferredControls();
+        markIdle();
+        Object event = QueueEvents.beginDequeue();
+        if (!this.pauseGate.awaitResumed()) {
+            return null;
+        }
         try {
-            this.stats.getProcessedMessageCount().incrementAndGet();
-            return this.threadLocalQueue.get().take();
+            this.stats.getProcessedMessageCount().increment();
+            BlockingQueue<MESSAGE_BLOCK> lane = currentLaneQueue();
+            MESSAGE_BLOCK messageBlock = this.waitStrategy.take(lane);
+            while (messageBlock instanceof LaneControl) {
+                if (handleControl((LaneControl) messageBlock)) {
+                    this.stats.getProcessedMessageCount().decrement();
+                    throw new WorkerRetiredException(this.queueName);
+                }
+                messageBlock = this.waitStrategy.take(lane);
+            }
+            checkWatermark(currentLaneIndex());
+            markBusy();
+            QueueEvents.endDequeue(event, this.queueName, currentLaneIndex(), 1);
+            return messageBlock;
         } catch (InterruptedException e) {
-            this.stats.getProcessedMessageCount().decrementAndGet();
+            this.stats.getProcessedMessageCount().decrement();
             log.error("获取队列消息异常", e);
             return null;
         }
@@ -133,31 +1187,167 @@ public abstract class SequenceQueue<MESSAGE_BLOCK> implements Queue_I {
      * 从当前线程对应的队列获取消息(超时)
      */
     public MESSAGE_BLOCK getq(long milliSeconds) {
+        ack();
+        runDeferredControls();
+        markIdle();
+        Object event = QueueEvents.beginDequeue();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliSeconds);
+        long nanos = this.pauseGate.awaitResumed(TimeUnit.MILLISECONDS.toNanos(milliSeconds));
+        if (this.pauseGate.isPaused()) {
+            return null;
+        }
         try {
-            this.stats.getProcessedMessageCount().incrementAndGet();
-            return this.threadLocalQueue.get().poll(milliSeconds, TimeUnit.MILLISECONDS);
+            this.stats.getProcessedMessageCount().increment();
+            BlockingQueue<MESSAGE_BLOCK> lane = currentLaneQueue();
+            MESSAGE_BLOCK messageBlock = this.waitStrategy.poll(lane, Math.max(0, nanos), TimeUnit.NANOSECONDS);
+            while (messageBlock instanceof LaneControl) {
+                if (handleControl((LaneControl) messageBlock)) {
+                    this.stats.getProcessedMessageCount().decrement();
+                    throw new WorkerRetiredException(this.queueName);
+                }
+                messageBlock = this.waitStrategy.poll(lane, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            checkWatermark(currentLaneIndex());
+            if (messageBlock != null) {
+                markBusy();
+            }
+            QueueEvents.endDequeue(event, this.queueName, currentLaneIndex(), messageBlock == null ? 0 : 1);
+            return messageBlock;
         } catch (InterruptedException e) {
-            this.stats.getProcessedMessageCount().decrementAndGet();
+            this.stats.getProcessedMessageCount().decrement();
             log.error("获取队列消息异常", e);
             return null;
         }
     }
 
+    /**
+     * 从当前线程对应的队列批量获取消息
+     * 先取走队列中已有的消息,不足maxBatch时最多再等待lingerMillis
+     *
+     * @param maxBatch 每批最多消息数
+     * @param lingerMillis 凑批最长等待时间(毫秒),为0时只取已有消息
+     * @return 消息列表,可能为空
+     */
+    public List<MESSAGE_BLOCK> getq(int maxBatch, long lingerMillis) {
+        List<MESSAGE_BLOCK> batch = new ArrayList<>(Math.min(maxBatch, 256));
+        getq(batch, maxBatch, lingerMillis);
+        return batch;
+    }
+
+    /**
+     * 从当前线程对应的队列批量获取消息到调用方提供的集合
+     *
+     * @param buffer 接收消息的集合
+     * @param maxBatch 每批最多消息数
+     * @param lingerMillis 凑批最长等待时间(毫秒)
+     * @return 获取到的消息数
+     */
+    public int getq(Collection<? super MESSAGE_BLOCK> buffer, int maxBatch, long lingerMillis) {
+        ack();
+        runDeferredControls();
+        markIdle();
+        Object event = QueueEvents.beginDequeue();
+        if (!this.pauseGate.awaitResumed()) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            count = this.waitStrategy.drain(currentLaneQueue(), buffer, maxBatch, lingerMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            log.error("批量获取队列消息异常", e);
+        }
+        // 控制标记入队前先计数,取到标记时计数一定大于0
+        if (count > 0 && this.pendingControls.get() > 0) {
+            count -= deferControls(buffer);
+        }
+        QueueEvents.endDequeue(event, this.queueName, currentLaneIndex(), count);
+        if (count > 0) {
+            this.stats.addHandled(count);
+            checkWatermark(currentLaneIndex());
+            markBusy();
+            Object batch = QueueEvents.startSvcBatch(this.queueName, currentLaneIndex(), count);
+            if (batch != null) {
+                this.svcBatch.set(batch);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 提交当前工作线程上一批消息的处理事件
+     */
+    private void endSvcBatch() {
+        Object batch = this.svcBatch.get();
+        if (batch != null) {
+            this.svcBatch.remove();
+            QueueEvents.endSvcBatch(batch);
+        }
+    }
+
+    /**
+     * 工作线程回到getq,累计上一次取到消息后的处理时间
+     */
+    protected void markIdle() {
+        int index = currentLaneIndex();
+        long resumed = this.laneResumeNanos[index];
+        if (resumed != 0) {
+            this.laneBusyNanos[index].add(System.nanoTime() - resumed);
+            this.laneResumeNanos[index] = 0;
+        }
+    }
+
+    /**
+     * 工作线程从getq取到消息,开始计算处理时间
+     */
+    protected void markBusy() {
+        this.laneResumeNanos[currentLaneIndex()] = System.nanoTime();
+    }
+
+    /**
+     * 记录一条消息的处理耗时,由svc在处理完消息后调用
+     * 同时计入队列级和当前线程队列的直方图,未开启延迟统计时不做任何事
+     *
+     * @param startNanos 开始处理时的System.nanoTime()
+     */
+    public void recordServiceTime(long startNanos) {
+        if (this.laneServiceHistograms == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        this.stats.getServiceTimeHistogram().record(elapsed);
+        this.laneServiceHistograms[currentLaneIndex()].record(elapsed);
+    }
+
+    /**
+     * 当前线程消费的队列序号
+     */
+    protected int currentLaneIndex() {
+        return this.threadLocalIndex.get();
+    }
+
+    /**
+     * 当前线程消费的队列
+     */
+    protected BlockingQueue<MESSAGE_BLOCK> currentLaneQueue() {
+        return this.threadLocalQueue.get();
+    }
+
     public String getqName() {
         return queueName;
     }
 
     /**
      * 检查队列是否可以继续添加消息
-     * 当任一队列使用率超过80%时返回false
+     * 当任一队列使用率超过高水位(默认80%)时返回false
      */
     public boolean isCanPut() {
         if (messageQueueArray == null) {
             return false;
         }
 
-        for (BlockingQueue<MESSAGE_BLOCK> queue : messageQueueArray) {
-            if (queue == null || (queue.size() / queueCapacity) > 0.8) {
+        for (int i = 0; i < this.threadCount; i++) {
+            BlockingQueue<MESSAGE_BLOCK> queue = messageQueueArray[i];
+            if (queue == null || (double) queue.size() / queueCapacity > this.highWatermark) {
                 return false;
             }
         }
@@ -173,13 +1363,13 @@ public abstract class SequenceQueue<MESSAGE_BLOCK> implements Queue_I {
             return;
         }
 
-        for (int i = 0; i < messageQueueArray.length; i++) {
+        for (int i = 0; i < this.threadCount; i++) {
             BlockingQueue<MESSAGE_BLOCK> queue = messageQueueArray[i];
-            AtomicLong processedCount = threadMessageCounters[i];
+            LongAdder processedCount = threadMessageCounters[i];
 
             if (queue != null) {
                 log.info("队列[{}] 容量[{}] 当前大小[{}] 已处理消息数[{}]", 
-                    i, queueCapacity, queue.size(), processedCount.get());
+                    i, queueCapacity, queue.size(), processedCount.sum());
             }
         }
     }
@@ -190,9 +1380,16 @@ public abstract class SequenceQueue<MESSAGE_BLOCK> implements Queue_I {
         for (int i = 0; i < this.threadCount; i++) {
             QueueStatus queueStatus = new QueueStatus();
             queueStatus.setQueueIndex(i + 1);
-            queueStatus.setProcessedCount(this.threadMessageCounters[i].get());
+            queueStatus.setProcessedCount(this.threadMessageCounters[i].sum());
             queueStatus.setPendingCount(this.messageQueueArray[i].size());
             queueStatus.setCapacity(queueCapacity);
+            if (this.laneWaitHistograms != null) {
+                queueStatus.setWaitTime(this.laneWaitHistograms[i].summarize(false));
+                queueStatus.setServiceTime(this.laneServiceHistograms[i].summarize(false));
+            }
+            // 包含正在处理的消息已用的时间
+            long resumed = this.laneResumeNanos[i];
+            queueStatus.setBusyNanos(this.laneBusyNanos[i].sum() + (resumed != 0 ? System.nanoTime() - resumed : 0));
             status.add(queueStatus);
         }
         return status;
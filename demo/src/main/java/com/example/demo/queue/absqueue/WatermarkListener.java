@@ -0,0 +1,30 @@
+package com.example.demo.queue.absqueue;
+
+/**
+ * 队列水位监听器
+ *
+ * 积压达到高水位时通知一次,之后降到低水位以下才通知回落,两条水位线之间不重复通知。
+ * 在执行putq/getq的线程中同步调用,实现应尽快返回。
+ */
+public interface WatermarkListener {
+
+    /**
+     * 积压达到高水位,生产者应降低发送速率
+     *
+     * @param queueName 队列名称
+     * @param queueIndex 队列位置ID,与QueueStatus一致
+     * @param size 当前积压消息数
+     * @param capacity 队列容量
+     */
+    void onHighWatermark(String queueName, int queueIndex, int size, int capacity);
+
+    /**
+     * 积压回落到低水位,生产者可以恢复发送速率
+     *
+     * @param queueName 队列名称
+     * @param queueIndex 队列位置ID,与QueueStatus一致
+     * @param size 当前积压消息数
+     * @param capacity 队列容量
+     */
+    void onLowWatermark(String queueName, int queueIndex, int size, int capacity);
+}
@@ -0,0 +1,91 @@
+package com.example.demo.queue.absqueue;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 队列水位检测
+ *
+ * 每个队列位置记录是否处于高水位状态,状态翻转时用CAS保证只通知一次。
+ * 没有监听器时调用方不需要读取队列大小。
+ */
+@Slf4j
+class WatermarkMonitor {
+
+    private static final int BELOW = 0;
+    private static final int ABOVE = 1;
+
+    private final List<WatermarkListener> listeners = new CopyOnWriteArrayList<>();
+    private String queueName;
+    private int capacity;
+    // 高水位和低水位(消息数)
+    private int highMark;
+    private int lowMark;
+    // 每个队列位置的水位状态
+    private AtomicIntegerArray states = new AtomicIntegerArray(0);
+
+    /**
+     * 按队列容量计算水位线,在队列启动时调用
+     *
+     * @param queueName 队列名称
+     * @param queueCount 队列位置数
+     * @param capacity 单个队列容量
+     * @param highRatio 高水位比例(0-1)
+     * @param lowRatio 低水位比例(0-1),不高于高水位
+     */
+    void init(String queueName, int queueCount, int capacity, double highRatio, double lowRatio) {
+        this.queueName = queueName;
+        this.capacity = capacity;
+        this.highMark = Math.max(1, (int) Math.ceil(capacity * highRatio));
+        this.lowMark = Math.min(this.highMark - 1, (int) Math.floor(capacity * Math.min(lowRatio, highRatio)));
+        this.states = new AtomicIntegerArray(queueCount);
+    }
+
+    void addListener(WatermarkListener listener) {
+        this.listeners.add(listener);
+    }
+
+    void removeListener(WatermarkListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    boolean hasListeners() {
+        return !this.listeners.isEmpty();
+    }
+
+    /**
+     * 根据当前大小检查水位状态
+     *
+     * @param index 队列位置,从0开始
+     * @param size 当前积压消息数
+     */
+    void update(int index, int size) {
+        if (index >= this.states.length()) {
+            return;
+        }
+        if (size >= this.highMark) {
+            if (this.states.get(index) == BELOW && this.states.compareAndSet(index, BELOW, ABOVE)) {
+                for (WatermarkListener listener : this.listeners) {
+                    try {
+                        listener.onHighWatermark(this.queueName, index + 1, size, this.capacity);
+                    } catch (RuntimeException e) {
+                        log.error("队列[{}]高水位监听器执行异常", this.queueName, e);
+                    }
+                }
+            }
+        } else if (size <= this.lowMark) {
+            if (this.states.get(index) == ABOVE && this.states.compareAndSet(index, ABOVE, BELOW)) {
+                for (WatermarkListener listener : this.listeners) {
+                    try {
+                        listener.onLowWatermark(this.queueName, index + 1, size, this.capacity);
+                    } catch (RuntimeException e) {
+                        log.error("队列[{}]低水位监听器执行异常", this.queueName, e);
+                    }
+                }
+            }
+        }
+    }
+}
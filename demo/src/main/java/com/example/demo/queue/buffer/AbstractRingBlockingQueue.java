@@ -0,0 +1,259 @@
+package com.example.demo.queue.buffer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 环形缓冲区阻塞队列基类
+ *
+ * 特点:
+ * - 预分配数组,槽位序号协议和头尾指针由RingSequencer实现,与SequencedRing共用
+ * - 非阻塞的offer/poll由子类以无锁方式实现
+ * - 阻塞操作在快速路径失败后才进入WaitSignal等待
+ */
+public abstract class AbstractRingBlockingQueue<E> extends RingSequencer implements BlockingQueue<E> {
+
+    // 元素数组
+    protected final Object[] buffer;
+
+    protected AbstractRingBlockingQueue(int requestedCapacity) {
+        super(requestedCapacity);
+        this.buffer = new Object[this.capacity];
+    }
+
+    /**
+     * 批量入队,按顺序尽可能多地写入
+     *
+     * @param c 待入队的元素
+     * @return 成功入队的元素数
+     */
+    public int offerBatch(Collection<? extends E> c) {
+        int count = 0;
+        for (E e : c) {
+            if (!offer(e)) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 批量入队到任意阻塞队列,环形队列走批量路径
+     *
+     * @param queue 目标队列
+     * @param c 待入队的元素
+     * @return 成功入队的元素数
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> int offerAll(BlockingQueue<E> queue, Collection<? extends E> c) {
+        if (queue instanceof AbstractRingBlockingQueue) {
+            return ((AbstractRingBlockingQueue<E>) queue).offerBatch(c);
+        }
+        int count = 0;
+        for (E e : c) {
+            if (!queue.offer(e)) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        while (!offer(e)) {
+            notFull.await(writable);
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        while (!offer(e)) {
+            if (nanos <= 0) {
+                return false;
+            }
+            nanos = notFull.await(writable, nanos);
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = poll()) == null) {
+            notEmpty.await(readable);
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        E e;
+        while ((e = poll()) == null) {
+            if (nanos <= 0) {
+                return null;
+            }
+            nanos = notEmpty.await(readable, nanos);
+        }
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        long h = head;
+        @SuppressWarnings("unchecked")
+        E e = (E) buffer[(int) (h & mask)];
+        return e;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int count = 0;
+        E e;
+        while (count < maxElements && (e = poll()) != null) {
+            c.add(e);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (offer(e)) {
+            return true;
+        }
+        throw new IllegalStateException("Queue full");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        boolean modified = false;
+        for (E e : c) {
+            modified |= add(e);
+        }
+        return modified;
+    }
+
+    @Override
+    public E remove() {
+        E e = poll();
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+        return e;
+    }
+
+    @Override
+    public E element() {
+        E e = peek();
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+        return e;
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // 逐个取出,释放槽位
+        }
+    }
+
+    /**
+     * 不支持删除指定元素
+     */
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return snapshot().contains(o);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        return snapshot().containsAll(c);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * 返回当前元素的弱一致快照迭代器,不支持删除
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return Collections.unmodifiableList(snapshot()).iterator();
+    }
+
+    /**
+     * 当前元素的弱一致快照
+     */
+    @SuppressWarnings("unchecked")
+    private List<E> snapshot() {
+        long h = head;
+        long t = tail;
+        List<E> snapshot = new ArrayList<>((int) Math.min(capacity, Math.max(0, t - h)));
+        for (long i = h; i < t; i++) {
+            Object e = buffer[(int) (i & mask)];
+            if (e != null) {
+                snapshot.add((E) e);
+            }
+        }
+        return snapshot;
+    }
+}
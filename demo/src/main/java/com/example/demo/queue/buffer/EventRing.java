@@ -0,0 +1,99 @@
+package com.example.demo.queue.buffer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 预分配事件的多生产者多消费者环形缓冲区
+ *
+ * 特点:
+ * - 创建时用工厂填满所有槽位,事件对象在整个生命周期内复用,发布和消费不分配对象
+ * - 生产者claim占用槽位,在槽位的事件上原地写入后publish
+ * - 消费者take占用已发布的槽位,原地处理后release,槽位release之后才能被生产者再次占用
+ */
+public class EventRing<E> extends SequencedRing {
+
+    // 预分配的事件
+    private final Object[] events;
+
+    /**
+     * @param requestedCapacity 槽位数,向上取整为2的幂
+     * @param factory 事件工厂,创建时为每个槽位调用一次
+     */
+    public EventRing(int requestedCapacity, Supplier<? extends E> factory) {
+        super(requestedCapacity);
+        this.events = new Object[this.capacity];
+        for (int i = 0; i < this.capacity; i++) {
+            E event = factory.get();
+            if (event == null) {
+                throw new NullPointerException("事件工厂返回null");
+            }
+            this.events[i] = event;
+        }
+    }
+
+    /**
+     * 占用一个空闲槽位
+     *
+     * @return 槽位序列号,没有空闲槽位时返回-1
+     */
+    public long tryClaim() {
+        return claimSlot();
+    }
+
+    /**
+     * 占用一个空闲槽位,没有空闲槽位时最多等待timeout
+     *
+     * @return 槽位序列号,超时返回-1
+     */
+    public long claim(long timeout, TimeUnit unit) throws InterruptedException {
+        return claimSlot(unit.toNanos(timeout));
+    }
+
+    /**
+     * 获取槽位上的事件,只能在claim到publish之间或take到release之间访问
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) events[(int) (sequence & mask)];
+    }
+
+    /**
+     * 发布已写好的槽位
+     */
+    public void publish(long sequence) {
+        publishSlot(sequence);
+    }
+
+    /**
+     * 占用一个已发布的槽位
+     *
+     * @return 槽位序列号,没有已发布槽位时返回-1
+     */
+    public long tryTake() {
+        return takeSlot();
+    }
+
+    /**
+     * 占用一个已发布的槽位,没有时一直等待
+     */
+    public long take() throws InterruptedException {
+        return awaitSlot();
+    }
+
+    /**
+     * 占用一个已发布的槽位,没有时最多等待timeout
+     *
+     * @return 槽位序列号,超时返回-1
+     */
+    public long take(long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitSlot(unit.toNanos(timeout));
+    }
+
+    /**
+     * 释放处理完的槽位,之后生产者可以再次占用
+     */
+    public void release(long sequence) {
+        releaseSlot(sequence);
+    }
+}
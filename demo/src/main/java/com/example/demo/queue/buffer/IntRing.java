@@ -0,0 +1,81 @@
+package com.example.demo.queue.buffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * int值的多生产者多消费者环形队列
+ *
+ * 元素直接保存在int数组中,入队出队不装箱也不分配节点对象,
+ * 每个元素只占用一个int和一个槽位序号。
+ */
+public class IntRing extends SequencedRing {
+
+    // 元素数组
+    private final int[] values;
+
+    /**
+     * @param requestedCapacity 容量,向上取整为2的幂
+     */
+    public IntRing(int requestedCapacity) {
+        super(requestedCapacity);
+        this.values = new int[this.capacity];
+    }
+
+    /**
+     * 入队,队列已满时返回false
+     */
+    public boolean offer(int value) {
+        long sequence = claimSlot();
+        if (sequence < 0) {
+            return false;
+        }
+        values[(int) (sequence & mask)] = value;
+        publishSlot(sequence);
+        return true;
+    }
+
+    /**
+     * 入队,队列已满时最多等待timeout
+     */
+    public boolean offer(int value, long timeout, TimeUnit unit) throws InterruptedException {
+        long sequence = claimSlot(unit.toNanos(timeout));
+        if (sequence < 0) {
+            return false;
+        }
+        values[(int) (sequence & mask)] = value;
+        publishSlot(sequence);
+        return true;
+    }
+
+    /**
+     * 出队,队列为空时一直等待
+     */
+    public int take() throws InterruptedException {
+        return read(awaitSlot());
+    }
+
+    /**
+     * 出队,队列为空时返回emptyValue
+     */
+    public int poll(int emptyValue) {
+        long sequence = takeSlot();
+        return sequence < 0 ? emptyValue : read(sequence);
+    }
+
+    /**
+     * 出队,队列为空时最多等待timeout,超时返回emptyValue
+     */
+    public int poll(long timeout, TimeUnit unit, int emptyValue) throws InterruptedException {
+        long sequence = awaitSlot(unit.toNanos(timeout));
+        return sequence < 0 ? emptyValue : read(sequence);
+    }
+
+    /**
+     * 读取takeSequence占用的槽位并释放
+     */
+    public int read(long sequence) {
+        int value = values[(int) (sequence & mask)];
+        releaseSlot(sequence);
+        return value;
+    }
+}
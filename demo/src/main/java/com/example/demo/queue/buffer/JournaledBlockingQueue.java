@@ -0,0 +1,247 @@
+package com.example.demo.queue.buffer;
+
+import com.example.demo.queue.exception.QueueException;
+import com.example.demo.queue.store.JournalRecord;
+import com.example.demo.queue.store.WriteAheadJournal;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 写预写日志的阻塞队列装饰器
+ *
+ * 入队前先追加日志,出队时把记录ID登记到当前线程,
+ * 由工作线程在处理完成后调用WriteAheadJournal.ackTaken确认。
+ * 内存队列已满时不写日志,入队失败的记录立即确认。
+ */
+public class JournaledBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    /**
+     * 内存队列满时重试间隔
+     */
+    private static final long FULL_RETRY_NANOS = 1_000_000L;
+
+    /**
+     * tryOffer的结果: 已入队、内存队列已满、日志拒绝写入
+     */
+    private static final int OFFERED = 0;
+    private static final int FULL = 1;
+    private static final int REJECTED = 2;
+
+    /**
+     * 带日志记录ID的消息
+     */
+    private static final class Entry<E> {
+        private final long id;
+        private final E message;
+
+        private Entry(long id, E message) {
+            this.id = id;
+            this.message = message;
+        }
+    }
+
+    // 实际存储
+    private final BlockingQueue<Entry<E>> delegate;
+    // 预写日志
+    private final WriteAheadJournal<E> journal;
+    // 默认路由键
+    private final int defaultKey;
+
+    /**
+     * @param delegate 实际存储
+     * @param journal 预写日志,可被多个队列共享
+     * @param defaultKey 未指定路由键时写入日志的路由键
+     */
+    @SuppressWarnings("unchecked")
+    public JournaledBlockingQueue(BlockingQueue<?> delegate, WriteAheadJournal<E> journal, int defaultKey) {
+        this.delegate = (BlockingQueue<Entry<E>>) delegate;
+        this.journal = journal;
+        this.defaultKey = defaultKey;
+    }
+
+    /**
+     * 按路由键写日志并入队
+     *
+     * @param key 路由键,重放时用于选择线程队列
+     * @param e 消息
+     * @return 内存队列已满或日志拒绝写入时返回false
+     */
+    public boolean offer(int key, E e) {
+        return tryOffer(key, e) == OFFERED;
+    }
+
+    /**
+     * 按路由键写日志并入队,内存队列满时最多等待timeout
+     *
+     * @param key 路由键,重放时用于选择线程队列
+     * @param e 消息
+     * @return 等待超时返回false
+     * @throws QueueException 日志拒绝写入(如消息编码失败),重试也不会成功
+     */
+    public boolean offer(int key, E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int result;
+        while ((result = tryOffer(key, e)) == FULL) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(FULL_RETRY_NANOS);
+        }
+        if (result == REJECTED) {
+            throw new QueueException("消息写入预写日志失败");
+        }
+        return true;
+    }
+
+    /**
+     * 写日志并入队
+     *
+     * @return OFFERED、FULL(内存队列已满,可以重试)或REJECTED(日志拒绝写入,重试也不会成功)
+     */
+    private int tryOffer(int key, E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        if (delegate.remainingCapacity() == 0) {
+            return FULL;
+        }
+        long id = journal.append(key, e);
+        if (id < 0) {
+            return REJECTED;
+        }
+        if (!delegate.offer(new Entry<>(id, e))) {
+            journal.ack(id);
+            return FULL;
+        }
+        return OFFERED;
+    }
+
+    /**
+     * 重放恢复出的记录,不再写日志
+     * 在工作线程启动后调用,队列满时阻塞
+     */
+    public void restore(JournalRecord<E> record) throws InterruptedException {
+        delegate.put(new Entry<>(record.getId(), record.getMessage()));
+    }
+
+    /**
+     * 入队已写入日志的记录,不再写日志,队列满时返回false
+     */
+    public boolean offer(JournalRecord<E> record) {
+        return delegate.offer(new Entry<>(record.getId(), record.getMessage()));
+    }
+
+    /**
+     * 入队不写日志的控制对象,出队时不登记确认,队列满时返回false
+     */
+    public boolean offerControl(E e) {
+        return delegate.offer(new Entry<>(-1L, e));
+    }
+
+    public WriteAheadJournal<E> getJournal() {
+        return journal;
+    }
+
+    private E unwrap(Entry<E> entry) {
+        if (entry == null) {
+            return null;
+        }
+        if (entry.id >= 0) {
+            journal.markTaken(entry.id);
+        }
+        return entry.message;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        return offer(defaultKey, e);
+    }
+
+    /**
+     * 内存队列满时一直等待,日志拒绝写入时抛出QueueException
+     */
+    @Override
+    public void put(E e) throws InterruptedException {
+        offer(e, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return offer(defaultKey, e, timeout, unit);
+    }
+
+    @Override
+    public E poll() {
+        return unwrap(delegate.poll());
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return unwrap(delegate.take());
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return unwrap(delegate.poll(timeout, unit));
+    }
+
+    @Override
+    public E peek() {
+        Entry<E> entry = delegate.peek();
+        return entry == null ? null : entry.message;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return delegate.remainingCapacity();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int count = 0;
+        E e;
+        while (count < maxElements && (e = poll()) != null) {
+            c.add(e);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>(delegate.size());
+        for (Entry<E> entry : delegate) {
+            snapshot.add(entry.message);
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.queue.buffer;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * 多生产者多消费者无锁环形队列
+ *
+ * 实现:
+ * - 每个槽位带一个序号,序号等于写入位置时可写,等于写入位置+1时可读,协议由RingSequencer实现
+ * - 生产者和消费者分别CAS尾指针和头指针抢占槽位
+ * - 入队出队不分配节点对象
+ * - 批量入队和批量出队只做一次CAS
+ */
+public class MpmcRingBlockingQueue<E> extends AbstractRingBlockingQueue<E> {
+
+    public MpmcRingBlockingQueue(int requestedCapacity) {
+        super(requestedCapacity);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        long sequence = claimSlot();
+        if (sequence < 0) {
+            // 槽位仍被上一轮元素占用,队列已满
+            return false;
+        }
+        buffer[(int) (sequence & mask)] = e;
+        publishSlot(sequence);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long sequence = takeSlot();
+        if (sequence < 0) {
+            // 槽位尚未发布,队列为空
+            return null;
+        }
+        int index = (int) (sequence & mask);
+        E e = (E) buffer[index];
+        buffer[index] = null;
+        releaseSlot(sequence);
+        return e;
+    }
+
+    /**
+     * 一次CAS占用连续的空闲槽位,再逐个发布
+     */
+    @Override
+    public int offerBatch(Collection<? extends E> c) {
+        int n = Math.min(c.size(), capacity);
+        for (E e : c) {
+            if (e == null) {
+                throw new NullPointerException();
+            }
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long t;
+        int claimed;
+        do {
+            t = tail;
+            claimed = claimSlots(t, n);
+        } while (claimed < 0);
+        if (claimed == 0) {
+            return 0;
+        }
+        Iterator<? extends E> it = c.iterator();
+        for (int i = 0; i < claimed; i++) {
+            buffer[(int) ((t + i) & mask)] = it.next();
+            markPublished(t + i);
+        }
+        notEmpty.signalAllIfWaiting();
+        return claimed;
+    }
+
+    /**
+     * 一次CAS取走连续的已发布槽位
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = Math.min(maxElements, capacity);
+        if (n <= 0) {
+            return 0;
+        }
+        long h;
+        int claimed;
+        do {
+            h = head;
+            claimed = takeSlots(h, n);
+        } while (claimed < 0);
+        if (claimed == 0) {
+            return 0;
+        }
+        for (int i = 0; i < claimed; i++) {
+            int index = (int) ((h + i) & mask);
+            E e = (E) buffer[index];
+            buffer[index] = null;
+            markReleased(h + i);
+            c.add(e);
+        }
+        notFull.signalAllIfWaiting();
+        return claimed;
+    }
+}
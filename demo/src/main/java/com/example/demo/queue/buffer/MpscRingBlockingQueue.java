@@ -0,0 +1,59 @@
+package com.example.demo.queue.buffer;
+
+import java.util.Collection;
+
+/**
+ * 多生产者单消费者无锁环形队列
+ *
+ * 适用于每个队列只有一个固定消费线程的场景,如SequenceQueue的线程队列:
+ * - 生产者与MpmcRingBlockingQueue相同,CAS尾指针占用槽位
+ * - 消费者独占头指针,出队不做CAS,只做有序写
+ */
+public class MpscRingBlockingQueue<E> extends MpmcRingBlockingQueue<E> {
+
+    public MpscRingBlockingQueue(int requestedCapacity) {
+        super(requestedCapacity);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long h = head;
+        if (!isPublished(h)) {
+            return null;
+        }
+        int index = (int) (h & mask);
+        E e = (E) buffer[index];
+        buffer[index] = null;
+        lazySetHead(h + 1);
+        releaseSlot(h);
+        return e;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = Math.min(maxElements, capacity);
+        long h = head;
+        int count = 0;
+        while (count < n) {
+            if (!isPublished(h + count)) {
+                break;
+            }
+            int index = (int) ((h + count) & mask);
+            E e = (E) buffer[index];
+            buffer[index] = null;
+            markReleased(h + count);
+            c.add(e);
+            count++;
+        }
+        if (count > 0) {
+            lazySetHead(h + count);
+            notFull.signalAllIfWaiting();
+        }
+        return count;
+    }
+}
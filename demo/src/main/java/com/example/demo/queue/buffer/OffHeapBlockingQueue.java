@@ -0,0 +1,423 @@
+package com.example.demo.queue.buffer;
+
+import com.example.demo.queue.codec.MessageCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 消息编码后存放在堆外内存的阻塞队列
+ *
+ * 特点:
+ * - 生产者在锁外编码消息,锁内只把字节复制到堆外环形缓冲区,每条记录为[长度(int)][消息字节]
+ * - 消费者在锁内把记录复制到线程本地的缓冲区,锁外解码,消息在被取出之前一直以字节形式存放在堆外
+ * - 容量同时受消息数和字节数限制,任一达到上限时入队失败
+ *
+ * 创建时一次性分配capacityBytes字节的堆外内存,由JVM的-XX:MaxDirectMemorySize限制,
+ * 多个队列的字节上限之和不应超过该值。
+ * 解码时传入的缓冲区在decode返回后会被复用,编解码器不能持有它。
+ * 取出的记录解码失败时记录日志并丢弃,继续取下一条,不把异常抛给消费线程。
+ */
+@Slf4j
+public class OffHeapBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    // 记录头长度
+    private static final int HEADER_BYTES = 4;
+    // 线程本地解码缓冲区保留的最大字节数,更大的消息临时分配
+    private static final int MAX_RETAINED_SCRATCH_BYTES = 64 * 1024;
+
+    // 消息编解码器
+    private final MessageCodec<E> codec;
+    // 堆外环形缓冲区,只在锁内访问
+    private final ByteBuffer storage;
+    // 字节容量
+    private final int capacityBytes;
+    // 消息数容量
+    private final int capacity;
+
+    // 保护缓冲区和读写位置的锁
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    // 下一条记录的读位置和写位置,在锁内修改
+    private int head;
+    private int tail;
+    // 已使用的字节数和消息数,在锁内修改
+    private volatile int usedBytes;
+    private volatile int count;
+
+    // 线程本地的解码缓冲区
+    private final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(256));
+
+    /**
+     * @param codec 消息编解码器
+     * @param capacity 最大消息数
+     * @param capacityBytes 堆外缓冲区字节数,超过Integer.MAX_VALUE时取Integer.MAX_VALUE
+     */
+    public OffHeapBlockingQueue(MessageCodec<E> codec, int capacity, long capacityBytes) {
+        if (capacity <= 0 || capacityBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("容量必须大于0");
+        }
+        this.codec = codec;
+        this.capacity = capacity;
+        this.capacityBytes = (int) Math.min(capacityBytes, Integer.MAX_VALUE);
+        this.storage = ByteBuffer.allocateDirect(this.capacityBytes);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        byte[] bytes = encode(e);
+        lock.lock();
+        try {
+            if (!hasSpace(bytes.length)) {
+                return false;
+            }
+            enqueue(bytes);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        byte[] bytes = encode(e);
+        lock.lockInterruptibly();
+        try {
+            while (!hasSpace(bytes.length)) {
+                notFull.await();
+            }
+            enqueue(bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        byte[] bytes = encode(e);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!hasSpace(bytes.length)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(bytes);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        while (true) {
+            ByteBuffer record;
+            lock.lock();
+            try {
+                if (count == 0) {
+                    return null;
+                }
+                record = dequeue();
+            } finally {
+                lock.unlock();
+            }
+            E e = decode(record);
+            if (e != null) {
+                return e;
+            }
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        while (true) {
+            ByteBuffer record;
+            lock.lockInterruptibly();
+            try {
+                while (count == 0) {
+                    notEmpty.await();
+                }
+                record = dequeue();
+            } finally {
+                lock.unlock();
+            }
+            E e = decode(record);
+            if (e != null) {
+                return e;
+            }
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + nanos;
+        while (true) {
+            ByteBuffer record;
+            lock.lockInterruptibly();
+            try {
+                while (count == 0) {
+                    if (nanos <= 0) {
+                        return null;
+                    }
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+                record = dequeue();
+            } finally {
+                lock.unlock();
+            }
+            E e = decode(record);
+            if (e != null) {
+                return e;
+            }
+            nanos = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * 解码队首消息但不取出
+     */
+    @Override
+    public E peek() {
+        byte[] bytes;
+        lock.lock();
+        try {
+            if (count == 0) {
+                return null;
+            }
+            bytes = new byte[readInt(head)];
+            read(advance(head, HEADER_BYTES), bytes, bytes.length);
+        } finally {
+            lock.unlock();
+        }
+        return codec.decode(ByteBuffer.wrap(bytes));
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - count;
+    }
+
+    /**
+     * 已使用的堆外字节数,含记录头
+     */
+    public int getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * 堆外缓冲区字节数
+     */
+    public int getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 清空队列,不解码消息
+     */
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            head = 0;
+            tail = 0;
+            usedBytes = 0;
+            count = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 遍历当前消息的解码副本,只用于诊断,不支持删除
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<byte[]> records = new ArrayList<>();
+        lock.lock();
+        try {
+            int position = head;
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[readInt(position)];
+                position = advance(position, HEADER_BYTES);
+                read(position, bytes, bytes.length);
+                position = advance(position, bytes.length);
+                records.add(bytes);
+            }
+        } finally {
+            lock.unlock();
+        }
+        List<E> messages = new ArrayList<>(records.size());
+        for (byte[] bytes : records) {
+            messages.add(codec.decode(ByteBuffer.wrap(bytes)));
+        }
+        return Collections.unmodifiableList(messages).iterator();
+    }
+
+    /**
+     * 编码消息,编码后放不进整个缓冲区的消息直接拒绝,避免put一直等待
+     */
+    private byte[] encode(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        byte[] bytes = codec.encode(e);
+        if (HEADER_BYTES + (long) bytes.length > capacityBytes) {
+            throw new IllegalArgumentException(String.format("消息编码后[%d]字节, 超过堆外缓冲区容量[%d]",
+                    bytes.length, capacityBytes));
+        }
+        return bytes;
+    }
+
+    /**
+     * 解码取出的记录,失败时记录日志并丢弃
+     *
+     * @return 消息,解码失败时返回null
+     */
+    private E decode(ByteBuffer record) {
+        int length = record.remaining();
+        try {
+            return codec.decode(record);
+        } catch (RuntimeException ex) {
+            log.error("堆外队列中的消息解码失败, 丢弃该消息, 长度[{}]", length, ex);
+            return null;
+        }
+    }
+
+    private boolean hasSpace(int length) {
+        return count < capacity && capacityBytes - usedBytes >= HEADER_BYTES + length;
+    }
+
+    /**
+     * 在锁内追加一条记录
+     */
+    private void enqueue(byte[] bytes) {
+        writeInt(tail, bytes.length);
+        tail = advance(tail, HEADER_BYTES);
+        write(tail, bytes);
+        tail = advance(tail, bytes.length);
+        usedBytes += HEADER_BYTES + bytes.length;
+        count++;
+        notEmpty.signal();
+    }
+
+    /**
+     * 在锁内取出队首记录,复制到当前线程的解码缓冲区
+     *
+     * @return 只包含这条消息的缓冲区
+     */
+    private ByteBuffer dequeue() {
+        int length = readInt(head);
+        ByteBuffer buffer = scratch.get();
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(length);
+            if (length <= MAX_RETAINED_SCRATCH_BYTES) {
+                scratch.set(buffer);
+            }
+        }
+        head = advance(head, HEADER_BYTES);
+        read(head, buffer.array(), length);
+        head = advance(head, length);
+        usedBytes -= HEADER_BYTES + length;
+        count--;
+        // 等待的生产者消息大小不同,唤醒一个可能仍放不下,需要全部唤醒
+        notFull.signalAll();
+        buffer.clear();
+        buffer.limit(length);
+        return buffer;
+    }
+
+    private int advance(int position, int length) {
+        int next = position + length;
+        return next >= capacityBytes ? next - capacityBytes : next;
+    }
+
+    private void writeInt(int position, int value) {
+        if (position + HEADER_BYTES <= capacityBytes) {
+            storage.putInt(position, value);
+            return;
+        }
+        // 记录头跨过缓冲区末尾时逐字节写入,字节序与putInt一致
+        for (int i = 0; i < HEADER_BYTES; i++) {
+            storage.put(advance(position, i), (byte) (value >>> (24 - 8 * i)));
+        }
+    }
+
+    private int readInt(int position) {
+        if (position + HEADER_BYTES <= capacityBytes) {
+            return storage.getInt(position);
+        }
+        int value = 0;
+        for (int i = 0; i < HEADER_BYTES; i++) {
+            value = (value << 8) | (storage.get(advance(position, i)) & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 从position开始写入,跨过缓冲区末尾时分两段
+     */
+    private void write(int position, byte[] bytes) {
+        int first = Math.min(bytes.length, capacityBytes - position);
+        storage.clear();
+        storage.position(position);
+        storage.put(bytes, 0, first);
+        if (first < bytes.length) {
+            storage.position(0);
+            storage.put(bytes, first, bytes.length - first);
+        }
+    }
+
+    /**
+     * 从position开始读取length字节,跨过缓冲区末尾时分两段
+     */
+    private void read(int position, byte[] dst, int length) {
+        int first = Math.min(length, capacityBytes - position);
+        storage.clear();
+        storage.position(position);
+        storage.get(dst, 0, first);
+        if (first < length) {
+            storage.position(0);
+            storage.get(dst, first, length - first);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.demo.queue.buffer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 头指针前的填充,避免与对象头及其他对象共享缓存行
+ */
+abstract class RingPadHead {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+/**
+ * 消费位置
+ */
+abstract class RingHead extends RingPadHead {
+    private static final AtomicLongFieldUpdater<RingHead> HEAD_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(RingHead.class, "head");
+
+    protected volatile long head;
+
+    protected final boolean casHead(long expect, long update) {
+        return HEAD_UPDATER.compareAndSet(this, expect, update);
+    }
+
+    protected final void lazySetHead(long value) {
+        HEAD_UPDATER.lazySet(this, value);
+    }
+}
+
+/**
+ * 头尾指针之间的填充,避免生产者和消费者伪共享
+ */
+abstract class RingPadTail extends RingHead {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 生产位置
+ */
+abstract class RingTail extends RingPadTail {
+    private static final AtomicLongFieldUpdater<RingTail> TAIL_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(RingTail.class, "tail");
+
+    protected volatile long tail;
+
+    protected final boolean casTail(long expect, long update) {
+        return TAIL_UPDATER.compareAndSet(this, expect, update);
+    }
+
+    protected final void lazySetTail(long value) {
+        TAIL_UPDATER.lazySet(this, value);
+    }
+}
+
+/**
+ * 尾指针后的填充
+ */
+abstract class RingPadEnd extends RingTail {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+}
+
+/**
+ * 环形缓冲区的槽位序号协议,AbstractRingBlockingQueue和SequencedRing共用
+ *
+ * 特点:
+ * - 容量向上取整为2的幂,通过掩码定位槽位,头尾指针分别填充到独立缓存行
+ * - 每个槽位带一个序号: 等于位置时可占用,等于位置+1时已发布,等于位置+容量时已释放
+ * - 生产者CAS尾指针占用槽位,写入数据后发布;消费者CAS头指针占用已发布槽位,读取数据后释放
+ * - 占用早的槽位未发布前,消费者不会越过它读取后面的槽位
+ * - 独占头指针或尾指针的一方可以不做CAS,用isPublished/isFree判断后直接移动指针
+ * - 槽位数据由子类保存,这里只管理序号
+ */
+abstract class RingSequencer extends RingPadEnd {
+
+    // 最大容量
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // 实际容量(2的幂)
+    protected final int capacity;
+    // 下标掩码
+    protected final int mask;
+    // 槽位序号
+    private final AtomicLongArray sequences;
+
+    // 有已发布槽位/有已释放槽位通知
+    protected final WaitSignal notEmpty = new WaitSignal();
+    protected final WaitSignal notFull = new WaitSignal();
+
+    // 预先绑定的等待条件,避免每次等待创建lambda
+    protected final BooleanSupplier readable = this::isReadable;
+    protected final BooleanSupplier writable = this::isWritable;
+
+    protected RingSequencer(int requestedCapacity) {
+        this.capacity = roundToPowerOfTwo(requestedCapacity);
+        this.mask = this.capacity - 1;
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            this.sequences.lazySet(i, i);
+        }
+    }
+
+    /**
+     * 将容量向上取整为2的幂
+     */
+    public static int roundToPowerOfTwo(int capacity) {
+        if (capacity <= 1) {
+            return 1;
+        }
+        if (capacity >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    /**
+     * 占用一个空闲槽位
+     *
+     * @return 槽位序列号,没有空闲槽位时返回-1
+     */
+    protected final long claimSlot() {
+        long t = tail;
+        for (;;) {
+            long diff = sequences.get((int) (t & mask)) - t;
+            if (diff == 0) {
+                if (casTail(t, t + 1)) {
+                    return t;
+                }
+            } else if (diff < 0) {
+                // 槽位仍被上一轮数据占用
+                return -1;
+            }
+            t = tail;
+        }
+    }
+
+    /**
+     * 占用一个空闲槽位,没有空闲槽位时最多等待nanos
+     *
+     * @return 槽位序列号,超时返回-1
+     */
+    protected final long claimSlot(long nanos) throws InterruptedException {
+        long sequence;
+        while ((sequence = claimSlot()) < 0) {
+            if (nanos <= 0) {
+                return -1;
+            }
+            nanos = notFull.await(writable, nanos);
+        }
+        return sequence;
+    }
+
+    /**
+     * 从尾指针位置t起一次CAS占用最多n个连续的空闲槽位
+     *
+     * @return 占用的槽位数,没有空闲槽位时返回0,其他生产者抢先移动了尾指针时返回-1
+     */
+    protected final int claimSlots(long t, int n) {
+        int claimed = 0;
+        while (claimed < n && isFree(t + claimed)) {
+            claimed++;
+        }
+        if (claimed == 0) {
+            return sequences.get((int) (t & mask)) < t ? 0 : -1;
+        }
+        return casTail(t, t + claimed) ? claimed : -1;
+    }
+
+    /**
+     * 发布已写好的槽位
+     */
+    protected final void publishSlot(long sequence) {
+        markPublished(sequence);
+        notEmpty.signalIfWaiting();
+    }
+
+    /**
+     * 占用一个已发布的槽位
+     *
+     * @return 槽位序列号,没有已发布槽位时返回-1
+     */
+    protected final long takeSlot() {
+        long h = head;
+        for (;;) {
+            long diff = sequences.get((int) (h & mask)) - (h + 1);
+            if (diff == 0) {
+                if (casHead(h, h + 1)) {
+                    return h;
+                }
+            } else if (diff < 0) {
+                // 槽位尚未发布
+                return -1;
+            }
+            h = head;
+        }
+    }
+
+    /**
+     * 占用一个已发布的槽位,没有时一直等待
+     */
+    protected final long awaitSlot() throws InterruptedException {
+        long sequence;
+        while ((sequence = takeSlot()) < 0) {
+            notEmpty.await(readable);
+        }
+        return sequence;
+    }
+
+    /**
+     * 占用一个已发布的槽位,没有时最多等待nanos
+     *
+     * @return 槽位序列号,超时返回-1
+     */
+    protected final long awaitSlot(long nanos) throws InterruptedException {
+        long sequence;
+        while ((sequence = takeSlot()) < 0) {
+            if (nanos <= 0) {
+                return -1;
+            }
+            nanos = notEmpty.await(readable, nanos);
+        }
+        return sequence;
+    }
+
+    /**
+     * 从头指针位置h起一次CAS占用最多n个连续的已发布槽位
+     *
+     * @return 占用的槽位数,没有已发布槽位时返回0,其他消费者抢先移动了头指针时返回-1
+     */
+    protected final int takeSlots(long h, int n) {
+        int claimed = 0;
+        while (claimed < n && isPublished(h + claimed)) {
+            claimed++;
+        }
+        if (claimed == 0) {
+            return sequences.get((int) (h & mask)) < h + 1 ? 0 : -1;
+        }
+        return casHead(h, h + claimed) ? claimed : -1;
+    }
+
+    /**
+     * 释放读取完的槽位,之后生产者可以再次占用
+     */
+    protected final void releaseSlot(long sequence) {
+        markReleased(sequence);
+        notFull.signalIfWaiting();
+    }
+
+    /**
+     * 槽位是否可以按该序列号占用
+     */
+    protected final boolean isFree(long sequence) {
+        return sequences.get((int) (sequence & mask)) == sequence;
+    }
+
+    /**
+     * 该序列号的槽位是否已发布
+     */
+    protected final boolean isPublished(long sequence) {
+        return sequences.get((int) (sequence & mask)) == sequence + 1;
+    }
+
+    /**
+     * 标记槽位已发布,不通知等待的消费者,批量发布后由调用方统一通知
+     */
+    protected final void markPublished(long sequence) {
+        sequences.set((int) (sequence & mask), sequence + 1);
+    }
+
+    /**
+     * 标记槽位已释放,不通知等待的生产者,批量释放后由调用方统一通知
+     */
+    protected final void markReleased(long sequence) {
+        sequences.set((int) (sequence & mask), sequence + capacity);
+    }
+
+    /**
+     * 头部槽位是否已发布
+     */
+    protected final boolean isReadable() {
+        return isPublished(head);
+    }
+
+    /**
+     * 尾部槽位是否可占用
+     */
+    protected final boolean isWritable() {
+        return isFree(tail);
+    }
+
+    /**
+     * 已占用但尚未被消费者取走的槽位数
+     */
+    public int size() {
+        // 先读头再读尾,保证差值非负
+        long h = head;
+        long t = tail;
+        return (int) Math.min(capacity, Math.max(0, t - h));
+    }
+
+    /**
+     * 获取实际容量
+     */
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.demo.queue.buffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带槽位序号的多生产者多消费者环形缓冲区基类
+ *
+ * 特点:
+ * - 槽位序号协议和头尾指针由RingSequencer实现,与MpmcRingBlockingQueue共用
+ * - 生产者占用槽位后写入数据再发布,消费者占用已发布槽位后读取数据再释放,槽位释放之后才能被再次占用
+ * - 槽位数据由子类按类型保存,入队出队不分配对象
+ */
+public abstract class SequencedRing extends RingSequencer {
+
+    protected SequencedRing(int requestedCapacity) {
+        super(requestedCapacity);
+    }
+
+    /**
+     * 占用一个已发布的槽位,没有时最多等待timeout
+     * 取到后由子类读取并释放槽位,用于需要区分超时和任意取值的元素时
+     *
+     * @return 槽位序列号,超时返回-1
+     */
+    public long takeSequence(long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitSlot(unit.toNanos(timeout));
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.demo.queue.buffer;
+
+import com.example.demo.queue.store.SpillLog;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 带磁盘溢出层的阻塞队列装饰器
+ *
+ * 特点:
+ * - 内存队列未满且溢出层为空时直接写内存队列,不加锁
+ * - 内存队列写满后消息追加到溢出层,此后的消息也写溢出层,直到溢出层清空,保证先进先出
+ * - 消费者取消息时把溢出层的消息搬回内存队列
+ * - 溢出层有磁盘占用上限,超过上限时入队失败
+ */
+@Slf4j
+public class SpillingBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    // 内存队列和溢出层都满时的重试间隔
+    private static final long FULL_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // 内存队列
+    private final BlockingQueue<E> memory;
+    // 磁盘溢出层
+    private final SpillLog<E> spillLog;
+    // 保护溢出层的锁
+    private final ReentrantLock spillLock = new ReentrantLock();
+    // 溢出层消息数,在锁内修改
+    private volatile long spilledCount;
+
+    public SpillingBlockingQueue(BlockingQueue<E> memory, SpillLog<E> spillLog) {
+        this.memory = memory;
+        this.spillLog = spillLog;
+    }
+
+    /**
+     * 入队,消息编码失败时记录日志并拒绝
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        try {
+            return tryOffer(e);
+        } catch (RuntimeException ex) {
+            log.error("消息编码失败, 拒绝入队", ex);
+            return false;
+        }
+    }
+
+    /**
+     * 入队,编码失败时抛出编解码器的异常,由调用方区分队列已满和消息无法写入
+     */
+    private boolean tryOffer(E e) {
+        if (spilledCount == 0 && memory.offer(e)) {
+            return true;
+        }
+        spillLock.lock();
+        try {
+            // 加锁后重新判断,溢出层可能已被消费者搬空
+            if (spillLog.isEmpty() && memory.offer(e)) {
+                return true;
+            }
+            if (!spillLog.append(e)) {
+                return false;
+            }
+            spilledCount = spillLog.size();
+            return true;
+        } catch (IOException ex) {
+            log.error("消息写入溢出文件失败", ex);
+            return false;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        E e = memory.poll();
+        if (spilledCount > 0) {
+            // 内存队列已空时必须等待搬运完成,否则只在锁空闲时顺带搬运
+            refill(e == null);
+            if (e == null) {
+                e = memory.poll();
+            }
+        }
+        return e;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        for (;;) {
+            E e = poll();
+            if (e != null) {
+                return e;
+            }
+            if (spilledCount == 0) {
+                // 溢出层为空时只有内存队列满才会重新溢出,此时take会立即返回
+                return memory.take();
+            }
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = poll();
+        if (e != null) {
+            return e;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (;;) {
+            long remaining = deadline - System.nanoTime();
+            if (spilledCount == 0) {
+                return memory.poll(remaining, TimeUnit.NANOSECONDS);
+            }
+            if ((e = poll()) != null || remaining <= 0) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * 把溢出层的消息按顺序搬回内存队列
+     *
+     * @param wait 是否等待溢出层的锁
+     */
+    private void refill(boolean wait) {
+        if (wait) {
+            spillLock.lock();
+        } else if (!spillLock.tryLock()) {
+            return;
+        }
+        try {
+            for (;;) {
+                E e;
+                try {
+                    e = spillLog.peek();
+                } catch (RuntimeException ex) {
+                    // 无法解码的记录留在溢出层会挡住后面所有消息,记录日志后跳过
+                    log.error("溢出文件中的消息解码失败, 丢弃该消息", ex);
+                    spillLog.advance();
+                    continue;
+                }
+                if (e == null || !memory.offer(e)) {
+                    break;
+                }
+                spillLog.advance();
+            }
+            spilledCount = spillLog.size();
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * 溢出层也达到上限时等待消费者腾出空间,仍按先进先出写入
+     * 消息编码失败时抛出编解码器的异常,不再等待
+     */
+    @Override
+    public void put(E e) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        while (!tryOffer(e)) {
+            waitForSpace();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!tryOffer(e)) {
+            if (deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            waitForSpace();
+        }
+        return true;
+    }
+
+    private static void waitForSpace() throws InterruptedException {
+        LockSupport.parkNanos(FULL_RETRY_NANOS);
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public E peek() {
+        return memory.peek();
+    }
+
+    /**
+     * 内存队列和溢出层的消息总数
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, memory.size() + spilledCount);
+    }
+
+    /**
+     * 内存队列剩余容量,不含溢出层
+     */
+    @Override
+    public int remainingCapacity() {
+        return memory.remainingCapacity();
+    }
+
+    /**
+     * 溢出层消息数
+     */
+    public long getSpilledCount() {
+        return spilledCount;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int count = 0;
+        E e;
+        while (count < maxElements && (e = poll()) != null) {
+            c.add(e);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 只遍历内存队列中的消息
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return memory.iterator();
+    }
+
+    /**
+     * 删除溢出文件
+     */
+    public void close() {
+        spillLock.lock();
+        try {
+            spillLog.close();
+            spilledCount = 0;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+}
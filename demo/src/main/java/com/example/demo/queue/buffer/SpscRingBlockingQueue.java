@@ -0,0 +1,55 @@
+package com.example.demo.queue.buffer;
+
+import java.util.Collection;
+
+/**
+ * 单生产者单消费者无锁环形队列
+ *
+ * 生产者和消费者各自独占尾指针和头指针,入队出队都不做CAS。
+ * 只能在生产线程固定时使用,多个线程同时写入会破坏队列。
+ */
+public class SpscRingBlockingQueue<E> extends MpscRingBlockingQueue<E> {
+
+    public SpscRingBlockingQueue(int requestedCapacity) {
+        super(requestedCapacity);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        long t = tail;
+        if (!isFree(t)) {
+            return false;
+        }
+        buffer[(int) (t & mask)] = e;
+        lazySetTail(t + 1);
+        publishSlot(t);
+        return true;
+    }
+
+    @Override
+    public int offerBatch(Collection<? extends E> c) {
+        for (E e : c) {
+            if (e == null) {
+                throw new NullPointerException();
+            }
+        }
+        long t = tail;
+        int count = 0;
+        for (E e : c) {
+            if (!isFree(t + count)) {
+                break;
+            }
+            buffer[(int) ((t + count) & mask)] = e;
+            markPublished(t + count);
+            count++;
+        }
+        if (count > 0) {
+            lazySetTail(t + count);
+            notEmpty.signalAllIfWaiting();
+        }
+        return count;
+    }
+}
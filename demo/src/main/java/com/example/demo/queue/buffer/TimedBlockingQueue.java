@@ -0,0 +1,146 @@
+package com.example.demo.queue.buffer;
+
+import com.example.demo.queue.model.LatencyHistogram;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录排队时间的阻塞队列装饰器
+ *
+ * 入队时记录时间戳,出队时把排队时间写入直方图。
+ * 每条消息额外包装一个对象,只在开启延迟统计时使用。
+ */
+public class TimedBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    /**
+     * 带入队时间戳的消息
+     */
+    private static final class Stamped<E> {
+        private final E message;
+        private final long enqueueNanos;
+
+        private Stamped(E message, long enqueueNanos) {
+            this.message = message;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+
+    // 实际存储
+    private final BlockingQueue<Stamped<E>> delegate;
+    // 排队时间直方图
+    private final LatencyHistogram[] histograms;
+
+    /**
+     * @param delegate 实际存储
+     * @param histograms 排队时间直方图,如队列级和线程队列级
+     */
+    @SuppressWarnings("unchecked")
+    public TimedBlockingQueue(BlockingQueue<?> delegate, LatencyHistogram... histograms) {
+        this.delegate = (BlockingQueue<Stamped<E>>) delegate;
+        this.histograms = histograms;
+    }
+
+    private Stamped<E> stamp(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return new Stamped<>(e, System.nanoTime());
+    }
+
+    private E unwrap(Stamped<E> stamped) {
+        if (stamped == null) {
+            return null;
+        }
+        long waited = System.nanoTime() - stamped.enqueueNanos;
+        for (LatencyHistogram histogram : histograms) {
+            histogram.record(waited);
+        }
+        return stamped.message;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        return delegate.offer(stamp(e));
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        delegate.put(stamp(e));
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.offer(stamp(e), timeout, unit);
+    }
+
+    @Override
+    public E poll() {
+        return unwrap(delegate.poll());
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return unwrap(delegate.take());
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return unwrap(delegate.poll(timeout, unit));
+    }
+
+    @Override
+    public E peek() {
+        Stamped<E> stamped = delegate.peek();
+        return stamped == null ? null : stamped.message;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return delegate.remainingCapacity();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int count = 0;
+        E e;
+        while (count < maxElements && (e = poll()) != null) {
+            c.add(e);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>(delegate.size());
+        for (Stamped<E> stamped : delegate) {
+            snapshot.add(stamped.message);
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+}
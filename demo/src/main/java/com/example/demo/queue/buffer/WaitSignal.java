@@ -0,0 +1,93 @@
+package com.example.demo.queue.buffer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 等待通知器
+ *
+ * 特点:
+ * - 无等待者时通知方只读取一次等待计数,不加锁
+ * - 有等待者时才通过锁和条件变量唤醒
+ * - 等待方先登记再检查条件,通知方先发布数据再检查等待计数,不会丢失唤醒
+ */
+public final class WaitSignal {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+
+    // 当前等待的线程数
+    private final AtomicInteger waiters = new AtomicInteger(0);
+
+    /**
+     * 有线程等待时唤醒其中一个
+     */
+    public void signalIfWaiting() {
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                condition.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 有线程等待时唤醒全部等待线程
+     */
+    public void signalAllIfWaiting() {
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 等待条件成立
+     *
+     * @param ready 条件检查
+     * @param nanos 最长等待时间(纳秒)
+     * @return 剩余等待时间,小于等于0表示已超时
+     */
+    public long await(BooleanSupplier ready, long nanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        waiters.incrementAndGet();
+        try {
+            while (!ready.getAsBoolean()) {
+                if (nanos <= 0) {
+                    return nanos;
+                }
+                nanos = condition.awaitNanos(nanos);
+            }
+            return nanos;
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 无限期等待条件成立
+     *
+     * @param ready 条件检查
+     */
+    public void await(BooleanSupplier ready) throws InterruptedException {
+        lock.lockInterruptibly();
+        waiters.incrementAndGet();
+        try {
+            while (!ready.getAsBoolean()) {
+                condition.await();
+            }
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo.queue.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 消息编解码器
+ * 消息需要离开堆内存(写入磁盘或堆外缓冲区)时使用
+ */
+public interface MessageCodec<M> {
+
+    /**
+     * 编码消息
+     *
+     * @param message 消息
+     * @return 编码后的字节
+     */
+    byte[] encode(M message);
+
+    /**
+     * 解码消息
+     *
+     * @param buffer 只包含一条消息的缓冲区,从position读到limit
+     * @return 消息
+     */
+    M decode(ByteBuffer buffer);
+}
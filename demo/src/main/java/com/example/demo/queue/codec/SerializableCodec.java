@@ -0,0 +1,40 @@
+package com.example.demo.queue.codec;
+
+import com.example.demo.queue.exception.QueueException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 基于Java序列化的默认编解码器
+ * 消息类型需实现Serializable,对性能敏感的队列应提供专用编解码器
+ */
+public class SerializableCodec<M> implements MessageCodec<M> {
+
+    @Override
+    public byte[] encode(M message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        } catch (IOException e) {
+            throw new QueueException("消息序列化失败", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public M decode(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (M) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new QueueException("消息反序列化失败", e);
+        }
+    }
+}
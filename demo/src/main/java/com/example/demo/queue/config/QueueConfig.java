@@ -31,6 +31,11 @@ public class QueueConfig {
      * 队列容量预警阈值(0-1)
      */
     private double warningThreshold = 0.8;
+
+    /**
+     * 低水位阈值(0-1),积压达到预警阈值后回落到该比例以下才通知回落
+     */
+    private double lowWatermarkThreshold = 0.5;
     
     /**
      * 统计采样间隔(秒)
@@ -41,4 +46,125 @@ public class QueueConfig {
      * 历史记录保存数量
      */
     private int historySize = 30;
-}
\ No newline at end of file
+
+    /**
+     * 队列存储类型
+     */
+    private QueueStorageType storageType = QueueStorageType.LINKED;
+
+    /**
+     * 消费者等待策略
+     */
+    private QueueWaitStrategy waitStrategy = QueueWaitStrategy.BLOCKING;
+
+    /**
+     * 是否统计排队时间和处理时间分布
+     */
+    private boolean latencyTracking = false;
+
+    /**
+     * 是否统计SequenceQueue的热点任务序号和线程队列忙碌比例
+     */
+    private boolean hotKeyTracking = false;
+
+    /**
+     * 热点统计采样率,每N条消息采样一条
+     */
+    private int hotKeySampleRate = 8;
+
+    /**
+     * 工作线程模式
+     */
+    private QueueWorkerMode workerMode = QueueWorkerMode.PLATFORM;
+
+    /**
+     * 内存队列满时是否溢出到磁盘
+     */
+    private boolean spillEnabled = false;
+
+    /**
+     * 溢出文件目录
+     */
+    private String spillDirectory = System.getProperty("java.io.tmpdir") + "/tqf-spill";
+
+    /**
+     * 溢出文件段大小(字节)
+     */
+    private int spillSegmentBytes = 64 * 1024 * 1024;
+
+    /**
+     * 溢出文件磁盘占用上限(字节)
+     */
+    private long spillMaxBytes = 1024L * 1024 * 1024;
+
+    /**
+     * 是否把Queue的消息编码后存放在堆外内存
+     */
+    private boolean offHeapEnabled = false;
+
+    /**
+     * 堆外存储字节上限,每个队列启动时按该值一次性分配堆外内存
+     * 所有开启堆外存储的队列之和不应超过-XX:MaxDirectMemorySize(未设置时与最大堆相同)
+     */
+    private long offHeapMaxBytes = 16L * 1024 * 1024;
+
+    /**
+     * 是否开启预写日志,重启后重放未确认的消息
+     */
+    private boolean journalEnabled = false;
+
+    /**
+     * 预写日志目录
+     */
+    private String journalDirectory = System.getProperty("java.io.tmpdir") + "/tqf-journal";
+
+    /**
+     * 预写日志段大小(字节)
+     */
+    private int journalSegmentBytes = 64 * 1024 * 1024;
+
+    /**
+     * 预写日志刷盘间隔(毫秒),同一间隔内的写入合并为一次刷盘
+     */
+    private long journalFlushIntervalMillis = 10;
+
+    /**
+     * 是否等待刷盘完成后putq才返回
+     */
+    private boolean journalSyncWrites = false;
+
+    /**
+     * 是否根据积压和处理速率自动调整Queue的工作线程数
+     */
+    private boolean elasticEnabled = false;
+
+    /**
+     * 弹性模式最少工作线程数
+     */
+    private int elasticMinThreads = 1;
+
+    /**
+     * 弹性模式最多工作线程数
+     */
+    private int elasticMaxThreads = 16;
+
+    /**
+     * 扩容冷却时间(毫秒),距上次调整不足该时间时不扩容
+     */
+    private long elasticScaleUpCooldownMillis = 5000;
+
+    /**
+     * 缩容冷却时间(毫秒),距上次调整不足该时间时不缩容
+     */
+    private long elasticScaleDownCooldownMillis = 30000;
+
+    /**
+     * SequenceQueue线程队列数上限,运行中重新分区扩容不能超过该值,0表示与初始线程数相同
+     */
+    private int sequenceMaxThreadCount = 0;
+
+    /**
+     * PriorityLaneQueue的通道权重,长度即通道数,下标0优先级最高
+     */
+    private int[] priorityLaneWeights = {8, 2, 1};
+}
@@ -0,0 +1,85 @@
+package com.example.demo.queue.config;
+
+import com.example.demo.queue.buffer.MpmcRingBlockingQueue;
+import com.example.demo.queue.buffer.MpscRingBlockingQueue;
+import com.example.demo.queue.buffer.SpscRingBlockingQueue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 队列存储类型
+ */
+public enum QueueStorageType {
+
+    /**
+     * 链表阻塞队列,默认类型,与原有行为兼容
+     */
+    LINKED,
+
+    /**
+     * 预分配数组的无锁多生产者多消费者环形缓冲区
+     * 容量向上取整为2的幂,入队出队不分配节点
+     */
+    RING_BUFFER,
+
+    /**
+     * 多生产者单消费者环形缓冲区,消费端不做CAS
+     * 只用于单消费线程的队列,如SequenceQueue的线程队列
+     */
+    MPSC_RING,
+
+    /**
+     * 单生产者单消费者环形缓冲区,入队出队都不做CAS
+     * 只用于生产线程固定且单消费线程的队列
+     */
+    SPSC_RING;
+
+    /**
+     * 是否只允许单个消费线程
+     */
+    public boolean isSingleConsumer() {
+        return this == MPSC_RING || this == SPSC_RING;
+    }
+
+    /**
+     * 获取可用于多消费线程的存储类型,单消费类型退化为RING_BUFFER
+     */
+    public QueueStorageType forMultiConsumer() {
+        return isSingleConsumer() ? RING_BUFFER : this;
+    }
+
+    /**
+     * 是否只允许单个生产线程
+     */
+    public boolean isSingleProducer() {
+        return this == SPSC_RING;
+    }
+
+    /**
+     * 获取可用于多生产线程的存储类型,SPSC_RING退化为MPSC_RING
+     */
+    public QueueStorageType forMultiProducer() {
+        return isSingleProducer() ? MPSC_RING : this;
+    }
+
+    /**
+     * 按存储类型创建阻塞队列
+     *
+     * @param capacity 队列容量
+     * @return 阻塞队列
+     */
+    public <E> BlockingQueue<E> createQueue(int capacity) {
+        switch (this) {
+            case RING_BUFFER:
+                return new MpmcRingBlockingQueue<>(capacity);
+            case MPSC_RING:
+                return new MpscRingBlockingQueue<>(capacity);
+            case SPSC_RING:
+                return new SpscRingBlockingQueue<>(capacity);
+            case LINKED:
+            default:
+                return new LinkedBlockingQueue<>(capacity);
+        }
+    }
+}
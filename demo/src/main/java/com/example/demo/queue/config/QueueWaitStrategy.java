@@ -0,0 +1,167 @@
+package com.example.demo.queue.config;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消费者等待策略
+ *
+ * 决定getq在队列为空时如何等待:
+ * - BLOCKING: 直接阻塞,CPU占用最低,唤醒延迟最高
+ * - BUSY_SPIN: 持续轮询,独占一个CPU核,交接延迟最低
+ * - YIELDING: 短暂轮询后让出CPU
+ * - SPIN_THEN_PARK: 依次轮询、让出CPU,仍无消息时退化为阻塞等待
+ */
+public enum QueueWaitStrategy {
+
+    BLOCKING {
+        @Override
+        public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+            return queue.take();
+        }
+
+        @Override
+        public <E> E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit) throws InterruptedException {
+            return queue.poll(timeout, unit);
+        }
+    },
+
+    BUSY_SPIN {
+        @Override
+        public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+            return spin(queue, Long.MAX_VALUE, false, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public <E> E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit) throws InterruptedException {
+            return spin(queue, unit.toNanos(timeout), true, Integer.MAX_VALUE);
+        }
+    },
+
+    YIELDING {
+        @Override
+        public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+            return spin(queue, Long.MAX_VALUE, false, SPIN_TRIES);
+        }
+
+        @Override
+        public <E> E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit) throws InterruptedException {
+            return spin(queue, unit.toNanos(timeout), true, SPIN_TRIES);
+        }
+    },
+
+    SPIN_THEN_PARK {
+        @Override
+        public <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+            E e = spin(queue, SPIN_THEN_PARK_NANOS, true, SPIN_TRIES);
+            return e != null ? e : queue.take();
+        }
+
+        @Override
+        public <E> E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            long start = System.nanoTime();
+            E e = spin(queue, Math.min(nanos, SPIN_THEN_PARK_NANOS), true, SPIN_TRIES);
+            if (e != null) {
+                return e;
+            }
+            long remaining = nanos - (System.nanoTime() - start);
+            return queue.poll(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        }
+    };
+
+    /**
+     * 让出CPU前的空转次数
+     */
+    private static final int SPIN_TRIES = 100;
+
+    /**
+     * SPIN_THEN_PARK策略退化为阻塞前的最长自旋时间(纳秒)
+     */
+    private static final long SPIN_THEN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * 每隔多少次轮询检查一次超时和中断
+     */
+    private static final int CHECK_INTERVAL_MASK = 0x3F;
+
+    /**
+     * 是否在队列为空时持续占用CPU
+     */
+    public boolean isSpinning() {
+        return this == BUSY_SPIN || this == YIELDING;
+    }
+
+    /**
+     * 获取消息,队列为空时按策略等待
+     */
+    public abstract <E> E take(BlockingQueue<E> queue) throws InterruptedException;
+
+    /**
+     * 在超时时间内获取消息,超时返回null
+     */
+    public abstract <E> E poll(BlockingQueue<E> queue, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 批量获取消息
+     * 先取走队列中已有的消息,不足maxElements时在超时时间内继续等待
+     *
+     * @param queue 队列
+     * @param buffer 接收消息的集合
+     * @param maxElements 最多获取的消息数
+     * @param timeout 最长等待时间,为0时只取已有消息
+     * @param unit 时间单位
+     * @return 获取到的消息数
+     */
+    public <E> int drain(BlockingQueue<E> queue, Collection<? super E> buffer, int maxElements,
+                         long timeout, TimeUnit unit) throws InterruptedException {
+        int drained = queue.drainTo(buffer, maxElements);
+        if (drained >= maxElements || timeout <= 0) {
+            return drained;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (drained < maxElements) {
+            E e = poll(queue, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (e == null) {
+                break;
+            }
+            buffer.add(e);
+            drained++;
+            drained += queue.drainTo(buffer, maxElements - drained);
+        }
+        return drained;
+    }
+
+    /**
+     * 轮询队列,空转spinTries次后每轮让出CPU
+     *
+     * @param queue 队列
+     * @param nanos 最长等待时间(纳秒)
+     * @param timed 是否计时
+     * @param spinTries 让出CPU前的空转次数
+     * @return 消息,超时返回null
+     */
+    private static <E> E spin(BlockingQueue<E> queue, long nanos, boolean timed, int spinTries)
+            throws InterruptedException {
+        long deadline = timed ? System.nanoTime() + nanos : 0L;
+        int counter = 0;
+        E e;
+        while ((e = queue.poll()) == null) {
+            if (counter < spinTries) {
+                counter++;
+            } else {
+                Thread.yield();
+            }
+            if ((counter & CHECK_INTERVAL_MASK) == 0 || counter >= spinTries) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (timed && System.nanoTime() - deadline >= 0) {
+                    return null;
+                }
+            }
+        }
+        return e;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.demo.queue.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作线程模式
+ */
+@Slf4j
+public enum QueueWorkerMode {
+
+    /**
+     * 固定大小的平台线程池,默认模式,适合CPU密集型队列
+     */
+    PLATFORM,
+
+    /**
+     * 每个工作线程一个虚拟线程,适合处理逻辑大多阻塞在I/O上的队列
+     * 需要JDK 21及以上,低版本JDK退化为PLATFORM
+     */
+    VIRTUAL;
+
+    /**
+     * 工作线程名前缀,线程名为前缀+队列名+序号
+     */
+    public static final String THREAD_NAME_PREFIX = "tqf-";
+
+    /**
+     * JDK中创建虚拟线程的方法: Thread.ofVirtual()、Thread.Builder.name(String, long)、
+     * Thread.Builder.factory()和Executors.newThreadPerTaskExecutor(ThreadFactory),低版本JDK为null
+     */
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method threadPerTaskExecutor = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builder.getMethod("name", String.class, long.class);
+            builderFactory = builder.getMethod("factory");
+            threadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        THREAD_PER_TASK_EXECUTOR = threadPerTaskExecutor;
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     */
+    public static boolean isVirtualThreadSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * 获取当前JDK上实际生效的模式
+     */
+    public QueueWorkerMode effective() {
+        return this == VIRTUAL && !isVirtualThreadSupported() ? PLATFORM : this;
+    }
+
+    /**
+     * 创建工作线程执行器,工作线程按THREAD_NAME_PREFIX+队列名+"-"+序号命名
+     *
+     * @param queueName 队列名称
+     * @param threadNum 工作线程数
+     * @return 执行器
+     */
+    public ExecutorService createExecutor(String queueName, int threadNum) {
+        String namePrefix = THREAD_NAME_PREFIX + queueName + "-";
+        if (this == VIRTUAL) {
+            if (isVirtualThreadSupported()) {
+                try {
+                    Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+                    ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+                    return (ExecutorService) THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+                } catch (ReflectiveOperationException e) {
+                    log.error("队列[{}]创建虚拟线程执行器失败, 使用平台线程池", queueName, e);
+                }
+            } else {
+                log.warn("当前JDK[{}]不支持虚拟线程, 队列[{}]使用平台线程池",
+                        System.getProperty("java.version"), queueName);
+            }
+        }
+        AtomicInteger sequence = new AtomicInteger();
+        return Executors.newFixedThreadPool(threadNum,
+                runnable -> new Thread(runnable, namePrefix + sequence.getAndIncrement()));
+    }
+}
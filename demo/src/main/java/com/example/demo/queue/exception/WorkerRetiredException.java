@@ -0,0 +1,12 @@
+package com.example.demo.queue.exception;
+
+/**
+ * 工作线程被回收
+ * 弹性模式下由getq抛出,结束空闲工作线程的svc循环
+ */
+public class WorkerRetiredException extends QueueException {
+
+    public WorkerRetiredException(String queueName) {
+        super(String.format("队列[%s]回收空闲工作线程", queueName));
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.queue.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 出队事件,持续时间为getq等待消息的时间(含暂停等待)
+ * 空闲工作线程的等待也会被记录,默认阈值较高,可在JFR配置中调整threshold
+ */
+@Name("com.example.demo.queue.Dequeue")
+@Label("Queue Dequeue")
+@Category({"Queue"})
+@Description("getq等待消息")
+@Threshold("20 ms")
+@StackTrace(false)
+class DequeueEvent extends Event {
+
+    @Label("Queue Name")
+    String queueName;
+
+    @Label("Lane")
+    int lane;
+
+    @Label("Messages")
+    int messages;
+
+    /**
+     * 结束计时,超过阈值时填写字段并提交
+     */
+    public void complete(String queueName, int lane, int messages) {
+        end();
+        if (shouldCommit()) {
+            this.queueName = queueName;
+            this.lane = lane;
+            this.messages = messages;
+            commit();
+        }
+    }
+}
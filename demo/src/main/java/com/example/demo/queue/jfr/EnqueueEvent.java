@@ -0,0 +1,49 @@
+package com.example.demo.queue.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 入队事件,持续时间为putq等待队列空间的时间
+ * 默认只记录超过阈值的入队,可在JFR配置中调整threshold
+ */
+@Name("com.example.demo.queue.Enqueue")
+@Label("Queue Enqueue")
+@Category({"Queue"})
+@Description("putq等待队列空间")
+@Threshold("1 ms")
+@StackTrace(false)
+class EnqueueEvent extends Event {
+
+    @Label("Queue Name")
+    String queueName;
+
+    @Label("Lane")
+    int lane;
+
+    @Label("Queue Size")
+    int queueSize;
+
+    @Label("Accepted")
+    boolean accepted;
+
+    /**
+     * 结束计时,超过阈值时填写字段并提交
+     * JFR未开启该事件时不做任何事
+     */
+    public void complete(String queueName, int lane, int queueSize, boolean accepted) {
+        end();
+        if (shouldCommit()) {
+            this.queueName = queueName;
+            this.lane = lane;
+            this.queueSize = queueSize;
+            this.accepted = accepted;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo.queue.jfr;
+
+import com.example.demo.queue.model.QueueStatistics;
+import jdk.jfr.EventType;
+
+/**
+ * 用JFR事件记录队列事件,只由QueueEvents在运行时存在jdk.jfr.Event时通过反射加载
+ */
+class JfrQueueRecorder implements QueueRecorder {
+
+    // 事件类型,没有记录开启对应事件时不创建事件对象
+    private static final EventType ENQUEUE_TYPE = EventType.getEventType(EnqueueEvent.class);
+    private static final EventType DEQUEUE_TYPE = EventType.getEventType(DequeueEvent.class);
+
+    @Override
+    public Object beginEnqueue() {
+        if (!ENQUEUE_TYPE.isEnabled()) {
+            return null;
+        }
+        EnqueueEvent event = new EnqueueEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endEnqueue(Object event, String queueName, int lane, int queueSize, boolean accepted) {
+        ((EnqueueEvent) event).complete(queueName, lane, queueSize, accepted);
+    }
+
+    @Override
+    public Object beginDequeue() {
+        if (!DEQUEUE_TYPE.isEnabled()) {
+            return null;
+        }
+        DequeueEvent event = new DequeueEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endDequeue(Object event, String queueName, int lane, int messages) {
+        ((DequeueEvent) event).complete(queueName, lane, messages);
+    }
+
+    @Override
+    public void reject(String queueName, int lane, int queueSize, int capacity, long timeoutMillis, int messages) {
+        RejectEvent.emit(queueName, lane, queueSize, capacity, timeoutMillis, messages);
+    }
+
+    @Override
+    public Object startSvcBatch(String queueName, int lane, int messages) {
+        return SvcBatchEvent.start(queueName, lane, messages);
+    }
+
+    @Override
+    public void endSvcBatch(Object batch) {
+        ((SvcBatchEvent) batch).commit();
+    }
+
+    @Override
+    public void sample(QueueStatistics statistics) {
+        QueueSampleEvent.emit(statistics);
+    }
+}
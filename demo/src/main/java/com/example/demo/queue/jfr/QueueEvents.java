@@ -0,0 +1,121 @@
+package com.example.demo.queue.jfr;
+
+import com.example.demo.queue.model.QueueStatistics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 队列JFR事件的入口,队列代码只通过这个类记录事件
+ *
+ * 类加载时检查一次运行时是否有jdk.jfr.Event(JDK 11+,以及带JFR的JDK 8u262+):
+ * - 有时通过反射加载JfrQueueRecorder,事件类只在这之后才会被加载
+ * - 没有时所有方法直接返回,开始计时的方法返回null,不会触发NoClassDefFoundError
+ *
+ * 开始计时的方法返回的对象只能原样传回对应的结束方法,可以为null。
+ */
+@Slf4j
+public final class QueueEvents {
+
+    private static final String JFR_EVENT_CLASS = "jdk.jfr.Event";
+    private static final String RECORDER_CLASS = "com.example.demo.queue.jfr.JfrQueueRecorder";
+
+    /**
+     * 运行时不支持JFR时为null
+     */
+    private static final QueueRecorder RECORDER = loadRecorder();
+
+    private QueueEvents() {
+    }
+
+    private static QueueRecorder loadRecorder() {
+        ClassLoader loader = QueueEvents.class.getClassLoader();
+        try {
+            Class.forName(JFR_EVENT_CLASS, false, loader);
+        } catch (ClassNotFoundException e) {
+            log.info("运行时不支持JFR, 不记录队列事件");
+            return null;
+        }
+        try {
+            return (QueueRecorder) Class.forName(RECORDER_CLASS, true, loader).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("加载JFR队列事件失败, 不记录队列事件", e);
+            return null;
+        }
+    }
+
+    /**
+     * 运行时是否支持JFR
+     */
+    public static boolean isAvailable() {
+        return RECORDER != null;
+    }
+
+    /**
+     * putq开始等待队列空间,JFR未开启Enqueue事件时返回null
+     */
+    public static Object beginEnqueue() {
+        return RECORDER == null ? null : RECORDER.beginEnqueue();
+    }
+
+    /**
+     * putq结束,等待时间超过阈值时记录Enqueue事件
+     */
+    public static void endEnqueue(Object event, String queueName, int lane, int queueSize, boolean accepted) {
+        if (event != null) {
+            RECORDER.endEnqueue(event, queueName, lane, queueSize, accepted);
+        }
+    }
+
+    /**
+     * getq开始等待消息,JFR未开启Dequeue事件时返回null
+     */
+    public static Object beginDequeue() {
+        return RECORDER == null ? null : RECORDER.beginDequeue();
+    }
+
+    /**
+     * getq结束,等待时间超过阈值时记录Dequeue事件
+     */
+    public static void endDequeue(Object event, String queueName, int lane, int messages) {
+        if (event != null) {
+            RECORDER.endDequeue(event, queueName, lane, messages);
+        }
+    }
+
+    /**
+     * 记录一次入队拒绝
+     *
+     * @param timeoutMillis 等待时间(毫秒),未等待时为0
+     * @param messages 被拒绝的消息数
+     */
+    public static void reject(String queueName, int lane, int queueSize, int capacity, long timeoutMillis,
+                              int messages) {
+        if (RECORDER != null) {
+            RECORDER.reject(queueName, lane, queueSize, capacity, timeoutMillis, messages);
+        }
+    }
+
+    /**
+     * 批量getq取到消息后开始计时,JFR未开启SvcBatch事件时返回null
+     */
+    public static Object startSvcBatch(String queueName, int lane, int messages) {
+        return RECORDER == null ? null : RECORDER.startSvcBatch(queueName, lane, messages);
+    }
+
+    /**
+     * 下一次getq、ack或工作线程退出时结束上一批的计时并提交
+     */
+    public static void endSvcBatch(Object batch) {
+        if (batch != null) {
+            RECORDER.endSvcBatch(batch);
+        }
+    }
+
+    /**
+     * 记录一个队列的最新快照
+     */
+    public static void sample(QueueStatistics statistics) {
+        if (RECORDER != null) {
+            RECORDER.sample(statistics);
+        }
+    }
+}
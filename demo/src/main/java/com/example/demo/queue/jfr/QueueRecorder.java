@@ -0,0 +1,26 @@
+package com.example.demo.queue.jfr;
+
+import com.example.demo.queue.model.QueueStatistics;
+
+/**
+ * 队列事件的记录方式,由QueueEvents在JFR可用时加载JfrQueueRecorder
+ * 开始计时的方法返回的对象只能传回对应的结束方法
+ */
+interface QueueRecorder {
+
+    Object beginEnqueue();
+
+    void endEnqueue(Object event, String queueName, int lane, int queueSize, boolean accepted);
+
+    Object beginDequeue();
+
+    void endDequeue(Object event, String queueName, int lane, int messages);
+
+    void reject(String queueName, int lane, int queueSize, int capacity, long timeoutMillis, int messages);
+
+    Object startSvcBatch(String queueName, int lane, int messages);
+
+    void endSvcBatch(Object batch);
+
+    void sample(QueueStatistics statistics);
+}
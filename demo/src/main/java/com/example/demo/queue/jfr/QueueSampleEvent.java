@@ -0,0 +1,68 @@
+package com.example.demo.queue.jfr;
+
+import com.example.demo.queue.model.QueueSnapshot;
+import com.example.demo.queue.model.QueueStatistics;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 队列定期采样事件,每次统计采样后记录一次
+ */
+@Name("com.example.demo.queue.Sample")
+@Label("Queue Sample")
+@Category({"Queue"})
+@Description("队列积压和速率的定期采样")
+@StackTrace(false)
+class QueueSampleEvent extends Event {
+
+    @Label("Queue Name")
+    String queueName;
+
+    @Label("Thread Count")
+    int threadCount;
+
+    @Label("Max Lane Depth")
+    int maxLaneDepth;
+
+    @Label("Mean Lane Depth")
+    double meanLaneDepth;
+
+    @Label("Received")
+    long received;
+
+    @Label("Handled")
+    long handled;
+
+    @Label("Receive Rate")
+    double receiveRate;
+
+    @Label("Handle Rate")
+    double handleRate;
+
+    /**
+     * 记录一个队列的最新快照,JFR未开启该事件时不做任何事
+     */
+    public static void emit(QueueStatistics statistics) {
+        QueueSampleEvent event = new QueueSampleEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        QueueSnapshot snapshot = statistics.getLatestSnap();
+        if (snapshot == null) {
+            return;
+        }
+        event.queueName = statistics.getQueueName();
+        event.threadCount = statistics.getThreadCount();
+        event.maxLaneDepth = snapshot.getMaxLaneDepth();
+        event.meanLaneDepth = snapshot.getMeanLaneDepth();
+        event.received = snapshot.getReceivedCount();
+        event.handled = snapshot.getHandledCount();
+        event.receiveRate = statistics.getReceivedRate();
+        event.handleRate = statistics.getHandledRate();
+        event.commit();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.queue.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 入队被拒绝事件,队列满或等待超时时记录
+ */
+@Name("com.example.demo.queue.Reject")
+@Label("Queue Reject")
+@Category({"Queue"})
+@Description("putq因队列满或等待超时被拒绝")
+class RejectEvent extends Event {
+
+    @Label("Queue Name")
+    String queueName;
+
+    @Label("Lane")
+    int lane;
+
+    @Label("Queue Size")
+    int queueSize;
+
+    @Label("Capacity")
+    int capacity;
+
+    @Label("Timeout")
+    @Timespan(Timespan.MILLISECONDS)
+    long timeout;
+
+    @Label("Messages")
+    int messages;
+
+    /**
+     * 记录一次拒绝,JFR未开启该事件时不做任何事
+     *
+     * @param timeoutMillis 等待时间(毫秒),未等待时为0
+     * @param messages 被拒绝的消息数
+     */
+    public static void emit(String queueName, int lane, int queueSize, int capacity, long timeoutMillis, int messages) {
+        RejectEvent event = new RejectEvent();
+        if (event.shouldCommit()) {
+            event.queueName = queueName;
+            event.lane = lane;
+            event.queueSize = queueSize;
+            event.capacity = capacity;
+            event.timeout = timeoutMillis;
+            event.messages = messages;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.queue.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * svc处理一批消息的事件,持续时间从批量getq返回到下一次getq、ack或工作线程退出
+ */
+@Name("com.example.demo.queue.SvcBatch")
+@Label("Queue Svc Batch")
+@Category({"Queue"})
+@Description("svc处理批量getq取到的消息")
+@Threshold("10 ms")
+@StackTrace(false)
+class SvcBatchEvent extends Event {
+
+    @Label("Queue Name")
+    String queueName;
+
+    @Label("Lane")
+    int lane;
+
+    @Label("Messages")
+    int messages;
+
+    /**
+     * 批量getq取到消息后开始计时,JFR未开启该事件时返回null
+     */
+    public static SvcBatchEvent start(String queueName, int lane, int messages) {
+        SvcBatchEvent event = new SvcBatchEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.queueName = queueName;
+        event.lane = lane;
+        event.messages = messages;
+        event.begin();
+        return event;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.queue.mgr;
 
-import java.util.concurrent.BlockingQueue;
+import com.example.demo.queue.absqueue.Queue_I;
+
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -13,7 +14,7 @@ public class QueueMMLMgr {
     private static volatile QueueMMLMgr instance = null;
     
     // 存储队列映射关系,key为队列名称,value为队列实例
-    private final ConcurrentHashMap<String, BlockingQueue<Object>> queueMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Queue_I> queueMap = new ConcurrentHashMap<>();
 
     /**
      * 私有构造函数,防止外部实例化
@@ -39,7 +40,7 @@ public class QueueMMLMgr {
      * @param queueName 队列名称
      * @param queue 队列实例
      */
-    public void registerQueueMML(String queueName, BlockingQueue<Object> queue) {
+    public void registerQueueMML(String queueName, Queue_I queue) {
         queueMap.put(queueName, queue);
     }
 
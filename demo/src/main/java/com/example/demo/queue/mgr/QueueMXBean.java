@@ -0,0 +1,93 @@
+package com.example.demo.queue.mgr;
+
+/**
+ * 队列的JMX管理接口
+ *
+ * 每个通过QueueStatistics.register()注册的队列对应一个实例,
+ * ObjectName为com.example.demo.queue:type=Queue,name="队列名称"。
+ * 属性只读取计数器、队列大小和最近一次快照,不获取队列的锁。
+ */
+public interface QueueMXBean {
+
+    /**
+     * 队列名称
+     */
+    String getQueueName();
+
+    /**
+     * 工作线程数
+     */
+    int getThreadCount();
+
+    /**
+     * 单个线程队列的容量
+     */
+    int getCapacity();
+
+    /**
+     * 各线程队列的积压消息数,下标为线程队列序号
+     */
+    int[] getLaneDepths();
+
+    /**
+     * 积压消息总数
+     */
+    long getQueueSize();
+
+    /**
+     * 累计接收消息数
+     */
+    long getReceivedCount();
+
+    /**
+     * 累计处理消息数
+     */
+    long getHandledCount();
+
+    /**
+     * 最近historySize次采样内的每秒接收量
+     */
+    double getReceiveRate();
+
+    /**
+     * 最近historySize次采样内的每秒处理量
+     */
+    double getHandleRate();
+
+    /**
+     * 最近一次采样的排队时间50/99/99.9分位和最大值(纳秒),未开启延迟统计时为空数组
+     */
+    long[] getWaitTimePercentiles();
+
+    /**
+     * 最近一次采样的处理时间50/99/99.9分位和最大值(纳秒),未开启延迟统计时为空数组
+     */
+    long[] getServiceTimePercentiles();
+
+    /**
+     * 最近一次采样工作线程处理消息的时间占比的平均值(0-1),还没有采样时为-1
+     */
+    double getWorkerUtilization();
+
+    /**
+     * 是否已暂停消费,队列不支持管理操作时为false
+     */
+    boolean isPaused();
+
+    /**
+     * 调整工作线程数
+     *
+     * @return 是否已开始调整
+     */
+    boolean resize(int threadCount);
+
+    /**
+     * 暂停消费
+     */
+    void pause();
+
+    /**
+     * 恢复消费
+     */
+    void resume();
+}
@@ -0,0 +1,137 @@
+package com.example.demo.queue.mgr;
+
+import com.example.demo.queue.absqueue.ManageableQueue;
+import com.example.demo.queue.absqueue.Queue_I;
+import com.example.demo.queue.model.LatencySummary;
+import com.example.demo.queue.model.QueueSnapshot;
+import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.QueueStatus;
+
+import java.util.List;
+
+/**
+ * 队列的JMX管理实现,从队列统计信息读取属性
+ */
+public class QueueMonitor implements QueueMXBean {
+
+    private static final long[] NO_PERCENTILES = new long[0];
+
+    private final QueueStatistics statistics;
+
+    public QueueMonitor(QueueStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public String getQueueName() {
+        return statistics.getQueueName();
+    }
+
+    @Override
+    public int getThreadCount() {
+        return statistics.getThreadCount();
+    }
+
+    @Override
+    public int getCapacity() {
+        return statistics.getMaxQueueSize();
+    }
+
+    @Override
+    public int[] getLaneDepths() {
+        List<QueueStatus> lanes = laneStatus();
+        int[] depths = new int[lanes.size()];
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = lanes.get(i).getPendingCount();
+        }
+        return depths;
+    }
+
+    @Override
+    public long getQueueSize() {
+        long size = 0;
+        for (QueueStatus lane : laneStatus()) {
+            size += lane.getPendingCount();
+        }
+        return size;
+    }
+
+    @Override
+    public long getReceivedCount() {
+        return statistics.getReceivedMessageCount().sum();
+    }
+
+    @Override
+    public long getHandledCount() {
+        return statistics.getProcessedMessageCount().sum();
+    }
+
+    @Override
+    public double getReceiveRate() {
+        return statistics.getReceivedRate();
+    }
+
+    @Override
+    public double getHandleRate() {
+        return statistics.getHandledRate();
+    }
+
+    @Override
+    public long[] getWaitTimePercentiles() {
+        QueueSnapshot snapshot = statistics.getLatestSnap();
+        return snapshot == null ? NO_PERCENTILES : percentiles(snapshot.getWaitTime());
+    }
+
+    @Override
+    public long[] getServiceTimePercentiles() {
+        QueueSnapshot snapshot = statistics.getLatestSnap();
+        return snapshot == null ? NO_PERCENTILES : percentiles(snapshot.getServiceTime());
+    }
+
+    @Override
+    public double getWorkerUtilization() {
+        QueueSnapshot snapshot = statistics.getLatestSnap();
+        return snapshot == null ? -1 : snapshot.getWorkerUtilization();
+    }
+
+    @Override
+    public boolean isPaused() {
+        Queue_I queue = statistics.getQueueInstance();
+        return queue instanceof ManageableQueue && ((ManageableQueue) queue).isPaused();
+    }
+
+    @Override
+    public boolean resize(int threadCount) {
+        return manageable().resize(threadCount);
+    }
+
+    @Override
+    public void pause() {
+        manageable().pause();
+    }
+
+    @Override
+    public void resume() {
+        manageable().resume();
+    }
+
+    private List<QueueStatus> laneStatus() {
+        return statistics.getQueueInstance().getQueueStatus();
+    }
+
+    private ManageableQueue manageable() {
+        Queue_I queue = statistics.getQueueInstance();
+        if (!(queue instanceof ManageableQueue)) {
+            throw new UnsupportedOperationException(
+                    String.format("队列[%s]不支持运行中调整", statistics.getQueueName()));
+        }
+        return (ManageableQueue) queue;
+    }
+
+    private static long[] percentiles(LatencySummary summary) {
+        if (summary == null) {
+            return NO_PERCENTILES;
+        }
+        return new long[]{summary.getP50(), summary.getP99(), summary.getP999(), summary.getMax()};
+    }
+}
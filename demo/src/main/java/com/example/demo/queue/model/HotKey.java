@@ -0,0 +1,29 @@
+package com.example.demo.queue.model;
+
+import lombok.Data;
+
+/**
+ * 热点任务序号
+ */
+@Data
+public class HotKey {
+    /**
+     * 任务序号
+     */
+    private int key;
+
+    /**
+     * 采样周期内的估计消息数,按采样率放大
+     */
+    private long count;
+
+    /**
+     * 估计消息数可能偏高的上限,按采样率放大
+     */
+    private long error;
+
+    /**
+     * 占采样周期内消息总数的比例(0-1)
+     */
+    private double share;
+}
@@ -0,0 +1,116 @@
+package com.example.demo.queue.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 热点任务序号统计(Space-Saving)
+ *
+ * 特点:
+ * - 最多跟踪capacity个序号,内存固定,计数超过总量/capacity的序号一定在结果中
+ * - 表满时新序号替换计数最小的序号,并继承其计数作为误差上限
+ * - 按1/sampleRate的概率采样,未采中的记录只有一次随机数开销,采中的记录加锁更新
+ * - 每次快照后清空,结果只反映一个采样周期
+ */
+public class HotKeySketch {
+
+    /**
+     * 单个序号的计数
+     */
+    private static final class Counter {
+        private int key;
+        private long count;
+        private long error;
+    }
+
+    // 最多跟踪的序号数
+    private final int capacity;
+    // 采样率,每sampleRate条消息采样一条
+    private final int sampleRate;
+    // 序号到计数的映射
+    private final Map<Integer, Counter> counters;
+    // 本周期采样到的消息数
+    private long total;
+
+    /**
+     * @param capacity 最多跟踪的序号数
+     * @param sampleRate 采样率,为1时记录每条消息
+     */
+    public HotKeySketch(int capacity, int sampleRate) {
+        this.capacity = Math.max(1, capacity);
+        this.sampleRate = Math.max(1, sampleRate);
+        this.counters = new HashMap<>(this.capacity * 2);
+    }
+
+    /**
+     * 记录同一任务序号的一批消息,批量入队时按批采样
+     *
+     * @param key 任务序号
+     * @param count 消息数
+     */
+    public void record(int key, int count) {
+        if (count <= 0 || this.sampleRate > 1 && ThreadLocalRandom.current().nextInt(this.sampleRate) != 0) {
+            return;
+        }
+        synchronized (this) {
+            this.total += count;
+            Counter counter = this.counters.get(key);
+            if (counter != null) {
+                counter.count += count;
+                return;
+            }
+            if (this.counters.size() < this.capacity) {
+                counter = new Counter();
+                counter.key = key;
+                counter.count = count;
+                this.counters.put(key, counter);
+                return;
+            }
+            // 替换计数最小的序号
+            Counter min = null;
+            for (Counter candidate : this.counters.values()) {
+                if (min == null || candidate.count < min.count) {
+                    min = candidate;
+                }
+            }
+            this.counters.remove(min.key);
+            min.key = key;
+            min.error = min.count;
+            min.count += count;
+            this.counters.put(key, min);
+        }
+    }
+
+    /**
+     * 取出本周期计数最大的序号并清空
+     *
+     * @param topN 最多返回的序号数
+     * @return 按估计消息数从大到小排列
+     */
+    public List<HotKey> snapshot(int topN) {
+        List<Counter> sorted;
+        long sampled;
+        synchronized (this) {
+            sorted = new ArrayList<>(this.counters.values());
+            sampled = this.total;
+            this.counters.clear();
+            this.total = 0;
+        }
+        sorted.sort((a, b) -> Long.compare(b.count, a.count));
+
+        List<HotKey> hotKeys = new ArrayList<>(Math.min(topN, sorted.size()));
+        for (int i = 0; i < sorted.size() && i < topN; i++) {
+            Counter counter = sorted.get(i);
+            HotKey hotKey = new HotKey();
+            hotKey.setKey(counter.key);
+            hotKey.setCount(counter.count * this.sampleRate);
+            hotKey.setError(counter.error * this.sampleRate);
+            hotKey.setShare((double) counter.count / sampled);
+            hotKeys.add(hotKey);
+        }
+        return hotKeys;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.demo.queue.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 对数线性延迟直方图
+ *
+ * 特点:
+ * - 小于64纳秒的值每纳秒一个桶,之后每个2的幂区间再均分32个桶,相对误差约3%
+ * - 桶数组在创建时一次分配,内存固定,记录时不分配对象
+ * - 记录只对一个桶做原子自增,多线程记录无锁
+ * - 超过上限的值计入最后一个桶,最大值单独精确记录
+ */
+public class LatencyHistogram {
+
+    /**
+     * 每个2的幂区间的子桶位数
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * 每个2的幂区间的子桶数
+     */
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 线性区间的上限
+     */
+    private static final int LINEAR_LIMIT = SUB_BUCKET_HALF_COUNT << 1;
+
+    /**
+     * 可区分的最大值(纳秒),约18分钟
+     */
+    private static final long HIGHEST_TRACKABLE_VALUE = (1L << 40) - 1;
+
+    /**
+     * 桶数量
+     */
+    private static final int BUCKET_COUNT = bucketIndex(HIGHEST_TRACKABLE_VALUE) + 1;
+
+    /**
+     * 各桶计数
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * 记录到的最大值
+     */
+    private final AtomicLong maxValue = new AtomicLong(0);
+
+    /**
+     * 记录一个延迟值
+     *
+     * @param nanos 延迟(纳秒)
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.getAndIncrement(bucketIndex(Math.min(nanos, HIGHEST_TRACKABLE_VALUE)));
+        long max = maxValue.get();
+        while (nanos > max && !maxValue.compareAndSet(max, nanos)) {
+            max = maxValue.get();
+        }
+    }
+
+    /**
+     * 汇总当前分布
+     *
+     * @param reset 汇总后是否清零,用于按采样周期统计
+     * @return 延迟汇总
+     */
+    public LatencySummary summarize(boolean reset) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+            total += snapshot[i];
+        }
+        long max = reset ? maxValue.getAndSet(0) : maxValue.get();
+
+        LatencySummary summary = new LatencySummary();
+        summary.setCount(total);
+        summary.setMax(max);
+        if (total == 0) {
+            return summary;
+        }
+        summary.setP50(Math.min(max, valueAtPercentile(snapshot, total, 50.0)));
+        summary.setP99(Math.min(max, valueAtPercentile(snapshot, total, 99.0)));
+        summary.setP999(Math.min(max, valueAtPercentile(snapshot, total, 99.9)));
+        return summary;
+    }
+
+    /**
+     * 清零
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        maxValue.set(0);
+    }
+
+    /**
+     * 计算百分位值,返回所在桶的上界
+     */
+    private static long valueAtPercentile(long[] snapshot, long total, double percentile) {
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return highestValueInBucket(i);
+            }
+        }
+        return HIGHEST_TRACKABLE_VALUE;
+    }
+
+    /**
+     * 计算值所在的桶
+     */
+    private static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> exponent);
+        return (exponent << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /**
+     * 计算桶内的最大值
+     */
+    private static long highestValueInBucket(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) exponent << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << exponent) - 1;
+    }
+}
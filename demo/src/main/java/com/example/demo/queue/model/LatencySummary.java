@@ -0,0 +1,35 @@
+package com.example.demo.queue.model;
+
+import lombok.Data;
+
+/**
+ * 延迟汇总
+ * 单位均为纳秒
+ */
+@Data
+public class LatencySummary {
+    /**
+     * 样本数量
+     */
+    private long count;
+
+    /**
+     * 50分位
+     */
+    private long p50;
+
+    /**
+     * 99分位
+     */
+    private long p99;
+
+    /**
+     * 99.9分位
+     */
+    private long p999;
+
+    /**
+     * 最大值
+     */
+    private long max;
+}
@@ -2,6 +2,7 @@ package com.example.demo.queue.model;
 
 import lombok.Data;
 
+import java.util.List;
 
 /**
  * 队列状态快照类
@@ -28,6 +29,46 @@ public class QueueSnapshot {
      */
     private long handledCount;
 
+    /**
+     * 采样周期内的排队时间分布,未开启延迟统计时为null
+     */
+    private LatencySummary waitTime;
+
+    /**
+     * 采样周期内的处理时间分布,未开启延迟统计时为null
+     */
+    private LatencySummary serviceTime;
+
+    /**
+     * 采样周期内消息数最多的任务序号,未开启热点统计时为null
+     */
+    private List<HotKey> hotKeys;
+
+    /**
+     * 采样时各线程队列积压的最大值
+     */
+    private int maxLaneDepth;
+
+    /**
+     * 采样时各线程队列积压的平均值
+     */
+    private double meanLaneDepth;
+
+    /**
+     * 积压倾斜度: 最大积压/平均积压,没有积压时为0
+     */
+    private double laneDepthSkew;
+
+    /**
+     * 采样周期内各线程队列工作线程处理消息的时间占比(0-1),下标为线程队列序号,不按线程队列统计时为null
+     */
+    private double[] laneBusyRatios;
+
+    /**
+     * 采样周期内工作线程处理消息的时间占比(0-1),为各工作线程的平均值,无法计算时为-1
+     */
+    private double workerUtilization = -1;
+
     /**
      * 构造函数
      * @param startTime 开始时间
@@ -3,10 +3,13 @@ package com.example.demo.queue.model;
 
 import com.example.demo.queue.absqueue.Queue_I;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * 队列统计信息
@@ -14,11 +17,29 @@ import java.util.concurrent.atomic.AtomicLong;
  * 记录队列的运行状态,包括:
  * - 队列基本信息(名称、线程数、队列长度)
  * - 消息处理统计(接收总量、处理总量) 
- * - 快照信息(定期采样的处理量)
+ * - 快照信息(定期采样的处理量、延迟分布、热点任务序号和线程队列倾斜)
+ * - 多分辨率的吞吐量历史
  * - 队列当前状态
  */
+@Slf4j
 @Data
 public class QueueStatistics {
+    /**
+     * 热点统计最多跟踪的任务序号数
+     */
+    private static final int HOT_KEY_CAPACITY = 64;
+
+    /**
+     * 每次快照记录的热点任务序号数
+     */
+    private static final int HOT_KEY_TOP_N = 10;
+
+    /**
+     * 吞吐量窗口中接收量和处理量的列号
+     */
+    public static final int RECEIVED_COLUMN = 0;
+    public static final int HANDLED_COLUMN = 1;
+
     /**
      * 队列实例
      */
@@ -41,13 +62,55 @@ public class QueueStatistics {
 
     /**
      * 接收消息总量
+     * 使用分段计数,生产线程各自累加到不同单元,读取时才汇总
      */
-    private AtomicLong receivedMessageCount = new AtomicLong(0);
+    private LongAdder receivedMessageCount = new LongAdder();
 
     /**
      * 已处理消息总量
+     * 使用分段计数,工作线程各自累加到不同单元,读取时才汇总
+     */
+    private LongAdder processedMessageCount = new LongAdder();
+
+    /**
+     * 排队时间直方图,开启延迟统计后才创建
      */
-    private AtomicLong processedMessageCount = new AtomicLong(0);
+    private LatencyHistogram waitTimeHistogram;
+
+    /**
+     * 处理时间直方图,开启延迟统计后才创建
+     */
+    private LatencyHistogram serviceTimeHistogram;
+
+    /**
+     * 热点任务序号统计,开启热点统计后才创建
+     */
+    private HotKeySketch hotKeySketch;
+
+    /**
+     * 是否由队列按线程队列统计处理时间(QueueStatus.busyNanos),否则使用markBusy和markIdle累计的处理时间
+     */
+    private boolean laneBusyTracking;
+
+    /**
+     * 所有工作线程累计的处理时间: 从getq取到消息到下一次调用getq
+     */
+    private final LongAdder busyNanos = new LongAdder();
+
+    /**
+     * 当前工作线程上一次从getq取到消息的时间,0表示空闲
+     */
+    private final ThreadLocal<long[]> busySince = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * 上次快照时的累计处理时间
+     */
+    private long previousBusyTotal;
+
+    /**
+     * 上次快照时各线程队列的累计处理时间
+     */
+    private long[] previousBusyNanos;
 
     /**
      * 上次快照时间
@@ -65,65 +128,263 @@ public class QueueStatistics {
     private long previousProcessedCount;
 
     /**
-     * 快照队列,保存最近30次采样数据
+     * 按采样间隔保存的快照数,小于等于0时使用统计管理器的默认值,在start之前设置
+     */
+    private int historySize;
+
+    /**
+     * 快照队列实际保留的快照数,快照队列的容量向上取整为2的幂,读取时只返回最近snapshotLimit个
+     */
+    private volatile int snapshotLimit = 30;
+
+    /**
+     * 快照队列,保存最近historySize次采样数据,只由采样线程写入,读取不清空
+     * 注册时整体替换,读取线程通过volatile看到新的队列
      */
-    private CircularQueue<QueueSnapshot> snapshotQueue = new CircularQueue<>(30);
+    private volatile SingleWriterCircularQueue<QueueSnapshot> snapshotQueue = new SingleWriterCircularQueue<>(30);
+
+    /**
+     * 各采样周期的接收量和处理量,按采样间隔和更粗的分辨率保存
+     */
+    private volatile ThroughputHistory throughput = new ThroughputHistory(5, 30);
 
     /**
      * 队列当前状态
      */
     private List<QueueStatus> queueStatus;
 
+    /**
+     * 快照监听器,每次生成快照后在采样线程中调用
+     */
+    private final List<Consumer<QueueSnapshot>> snapshotListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 按采样间隔和历史记录数重建快照队列和吞吐量历史,在注册时调用
+     *
+     * @param intervalSeconds 采样间隔(秒)
+     * @param historySize 按采样间隔保存的快照数
+     */
+    public synchronized void configureHistory(int intervalSeconds, int historySize) {
+        this.snapshotLimit = historySize > 0 ? historySize : 1;
+        this.snapshotQueue = new SingleWriterCircularQueue<>(historySize);
+        this.throughput = new ThroughputHistory(intervalSeconds, historySize);
+    }
+
     /**
      * 生成一次快照,记录两次快照间隔期间的处理量
+     * 快照队列和吞吐量历史只允许一个线程写入,手动调用和定时采样之间需要互斥
      */
-    public void makeSnap() {
+    public synchronized void makeSnap() {
         long startTime = this.previousSnapshotTime;
         long endTime = System.currentTimeMillis();
         this.previousSnapshotTime = endTime;
-        long currentReceivedCount = receivedMessageCount.get();
-        long currentProcessedCount = processedMessageCount.get();
+        long currentReceivedCount = receivedMessageCount.sum();
+        long currentProcessedCount = processedMessageCount.sum();
         long receivedDelta = currentReceivedCount - previousReceivedCount;
         long processedDelta = currentProcessedCount - previousProcessedCount;
         this.previousReceivedCount = currentReceivedCount;
         this.previousProcessedCount = currentProcessedCount;
-        snapshotQueue.addElementToQueue(new QueueSnapshot(startTime, endTime, receivedDelta, processedDelta));
+        QueueSnapshot snapshot = new QueueSnapshot(startTime, endTime, receivedDelta, processedDelta);
+        this.throughput.add(startTime, endTime, receivedDelta, processedDelta);
+        if (this.waitTimeHistogram != null) {
+            snapshot.setWaitTime(this.waitTimeHistogram.summarize(true));
+            snapshot.setServiceTime(this.serviceTimeHistogram.summarize(true));
+        }
+        if (this.hotKeySketch != null) {
+            snapshot.setHotKeys(this.hotKeySketch.snapshot(HOT_KEY_TOP_N));
+        }
+        long periodNanos = (endTime - startTime) * 1_000_000L;
+        if (this.queueInstance != null) {
+            snapLanes(snapshot, periodNanos);
+        }
+        snapUtilization(snapshot, periodNanos);
+        snapshotQueue.add(snapshot);
+        for (Consumer<QueueSnapshot> listener : this.snapshotListeners) {
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException e) {
+                log.error("队列[{}]快照监听器执行异常", this.queueName, e);
+            }
+        }
+    }
+
+    /**
+     * 记录线程队列积压倾斜和工作线程忙碌比例
+     */
+    private void snapLanes(QueueSnapshot snapshot, long periodNanos) {
+        List<QueueStatus> lanes = this.queueInstance.getQueueStatus();
+        if (lanes == null || lanes.isEmpty()) {
+            return;
+        }
+        long totalDepth = 0;
+        int maxDepth = 0;
+        for (QueueStatus lane : lanes) {
+            totalDepth += lane.getPendingCount();
+            maxDepth = Math.max(maxDepth, lane.getPendingCount());
+        }
+        double meanDepth = (double) totalDepth / lanes.size();
+        snapshot.setMaxLaneDepth(maxDepth);
+        snapshot.setMeanLaneDepth(meanDepth);
+        snapshot.setLaneDepthSkew(totalDepth == 0 ? 0 : maxDepth / meanDepth);
+
+        if (!this.laneBusyTracking) {
+            return;
+        }
+        // 线程队列数可能在两次快照之间变化,新增的线程队列从0开始计算
+        long[] previous = this.previousBusyNanos;
+        long[] current = new long[lanes.size()];
+        double[] ratios = new double[lanes.size()];
+        for (int i = 0; i < current.length; i++) {
+            current[i] = lanes.get(i).getBusyNanos();
+            long delta = current[i] - (previous != null && i < previous.length ? previous[i] : 0);
+            ratios[i] = periodNanos <= 0 ? 0 : Math.min(1.0, Math.max(0, delta) / (double) periodNanos);
+        }
+        this.previousBusyNanos = current;
+        snapshot.setLaneBusyRatios(ratios);
+    }
+
+    /**
+     * 记录工作线程忙碌比例: 按线程队列统计时取各线程队列的平均值,否则按累计处理时间和线程数计算
+     */
+    private void snapUtilization(QueueSnapshot snapshot, long periodNanos) {
+        double[] ratios = snapshot.getLaneBusyRatios();
+        if (ratios != null && ratios.length > 0) {
+            double total = 0;
+            for (double ratio : ratios) {
+                total += ratio;
+            }
+            snapshot.setWorkerUtilization(total / ratios.length);
+            return;
+        }
+        long current = this.busyNanos.sum();
+        long delta = current - this.previousBusyTotal;
+        this.previousBusyTotal = current;
+        if (!this.laneBusyTracking && periodNanos > 0 && this.threadCount > 0) {
+            snapshot.setWorkerUtilization(Math.min(1.0, Math.max(0, delta) / ((double) periodNanos * this.threadCount)));
+        }
+    }
+
+    /**
+     * 工作线程从getq取到消息,开始计算处理时间
+     */
+    public void markBusy() {
+        this.busySince.get()[0] = System.nanoTime();
+    }
+
+    /**
+     * 工作线程回到getq,累计上一次取到消息后的处理时间
+     */
+    public void markIdle() {
+        long[] since = this.busySince.get();
+        if (since[0] != 0) {
+            this.busyNanos.add(System.nanoTime() - since[0]);
+            since[0] = 0;
+        }
+    }
+
+    /**
+     * 添加快照监听器,如弹性线程数根据采样结果扩缩容
+     */
+    public void addSnapshotListener(Consumer<QueueSnapshot> listener) {
+        this.snapshotListeners.add(listener);
+    }
+
+    /**
+     * 开启延迟统计,创建排队时间和处理时间直方图
+     */
+    public void enableLatencyTracking() {
+        if (this.waitTimeHistogram == null) {
+            this.waitTimeHistogram = new LatencyHistogram();
+            this.serviceTimeHistogram = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 开启热点统计,创建热点任务序号统计
+     *
+     * @param sampleRate 采样率,每sampleRate条消息采样一条
+     */
+    public void enableHotKeyTracking(int sampleRate) {
+        if (this.hotKeySketch == null) {
+            this.hotKeySketch = new HotKeySketch(HOT_KEY_CAPACITY, sampleRate);
+        }
+    }
+
+    /**
+     * 记录一条消息的任务序号,未开启热点统计时不做任何事
+     */
+    public void recordKey(int key) {
+        recordKey(key, 1);
+    }
+
+    /**
+     * 记录同一任务序号的一批消息,未开启热点统计时不做任何事
+     */
+    public void recordKey(int key, int count) {
+        if (this.hotKeySketch != null) {
+            this.hotKeySketch.record(key, count);
+        }
+    }
+
+    /**
+     * 是否开启了延迟统计
+     */
+    public boolean isLatencyTracking() {
+        return this.waitTimeHistogram != null;
     }
 
     /**
      * 增加接收消息数
      */
     public void addReceived(int count) {
-        this.receivedMessageCount.addAndGet(count);
+        this.receivedMessageCount.add(count);
     }
 
     /**
      * 增加已处理消息数
      */
     public void addHandled(int count) {
-        this.processedMessageCount.addAndGet(count);
+        this.processedMessageCount.add(count);
     }
 
     /**
-     * 获取所有快照数据
+     * 最近historySize次采样内的每秒接收量
+     */
+    public double getReceivedRate() {
+        return this.throughput.finest().ratePerSecond(RECEIVED_COLUMN);
+    }
+
+    /**
+     * 最近historySize次采样内的每秒处理量
+     */
+    public double getHandledRate() {
+        return this.throughput.finest().ratePerSecond(HANDLED_COLUMN);
+    }
+
+    /**
+     * 获取最近的快照数据,按时间从旧到新排列
+     * 不清空快照队列,多个调用方读到的是相同的数据
      */
     public List<QueueSnapshot> getSnaps() {
-        List<QueueSnapshot> snapshots = new ArrayList<>();
-        while (!snapshotQueue.isEmpty()) {
-            try {
-                snapshots.add(snapshotQueue.removeElementFromQueue());
-            } catch (Exception e) {
-                break;
-            }
-        }
-        return snapshots;
+        List<QueueSnapshot> snaps = snapshotQueue.snapshot();
+        int excess = snaps.size() - this.snapshotLimit;
+        return excess > 0 ? new ArrayList<>(snaps.subList(excess, snaps.size())) : snaps;
+    }
+
+    /**
+     * 获取最新的快照,还没有快照时返回null
+     */
+    public QueueSnapshot getLatestSnap() {
+        return snapshotQueue.latest();
     }
 
     /**
      * 注册到统计管理器
      */
     public void register() {
-        QueueStatisticsMgr.getInstance().register(this);
+        QueueStatisticsMgr mgr = QueueStatisticsMgr.getInstance();
+        configureHistory(mgr.getStatisticsInterval(), this.historySize > 0 ? this.historySize : mgr.getHistorySize());
+        mgr.register(this);
     }
 
     /**
@@ -1,8 +1,15 @@
 package com.example.demo.queue.model;
 
+import com.example.demo.queue.jfr.QueueEvents;
+import com.example.demo.queue.mgr.QueueMonitor;
 import com.example.demo.queue.timer.TimeScheduler;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -14,9 +21,16 @@ import java.util.concurrent.TimeUnit;
  * - 单例访问
  * - 注册/获取队列统计
  * - 定时触发采样
+ * - 为每个队列注册JMX管理接口
  */
+@Slf4j
 @Getter
 public class QueueStatisticsMgr {
+    /**
+     * JMX域名
+     */
+    public static final String JMX_DOMAIN = "com.example.demo.queue";
+
     /**
      * 单例实例
      */
@@ -27,6 +41,26 @@ public class QueueStatisticsMgr {
      */
     private ConcurrentHashMap<String, QueueStatistics> statistics = new ConcurrentHashMap<>();
 
+    /**
+     * 采样间隔(秒)
+     */
+    private volatile int statisticsInterval = 5;
+
+    /**
+     * 未单独设置历史记录数的队列按采样间隔保存的快照数
+     */
+    private volatile int historySize = 30;
+
+    /**
+     * 采样间隔是否已按配置设置过
+     */
+    private boolean intervalConfigured;
+
+    /**
+     * 采样定时任务标识
+     */
+    private String snapTaskId;
+
     /**
      * 私有构造函数,防止外部实例化
      */
@@ -49,12 +83,61 @@ public class QueueStatisticsMgr {
         return instance_;
     }
 
+    /**
+     * 设置采样间隔,由队列按配置启动时调用
+     * 采样定时任务由所有队列共用,只有第一次调用生效,之后传入不同的间隔时记录警告并忽略,
+     * 避免后启动的队列改变已运行队列的采样间隔。历史记录数按队列设置,见QueueStatistics.setHistorySize
+     *
+     * @param statisticsInterval 采样间隔(秒),小于等于0时忽略
+     */
+    public synchronized void configureInterval(int statisticsInterval) {
+        if (statisticsInterval <= 0) {
+            return;
+        }
+        if (this.intervalConfigured) {
+            if (statisticsInterval != this.statisticsInterval) {
+                log.warn("采样间隔已设置为[{}]秒, 忽略新的采样间隔[{}]秒", this.statisticsInterval, statisticsInterval);
+            }
+            return;
+        }
+        this.intervalConfigured = true;
+        if (statisticsInterval != this.statisticsInterval) {
+            this.statisticsInterval = statisticsInterval;
+            TimeScheduler.getInstance().cancelScheduledTask(this.snapTaskId);
+            commitSchedulerTask();
+        }
+    }
+
     /**
      * 注册队列统计信息
      * @param stat 队列统计信息对象
      */
     public void register(QueueStatistics stat) {
         this.statistics.put(stat.getQueueName(), stat);
+        registerMBean(stat);
+    }
+
+    /**
+     * 注册队列的JMX管理接口,同名队列重新启动时替换原来的注册
+     */
+    private void registerMBean(QueueStatistics stat) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = objectName(stat.getQueueName());
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new QueueMonitor(stat), name);
+        } catch (JMException e) {
+            log.error("队列[{}]注册JMX管理接口失败", stat.getQueueName(), e);
+        }
+    }
+
+    /**
+     * 队列JMX管理接口的ObjectName
+     */
+    public static ObjectName objectName(String queueName) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=Queue,name=" + ObjectName.quote(queueName));
     }
 
     /**
@@ -70,11 +153,12 @@ public class QueueStatisticsMgr {
     }
 
     /**
-     * 触发所有队列生成快照
+     * 触发所有队列生成快照,JFR开启Sample事件时为每个队列记录一次采样
      */
     public void triggerSnap() {
         for (QueueStatistics stat : this.statistics.values()) {
             stat.makeSnap();
+            QueueEvents.sample(stat);
         }
     }
 
@@ -92,15 +176,15 @@ public class QueueStatisticsMgr {
 
     /**
      * 提交定时任务,定期触发快照生成
-     * 初始延迟10秒,之后每5秒执行一次
+     * 初始延迟10秒,之后按采样间隔执行
      */
     private void commitSchedulerTask() {
-        TimeScheduler.getInstance().registerScheduledTask(new Runnable() {
+        this.snapTaskId = TimeScheduler.getInstance().registerScheduledTask(new Runnable() {
             @Override
             public void run() {
                 triggerSnap();
             }
-        }, 10, 5, TimeUnit.SECONDS);
+        }, 10, this.statisticsInterval, TimeUnit.SECONDS);
     }
 
 }
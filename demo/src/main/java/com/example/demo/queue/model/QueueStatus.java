@@ -31,4 +31,24 @@ public class QueueStatus {
      * 队列最大容量
      */
     private int capacity;
+
+    /**
+     * 线程队列或优先级通道启动以来的排队时间分布,仅SequenceQueue和PriorityLaneQueue开启延迟统计时设置
+     */
+    private LatencySummary waitTime;
+
+    /**
+     * 线程队列或优先级通道启动以来的处理时间分布,仅SequenceQueue和PriorityLaneQueue开启延迟统计时设置
+     */
+    private LatencySummary serviceTime;
+
+    /**
+     * 工作线程从其他线程窃取的邮箱数,仅KeyedSequenceQueue设置
+     */
+    private long stolenCount;
+
+    /**
+     * 工作线程启动以来处理消息的累计时间(纳秒),仅SequenceQueue按线程队列设置
+     */
+    private long busyNanos;
 }
@@ -0,0 +1,159 @@
+package com.example.demo.queue.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 单写多读的无锁循环队列
+ * 适用场景:
+ * - 只有一个线程写入、多个线程读取的固定容量缓冲区,如传感器数据、统计历史
+ * - 新数据覆盖最旧的数据,读取不删除数据,多个读者互不影响
+ *
+ * 实现:
+ * - 容量向上取整为2的幂,用掩码代替取模
+ * - 每个槽位带一个序号戳,写入前把戳置为WRITING,写完再置为元素序号
+ * - 读者读取前后各检查一次戳,不一致说明槽位已被覆盖,读取不阻塞写者
+ *
+ * 写入方法只能由同一个线程调用,多个线程写入时使用CircularQueue。
+ */
+public class SingleWriterCircularQueue<T> implements Iterable<T> {
+
+    /**
+     * 槽位正在写入的序号戳
+     */
+    private static final long WRITING = -1L;
+
+    /**
+     * 槽位数组
+     */
+    private final AtomicReferenceArray<T> elements;
+
+    /**
+     * 槽位上元素的序号戳,未写入的槽位为WRITING
+     */
+    private final AtomicLongArray stamps;
+
+    /**
+     * 容量掩码
+     */
+    private final int mask;
+
+    /**
+     * 已写入的元素总数,也是下一个元素的序号
+     */
+    private volatile long writeSequence;
+
+    /**
+     * 创建能够容纳capacity个元素的循环队列,容量向上取整为2的幂
+     *
+     * @param capacity 队列的容量,小于等于0时取1
+     */
+    public SingleWriterCircularQueue(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.elements = new AtomicReferenceArray<>(size);
+        this.stamps = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.stamps.set(i, WRITING);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 在队尾加入一个元素,队列已满时覆盖最旧的元素,只能由写线程调用
+     *
+     * @param element 要加入的元素,不能为null
+     */
+    public void add(T element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long sequence = this.writeSequence;
+        int index = (int) (sequence & mask);
+        stamps.set(index, WRITING);
+        elements.set(index, element);
+        stamps.set(index, sequence);
+        this.writeSequence = sequence + 1;
+    }
+
+    /**
+     * 取得最新的元素
+     *
+     * @return 最新的元素,队列为空或最新的元素正被覆盖时返回null
+     */
+    public T latest() {
+        long sequence = this.writeSequence - 1;
+        return sequence < 0 ? null : read(sequence);
+    }
+
+    /**
+     * 按从旧到新的顺序复制当前元素
+     * 读取期间被覆盖的元素及其之前的元素都会丢弃,返回的总是连续的一段
+     */
+    public List<T> snapshot() {
+        long end = this.writeSequence;
+        long start = Math.max(0, end - capacity());
+        List<T> snapshot = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            T element = read(sequence);
+            if (element == null) {
+                snapshot.clear();
+            } else {
+                snapshot.add(element);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 读取指定序号的元素
+     *
+     * @return 元素,已被覆盖时返回null
+     */
+    private T read(long sequence) {
+        int index = (int) (sequence & mask);
+        if (stamps.get(index) != sequence) {
+            return null;
+        }
+        T element = elements.get(index);
+        return stamps.get(index) == sequence ? element : null;
+    }
+
+    /**
+     * 取得队列中元素的个数
+     */
+    public int size() {
+        return (int) Math.min(this.writeSequence, capacity());
+    }
+
+    public boolean isEmpty() {
+        return this.writeSequence == 0;
+    }
+
+    /**
+     * 取得队列容量
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 取得已写入的元素总数
+     */
+    public long getWriteSequence() {
+        return this.writeSequence;
+    }
+
+    /**
+     * 返回一个遍历当前快照的Iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return snapshot().iterator();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.demo.queue.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 多分辨率的吞吐量历史
+ *
+ * 第一级按采样间隔保存historySize个采样,之后各级把前一级的采样合并为更粗的时间桶:
+ * - 10秒 × 360,覆盖最近1小时
+ * - 1分钟 × 1440,覆盖最近1天
+ * 分辨率不大于采样间隔的级别不创建。每一级都是固定大小的TimeSeriesRing,
+ * 内存占用与运行时间无关,读取时直接查询各级的窗口合计和速率,不复制也不清空数据。
+ *
+ * add只能由采样线程调用。
+ */
+public class ThroughputHistory {
+
+    /**
+     * 合并级别的分辨率(秒)和保留的时间桶数
+     */
+    private static final int[] ROLLUP_SECONDS = {10, 60};
+    private static final int[] ROLLUP_SIZES = {360, 1440};
+
+    /**
+     * 各级的分辨率(秒),第0级为采样间隔
+     */
+    private final int[] resolutions;
+
+    /**
+     * 各级的时间序列,列为接收量和处理量
+     */
+    private final TimeSeriesRing[] rings;
+
+    /**
+     * 合并级别当前未满的时间桶,下标与rings相同,第0级不使用
+     */
+    private final long[] bucketStarts;
+    private final long[] bucketReceived;
+    private final long[] bucketHandled;
+
+    /**
+     * @param intervalSeconds 采样间隔(秒)
+     * @param historySize 按采样间隔保存的采样数
+     */
+    public ThroughputHistory(int intervalSeconds, int historySize) {
+        intervalSeconds = intervalSeconds > 0 ? intervalSeconds : 1;
+        List<Integer> levels = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        levels.add(intervalSeconds);
+        sizes.add(historySize);
+        for (int i = 0; i < ROLLUP_SECONDS.length; i++) {
+            if (ROLLUP_SECONDS[i] > intervalSeconds) {
+                levels.add(ROLLUP_SECONDS[i]);
+                sizes.add(ROLLUP_SIZES[i]);
+            }
+        }
+        this.resolutions = new int[levels.size()];
+        this.rings = new TimeSeriesRing[levels.size()];
+        for (int i = 0; i < this.rings.length; i++) {
+            this.resolutions[i] = levels.get(i);
+            this.rings[i] = new TimeSeriesRing(sizes.get(i), 2);
+        }
+        this.bucketStarts = new long[this.rings.length];
+        this.bucketReceived = new long[this.rings.length];
+        this.bucketHandled = new long[this.rings.length];
+        Arrays.fill(this.bucketStarts, -1L);
+    }
+
+    /**
+     * 写入一个采样,合并级别的时间桶满一个分辨率后写入对应的时间序列
+     */
+    public void add(long startTime, long endTime, long received, long handled) {
+        this.rings[0].add(startTime, endTime, received, handled);
+        for (int level = 1; level < this.rings.length; level++) {
+            if (this.bucketStarts[level] < 0) {
+                this.bucketStarts[level] = startTime;
+            }
+            this.bucketReceived[level] += received;
+            this.bucketHandled[level] += handled;
+            if (endTime - this.bucketStarts[level] >= this.resolutions[level] * 1000L) {
+                this.rings[level].add(this.bucketStarts[level], endTime,
+                        this.bucketReceived[level], this.bucketHandled[level]);
+                this.bucketStarts[level] = -1L;
+                this.bucketReceived[level] = 0;
+                this.bucketHandled[level] = 0;
+            }
+        }
+    }
+
+    /**
+     * 级别数
+     */
+    public int levels() {
+        return this.rings.length;
+    }
+
+    /**
+     * 指定级别的分辨率(秒)
+     */
+    public int resolutionSeconds(int level) {
+        return this.resolutions[level];
+    }
+
+    /**
+     * 指定级别的时间序列,列号见QueueStatistics.RECEIVED_COLUMN和HANDLED_COLUMN
+     */
+    public TimeSeriesRing level(int level) {
+        return this.rings[level];
+    }
+
+    /**
+     * 采样间隔级别的时间序列
+     */
+    public TimeSeriesRing finest() {
+        return this.rings[0];
+    }
+
+    /**
+     * 覆盖时间最长的级别的时间序列
+     */
+    public TimeSeriesRing coarsest() {
+        return this.rings[this.rings.length - 1];
+    }
+}
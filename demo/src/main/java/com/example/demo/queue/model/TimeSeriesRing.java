@@ -0,0 +1,253 @@
+package com.example.demo.queue.model;
+
+/**
+ * 基本类型的时间序列环形缓冲区
+ * 适用场景:
+ * - 定期采样的计数数据,如队列每个采样周期的接收量和处理量、传感器读数
+ * - 需要频繁查询最近N个采样的合计、最小值、最大值和速率
+ *
+ * 实现:
+ * - 每个采样由开始时间、结束时间和若干列数值组成,各列分别存放在long数组中,不为采样创建对象
+ * - 写入时增量维护窗口内各列的合计,并用单调队列维护最小值和最大值,查询都是O(1)且不分配对象
+ * - 窗口写满后新采样覆盖最旧的采样,同时从合计和单调队列中去掉被覆盖的采样
+ *
+ * 读写都在对象锁内进行,适合采样间隔为秒级的数据。
+ */
+public class TimeSeriesRing {
+
+    /**
+     * 窗口大小
+     */
+    private final int capacity;
+
+    /**
+     * 采样开始时间和结束时间(毫秒)
+     */
+    private final long[] startTimes;
+    private final long[] endTimes;
+
+    /**
+     * 各列数值,第一维为列
+     */
+    private final long[][] values;
+
+    /**
+     * 窗口内各列的合计
+     */
+    private final long[] sums;
+
+    /**
+     * 各列的单调递增队列和单调递减队列,保存采样序号,队首分别是窗口内的最小值和最大值
+     */
+    private final long[][] minQueues;
+    private final long[][] maxQueues;
+    private final long[] minHeads;
+    private final long[] minTails;
+    private final long[] maxHeads;
+    private final long[] maxTails;
+
+    /**
+     * 已写入的采样总数,也是下一个采样的序号
+     */
+    private long writeSequence;
+
+    /**
+     * 下一个采样写入的槽位
+     */
+    private int writeIndex;
+
+    /**
+     * @param capacity 窗口大小,即保留的采样数,小于等于0时取1
+     * @param columns 每个采样的数值列数
+     */
+    public TimeSeriesRing(int capacity, int columns) {
+        this.capacity = capacity > 0 ? capacity : 1;
+        this.startTimes = new long[this.capacity];
+        this.endTimes = new long[this.capacity];
+        this.values = new long[columns][this.capacity];
+        this.sums = new long[columns];
+        this.minQueues = new long[columns][this.capacity];
+        this.maxQueues = new long[columns][this.capacity];
+        this.minHeads = new long[columns];
+        this.minTails = new long[columns];
+        this.maxHeads = new long[columns];
+        this.maxTails = new long[columns];
+    }
+
+    /**
+     * 写入一个单列采样
+     */
+    public synchronized void add(long startTime, long endTime, long value) {
+        int slot = beginWrite(startTime, endTime);
+        write(0, slot, value);
+        endWrite();
+    }
+
+    /**
+     * 写入一个两列采样
+     */
+    public synchronized void add(long startTime, long endTime, long first, long second) {
+        int slot = beginWrite(startTime, endTime);
+        write(0, slot, first);
+        write(1, slot, second);
+        endWrite();
+    }
+
+    /**
+     * 写入一个采样,数值按列复制,调用方可以复用数组
+     */
+    public synchronized void add(long startTime, long endTime, long[] sample) {
+        int slot = beginWrite(startTime, endTime);
+        for (int column = 0; column < sample.length; column++) {
+            write(column, slot, sample[column]);
+        }
+        endWrite();
+    }
+
+    /**
+     * 窗口写满时先从合计和单调队列中去掉将被覆盖的采样
+     *
+     * @return 写入的槽位
+     */
+    private int beginWrite(long startTime, long endTime) {
+        int slot = this.writeIndex;
+        if (this.writeSequence >= this.capacity) {
+            long evicted = this.writeSequence - this.capacity;
+            for (int column = 0; column < this.values.length; column++) {
+                this.sums[column] -= this.values[column][slot];
+                if (this.minQueues[column][slotOf(this.minHeads[column])] == evicted) {
+                    this.minHeads[column]++;
+                }
+                if (this.maxQueues[column][slotOf(this.maxHeads[column])] == evicted) {
+                    this.maxHeads[column]++;
+                }
+            }
+        }
+        this.startTimes[slot] = startTime;
+        this.endTimes[slot] = endTime;
+        return slot;
+    }
+
+    private void write(int column, int slot, long value) {
+        long sequence = this.writeSequence;
+        this.values[column][slot] = value;
+        this.sums[column] += value;
+
+        long[] minQueue = this.minQueues[column];
+        long tail = this.minTails[column];
+        while (tail > this.minHeads[column] && valueOf(column, minQueue[slotOf(tail - 1)]) >= value) {
+            tail--;
+        }
+        minQueue[slotOf(tail)] = sequence;
+        this.minTails[column] = tail + 1;
+
+        long[] maxQueue = this.maxQueues[column];
+        tail = this.maxTails[column];
+        while (tail > this.maxHeads[column] && valueOf(column, maxQueue[slotOf(tail - 1)]) <= value) {
+            tail--;
+        }
+        maxQueue[slotOf(tail)] = sequence;
+        this.maxTails[column] = tail + 1;
+    }
+
+    private void endWrite() {
+        this.writeSequence++;
+        this.writeIndex = this.writeIndex + 1 == this.capacity ? 0 : this.writeIndex + 1;
+    }
+
+    private int slotOf(long sequence) {
+        return (int) (sequence % this.capacity);
+    }
+
+    private long valueOf(int column, long sequence) {
+        return this.values[column][slotOf(sequence)];
+    }
+
+    /**
+     * 窗口内的采样数
+     */
+    public synchronized int size() {
+        return (int) Math.min(this.writeSequence, this.capacity);
+    }
+
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * 窗口内指定列的合计
+     */
+    public synchronized long sum(int column) {
+        return this.sums[column];
+    }
+
+    /**
+     * 窗口内指定列的最小值,窗口为空时返回0
+     */
+    public synchronized long min(int column) {
+        return this.writeSequence == 0 ? 0 : valueOf(column, this.minQueues[column][slotOf(this.minHeads[column])]);
+    }
+
+    /**
+     * 窗口内指定列的最大值,窗口为空时返回0
+     */
+    public synchronized long max(int column) {
+        return this.writeSequence == 0 ? 0 : valueOf(column, this.maxQueues[column][slotOf(this.maxHeads[column])]);
+    }
+
+    /**
+     * 窗口内指定列每个采样的平均值,窗口为空时返回0
+     */
+    public synchronized double mean(int column) {
+        int size = size();
+        return size == 0 ? 0 : (double) this.sums[column] / size;
+    }
+
+    /**
+     * 窗口内指定列的每秒速率: 合计/(最新采样结束时间-最旧采样开始时间),窗口为空时返回0
+     */
+    public synchronized double ratePerSecond(int column) {
+        long span = spanMillis();
+        return span <= 0 ? 0 : this.sums[column] * 1000.0 / span;
+    }
+
+    /**
+     * 窗口内第index个采样的开始时间,0为最旧的采样
+     */
+    public synchronized long startTime(int index) {
+        return this.startTimes[slotAt(index)];
+    }
+
+    /**
+     * 窗口内第index个采样的结束时间,0为最旧的采样
+     */
+    public synchronized long endTime(int index) {
+        return this.endTimes[slotAt(index)];
+    }
+
+    /**
+     * 窗口内第index个采样指定列的数值,0为最旧的采样
+     */
+    public synchronized long value(int index, int column) {
+        return this.values[column][slotAt(index)];
+    }
+
+    private int slotAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+        }
+        return slotOf(this.writeSequence - size() + index);
+    }
+
+    /**
+     * 窗口覆盖的时间(毫秒)
+     */
+    public synchronized long spanMillis() {
+        if (this.writeSequence == 0) {
+            return 0;
+        }
+        int newest = this.writeIndex == 0 ? this.capacity - 1 : this.writeIndex - 1;
+        int oldest = this.writeSequence < this.capacity ? 0 : this.writeIndex;
+        return this.endTimes[newest] - this.startTimes[oldest];
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.queue.store;
+
+import lombok.Getter;
+
+/**
+ * 预写日志中的一条未确认消息
+ */
+@Getter
+public class JournalRecord<M> {
+    /**
+     * 记录ID,单调递增
+     */
+    private final long id;
+
+    /**
+     * 路由键,如SequenceQueue的任务序号
+     */
+    private final int key;
+
+    /**
+     * 消息
+     */
+    private final M message;
+
+    public JournalRecord(long id, int key, M message) {
+        this.id = id;
+        this.key = key;
+        this.message = message;
+    }
+}
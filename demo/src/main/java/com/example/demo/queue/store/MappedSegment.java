@@ -0,0 +1,204 @@
+package com.example.demo.queue.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 内存映射的追加写文件段
+ *
+ * 记录格式: [4字节长度][数据]
+ * 文件创建时按固定大小预分配并整体映射,写满后由调用方滚动到新段。
+ * 非线程安全,由调用方加锁。
+ */
+@Slf4j
+public class MappedSegment implements Closeable {
+
+    /**
+     * 记录头长度
+     */
+    public static final int HEADER_SIZE = 4;
+
+    // 文件路径
+    private final Path path;
+    // 映射缓冲区
+    private final MappedByteBuffer buffer;
+    // 段容量(字节)
+    private final int capacity;
+    // 写位置
+    private int writePosition;
+    // 读位置
+    private int readPosition;
+
+    private MappedSegment(Path path, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * 创建并映射新文件段
+     *
+     * @param path 文件路径
+     * @param capacity 段容量(字节)
+     */
+    public static MappedSegment create(Path path, int capacity) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            file.setLength(capacity);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return new MappedSegment(path, buffer, capacity);
+        }
+    }
+
+    /**
+     * 映射已有文件段,写位置定位到最后一条完整记录之后
+     * 文件创建时已预分配并填零,长度为0或越界的记录视为结尾
+     *
+     * @param path 文件路径
+     */
+    public static MappedSegment open(Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE, file.length());
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            MappedSegment segment = new MappedSegment(path, buffer, capacity);
+            int position = 0;
+            while (position + HEADER_SIZE <= capacity) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + HEADER_SIZE + length > capacity) {
+                    break;
+                }
+                position += HEADER_SIZE + length;
+            }
+            segment.writePosition = position;
+            return segment;
+        }
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param data 记录数据
+     * @return 段剩余空间不足时返回false
+     */
+    public boolean append(byte[] data) {
+        int required = HEADER_SIZE + data.length;
+        if (writePosition + required > capacity) {
+            return false;
+        }
+        buffer.putInt(writePosition, data.length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(writePosition + HEADER_SIZE);
+        target.put(data);
+        writePosition += required;
+        return true;
+    }
+
+    /**
+     * 读取读位置上的记录,不移动读位置
+     *
+     * @return 只包含记录数据的缓冲区,没有未读记录时返回null
+     */
+    public ByteBuffer peek() {
+        if (readPosition >= writePosition) {
+            return null;
+        }
+        int length = buffer.getInt(readPosition);
+        ByteBuffer record = buffer.duplicate();
+        record.position(readPosition + HEADER_SIZE);
+        record.limit(readPosition + HEADER_SIZE + length);
+        return record.slice();
+    }
+
+    /**
+     * 读位置移动到下一条记录
+     */
+    public void advance() {
+        if (readPosition < writePosition) {
+            readPosition += HEADER_SIZE + buffer.getInt(readPosition);
+        }
+    }
+
+    /**
+     * 是否还有未读记录
+     */
+    public boolean hasUnread() {
+        return readPosition < writePosition;
+    }
+
+    /**
+     * 刷盘
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getWritePosition() {
+        return writePosition;
+    }
+
+    /**
+     * 解除映射
+     */
+    @Override
+    public void close() {
+        unmap(buffer);
+    }
+
+    /**
+     * 解除映射并删除文件
+     */
+    public void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除文件段失败[{}]", path, e);
+        }
+    }
+
+    /**
+     * 尽早释放映射内存,否则要等到缓冲区被GC回收
+     * JDK 9及以上通过Unsafe.invokeCleaner,JDK 8通过DirectBuffer.cleaner
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // 无法主动释放时交给GC
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // 无法主动释放时交给GC
+        }
+    }
+}
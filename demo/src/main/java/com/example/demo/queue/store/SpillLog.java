@@ -0,0 +1,144 @@
+package com.example.demo.queue.store;
+
+import com.example.demo.queue.codec.MessageCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * 磁盘溢出日志
+ *
+ * 由多个内存映射文件段组成的先进先出日志:
+ * - 追加写入最后一个段,写满后滚动新段
+ * - 从第一个段顺序读取,读完的段立即删除
+ * - 只作为内存队列的溢出层,不保证重启后可恢复,打开时清理残留文件
+ *
+ * 非线程安全,由调用方加锁。
+ */
+public class SpillLog<M> implements Closeable {
+
+    /**
+     * 段文件后缀
+     */
+    private static final String SEGMENT_SUFFIX = ".spill";
+
+    // 段文件目录
+    private final Path directory;
+    // 单个段大小(字节)
+    private final int segmentBytes;
+    // 磁盘占用上限(字节)
+    private final long maxBytes;
+    // 编解码器
+    private final MessageCodec<M> codec;
+    // 文件段,按写入顺序排列
+    private final ArrayDeque<MappedSegment> segments = new ArrayDeque<>();
+    // 下一个段的序号
+    private long segmentSequence;
+    // 未读记录数
+    private long size;
+    // 当前磁盘占用(字节)
+    private long usedBytes;
+
+    public SpillLog(Path directory, int segmentBytes, long maxBytes, MessageCodec<M> codec) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.codec = codec;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stale) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @return 超过磁盘占用上限时返回false
+     */
+    public boolean append(M message) throws IOException {
+        byte[] data = codec.encode(message);
+        MappedSegment tail = segments.peekLast();
+        if (tail == null || !tail.append(data)) {
+            int capacity = Math.max(segmentBytes, MappedSegment.HEADER_SIZE + data.length);
+            if (usedBytes + capacity > maxBytes) {
+                return false;
+            }
+            Path path = directory.resolve(String.format("%020d%s", segmentSequence++, SEGMENT_SUFFIX));
+            tail = MappedSegment.create(path, capacity);
+            segments.addLast(tail);
+            usedBytes += capacity;
+            tail.append(data);
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * 读取最早的一条消息,不移除
+     *
+     * @return 没有消息时返回null
+     */
+    public M peek() {
+        MappedSegment head = segments.peekFirst();
+        if (head == null) {
+            return null;
+        }
+        ByteBuffer record = head.peek();
+        return record == null ? null : codec.decode(record);
+    }
+
+    /**
+     * 移除最早的一条消息,所在段读完后删除
+     */
+    public void advance() {
+        MappedSegment head = segments.peekFirst();
+        if (head == null || !head.hasUnread()) {
+            return;
+        }
+        head.advance();
+        size--;
+        if (!head.hasUnread()) {
+            segments.pollFirst();
+            usedBytes -= head.getCapacity();
+            head.delete();
+        }
+    }
+
+    /**
+     * 未读消息数
+     */
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 当前磁盘占用(字节)
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * 删除全部段文件
+     */
+    @Override
+    public void close() {
+        MappedSegment segment;
+        while ((segment = segments.pollFirst()) != null) {
+            segment.delete();
+        }
+        size = 0;
+        usedBytes = 0;
+    }
+}
@@ -0,0 +1,504 @@
+package com.example.demo.queue.store;
+
+import com.example.demo.queue.codec.MessageCodec;
+import com.example.demo.queue.exception.QueueException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 消息预写日志
+ *
+ * 入队前先追加到内存映射的日志段,工作线程处理完后写入确认,
+ * 重启时未确认的消息按写入顺序重放。
+ * - 数据段记录格式: [8字节ID][4字节路由键][4字节CRC32][消息数据],文件名为段内第一条记录的ID
+ * - 确认段与数据段同名,记录格式: [8字节ID]
+ * - 刷盘由后台线程批量完成(组提交),同步模式下生产者等待覆盖自己记录的那次刷盘
+ * - 段内记录全部确认后由刷盘线程删除,保证不会强刷已解除映射的段
+ */
+@Slf4j
+public class WriteAheadJournal<M> implements Closeable {
+
+    /**
+     * 数据段后缀
+     */
+    private static final String DATA_SUFFIX = ".wal";
+
+    /**
+     * 确认段后缀
+     */
+    private static final String ACK_SUFFIX = ".ack";
+
+    /**
+     * 数据记录头长度: ID + 路由键 + CRC32
+     */
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    /**
+     * 确认记录长度
+     */
+    private static final int ACK_SIZE = 8;
+
+    // 段文件目录
+    private final Path directory;
+    // 单个段大小(字节)
+    private final int segmentBytes;
+    // 刷盘间隔(纳秒)
+    private final long flushIntervalNanos;
+    // 是否等待刷盘后才返回
+    private final boolean syncWrites;
+    // 编解码器
+    private final MessageCodec<M> codec;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // 唤醒刷盘线程
+    private final Condition flushRequested = lock.newCondition();
+    // 刷盘完成
+    private final Condition flushed = lock.newCondition();
+    // 段,按第一条记录ID排序
+    private final TreeMap<Long, JournalSegment> segments = new TreeMap<>();
+    // 自上次刷盘以来有写入的文件段
+    private final Set<MappedSegment> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    // 当前线程已取出尚未确认的记录ID
+    private final ThreadLocal<TakenIds> taken = ThreadLocal.withInitial(TakenIds::new);
+
+    // 当前写入段
+    private JournalSegment active;
+    // 下一条记录ID
+    private long nextId = 1;
+    // 已写入的最大ID
+    private long appendedId;
+    // 已刷盘的最大ID
+    private long flushedId;
+    // 是否有生产者在等待刷盘
+    private boolean flushPending;
+    private volatile boolean running = true;
+    private Thread flusher;
+
+    public WriteAheadJournal(Path directory, int segmentBytes, long flushIntervalMillis, boolean syncWrites,
+                             MessageCodec<M> codec) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.syncWrites = syncWrites;
+        this.codec = codec;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * 扫描已有日志段,返回未确认的消息并启动刷盘线程
+     * 必须在第一次append之前调用且只调用一次
+     *
+     * @return 未确认的消息,按ID升序
+     */
+    public List<JournalRecord<M>> recover() throws IOException {
+        List<Path> dataFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + DATA_SUFFIX)) {
+            for (Path path : stream) {
+                dataFiles.add(path);
+            }
+        }
+        Collections.sort(dataFiles);
+
+        List<JournalRecord<M>> pending = new ArrayList<>();
+        for (Path dataFile : dataFiles) {
+            Path ackFile = ackPath(dataFile);
+            MappedSegment data = MappedSegment.open(dataFile);
+            MappedSegment acks = Files.exists(ackFile)
+                    ? MappedSegment.open(ackFile) : MappedSegment.create(ackFile, ackCapacity(data.getCapacity()));
+
+            Set<Long> acked = new HashSet<>();
+            for (ByteBuffer record = acks.peek(); record != null; acks.advance(), record = acks.peek()) {
+                acked.add(record.getLong(0));
+            }
+
+            JournalSegment segment = new JournalSegment(data, acks, firstIdOf(dataFile));
+            segment.sealed = true;
+            for (ByteBuffer record = data.peek(); record != null; data.advance(), record = data.peek()) {
+                long id = record.getLong(0);
+                int key = record.getInt(8);
+                int crc = record.getInt(12);
+                record.position(RECORD_HEADER_SIZE);
+                ByteBuffer payload = record.slice();
+                if (crc != checksum(payload)) {
+                    // 崩溃时未写完的尾部记录
+                    log.warn("日志记录校验失败,丢弃段[{}]内ID{}之后的记录", dataFile, id);
+                    break;
+                }
+                segment.lastId = id;
+                nextId = Math.max(nextId, id + 1);
+                if (!acked.contains(id)) {
+                    pending.add(new JournalRecord<>(id, key, codec.decode(payload)));
+                    segment.track(id);
+                }
+            }
+            if (segment.outstanding == 0) {
+                segment.delete();
+            } else {
+                segments.put(segment.firstId, segment);
+            }
+        }
+        appendedId = nextId - 1;
+        flushedId = appendedId;
+
+        flusher = new Thread(this::flushLoop, "tqf-journal-" + directory.getFileName());
+        flusher.setDaemon(true);
+        flusher.start();
+        return pending;
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @param key 路由键
+     * @param message 消息
+     * @return 记录ID,日志已关闭、记录超过段大小或消息编码失败时返回-1
+     */
+    public long append(int key, M message) {
+        byte[] payload;
+        try {
+            payload = codec.encode(message);
+        } catch (RuntimeException e) {
+            log.error("消息编码失败, 不写入预写日志", e);
+            return -1;
+        }
+        byte[] record = new byte[RECORD_HEADER_SIZE + payload.length];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(8, key);
+        buffer.putInt(12, checksum(ByteBuffer.wrap(payload)));
+        System.arraycopy(payload, 0, record, RECORD_HEADER_SIZE, payload.length);
+
+        long id;
+        lock.lock();
+        try {
+            if (!running) {
+                return -1;
+            }
+            id = nextId++;
+            buffer.putLong(0, id);
+            if (active == null || !active.data.append(record)) {
+                roll(id, record.length);
+                if (!active.data.append(record)) {
+                    return -1;
+                }
+            }
+            active.lastId = id;
+            active.track(id);
+            appendedId = id;
+            dirty.add(active.data);
+        } catch (IOException e) {
+            throw new QueueException("写入预写日志失败", e);
+        } finally {
+            lock.unlock();
+        }
+        if (syncWrites) {
+            awaitFlushed(id);
+        }
+        return id;
+    }
+
+    /**
+     * 确认一条记录已处理
+     *
+     * @param id 记录ID
+     */
+    public void ack(long id) {
+        lock.lock();
+        try {
+            ackLocked(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 标记当前线程取出了一条记录,在下一次ackTaken时确认
+     *
+     * @param id 记录ID
+     */
+    public void markTaken(long id) {
+        taken.get().add(id);
+    }
+
+    /**
+     * 确认当前线程已取出的全部记录
+     */
+    public void ackTaken() {
+        TakenIds ids = taken.get();
+        if (ids.size == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (int i = 0; i < ids.size; i++) {
+                ackLocked(ids.values[i]);
+            }
+        } finally {
+            lock.unlock();
+        }
+        ids.size = 0;
+    }
+
+    /**
+     * 未确认的记录数
+     */
+    public long getOutstanding() {
+        lock.lock();
+        try {
+            long outstanding = 0;
+            for (JournalSegment segment : segments.values()) {
+                outstanding += segment.outstanding;
+            }
+            return outstanding;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停止刷盘线程,最后刷一次盘并解除映射,保留日志文件
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            flushRequested.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            for (JournalSegment segment : segments.values()) {
+                segment.data.force();
+                segment.acks.force();
+                segment.data.close();
+                segment.acks.close();
+            }
+            segments.clear();
+            dirty.clear();
+            active = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ackLocked(long id) {
+        Map.Entry<Long, JournalSegment> entry = segments.floorEntry(id);
+        if (entry == null) {
+            return;
+        }
+        JournalSegment segment = entry.getValue();
+        // 重复确认、段已删除或未写入的ID不计数,否则会减少其他段的未确认数并把它提前删除
+        if (!segment.isOutstanding(id)) {
+            log.warn("忽略无效的确认, ID{}不是未确认的记录", id);
+            return;
+        }
+        byte[] ack = new byte[ACK_SIZE];
+        ByteBuffer.wrap(ack).putLong(0, id);
+        if (!segment.acks.append(ack)) {
+            // 确认未落盘,保留记录,重启后重放
+            log.error("写入确认记录失败, ID{}", id);
+            return;
+        }
+        dirty.add(segment.acks);
+        segment.untrack(id);
+    }
+
+    /**
+     * 封存当前段并创建新段,调用方持有锁
+     */
+    private void roll(long firstId, int recordLength) throws IOException {
+        if (active != null) {
+            active.sealed = true;
+        }
+        int capacity = Math.max(segmentBytes, MappedSegment.HEADER_SIZE + recordLength);
+        Path dataFile = directory.resolve(String.format("%020d%s", firstId, DATA_SUFFIX));
+        MappedSegment data = MappedSegment.create(dataFile, capacity);
+        MappedSegment acks = MappedSegment.create(ackPath(dataFile), ackCapacity(capacity));
+        active = new JournalSegment(data, acks, firstId);
+        segments.put(firstId, active);
+    }
+
+    private void awaitFlushed(long id) {
+        lock.lock();
+        try {
+            while (flushedId < id && running) {
+                flushPending = true;
+                flushRequested.signal();
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 刷盘线程: 到达刷盘间隔或有生产者等待时,一次强刷所有脏段,然后删除已全部确认的段
+     */
+    private void flushLoop() {
+        List<MappedSegment> batch = new ArrayList<>();
+        List<JournalSegment> retired = new ArrayList<>();
+        while (true) {
+            long target;
+            boolean stop;
+            lock.lock();
+            try {
+                if (running && !flushPending) {
+                    flushRequested.awaitNanos(flushIntervalNanos);
+                }
+                flushPending = false;
+                stop = !running;
+                target = appendedId;
+                batch.addAll(dirty);
+                dirty.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            for (MappedSegment segment : batch) {
+                try {
+                    segment.force();
+                } catch (RuntimeException e) {
+                    log.error("预写日志刷盘失败[{}]", segment.getPath(), e);
+                }
+            }
+            batch.clear();
+
+            lock.lock();
+            try {
+                flushedId = Math.max(flushedId, target);
+                flushed.signalAll();
+                Iterator<JournalSegment> it = segments.values().iterator();
+                while (it.hasNext()) {
+                    JournalSegment segment = it.next();
+                    assert segment.outstanding >= 0 : "日志段未确认数为负: " + segment.firstId;
+                    if (segment.sealed && segment.outstanding == 0 && !dirty.contains(segment.data)) {
+                        dirty.remove(segment.acks);
+                        it.remove();
+                        retired.add(segment);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            for (JournalSegment segment : retired) {
+                segment.delete();
+            }
+            retired.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    private static Path ackPath(Path dataFile) {
+        String name = dataFile.getFileName().toString();
+        return dataFile.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + ACK_SUFFIX);
+    }
+
+    private static long firstIdOf(Path dataFile) {
+        String name = dataFile.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - DATA_SUFFIX.length()));
+    }
+
+    /**
+     * 确认段容量: 每条数据记录至少占用 文件段头 + 记录头 字节,按此估算记录数上限
+     */
+    private static int ackCapacity(int dataCapacity) {
+        long records = dataCapacity / (MappedSegment.HEADER_SIZE + RECORD_HEADER_SIZE) + 1;
+        return (int) Math.min(Integer.MAX_VALUE, records * (MappedSegment.HEADER_SIZE + ACK_SIZE));
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 一对数据段和确认段
+     */
+    private static final class JournalSegment {
+        private final MappedSegment data;
+        private final MappedSegment acks;
+        private final long firstId;
+        private long lastId;
+        // 未确认记录数
+        private long outstanding;
+        // 未确认记录,下标为 ID - firstId
+        private final BitSet pending = new BitSet();
+        // 是否已停止写入
+        private boolean sealed;
+
+        private JournalSegment(MappedSegment data, MappedSegment acks, long firstId) {
+            this.data = data;
+            this.acks = acks;
+            this.firstId = firstId;
+        }
+
+        private void track(long id) {
+            pending.set((int) (id - firstId));
+            outstanding++;
+        }
+
+        private void untrack(long id) {
+            pending.clear((int) (id - firstId));
+            outstanding--;
+        }
+
+        private boolean isOutstanding(long id) {
+            return id >= firstId && id <= lastId && pending.get((int) (id - firstId));
+        }
+
+        private void delete() {
+            data.delete();
+            acks.delete();
+        }
+    }
+
+    /**
+     * 线程私有的记录ID列表
+     */
+    private static final class TakenIds {
+        private long[] values = new long[16];
+        private int size;
+
+        private void add(long id) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.demo.queue.timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分层哈希时间轮
+ *
+ * 特点:
+ * - LEVELS层,每层SLOTS个槽,第L层每个槽覆盖SLOTS^L个刻度,低层转完一圈时把高层对应槽的任务重新分配到低层
+ * - 定时任务存放在按下标复用的平行数组中,槽内是双向链表,注册和取消都是O(1),不为每个任务创建节点对象
+ * - 任务句柄是long: 高32位为下标的复用代数,低32位为下标,取消已执行或已复用的句柄不会误删其他任务
+ * - 到期任务在时间轮线程中执行,只应做投递消息之类的短操作
+ * - 没有任务时时间轮线程挂起,不按刻度空转
+ */
+@Slf4j
+public class HashedTimingWheel {
+
+    /**
+     * 每层槽数的位数
+     */
+    private static final int SLOT_BITS = 6;
+
+    /**
+     * 每层槽数
+     */
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /**
+     * 层数,1毫秒刻度时最大可直接定位约12天,更远的任务在最高层轮转时重新定位
+     */
+    private static final int LEVELS = 5;
+
+    /**
+     * 链表和空闲链表的结束标记
+     */
+    private static final int NIL = -1;
+
+    /**
+     * 无效句柄
+     */
+    public static final long INVALID_HANDLE = -1L;
+
+    // 刻度长度(纳秒)
+    private final long tickNanos;
+    // 时间轮起始时间
+    private final long startNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // 没有任务时等待新任务
+    private final Condition scheduled = lock.newCondition();
+
+    // 每个槽的链表头,下标为 层 * SLOTS + 槽
+    private final int[] heads = new int[LEVELS * SLOTS];
+    // 任务数据,按下标复用
+    private long[] deadlines;
+    private Runnable[] tasks;
+    private int[] next;
+    private int[] prev;
+    // 任务所在的槽,空闲时为NIL
+    private int[] slots;
+    // 下标的复用代数
+    private int[] generations;
+    // 空闲下标链表头
+    private int freeHead = NIL;
+    // 已使用过的最大下标+1
+    private int used;
+    // 未到期任务数
+    private int size;
+    // 已处理到的刻度
+    private long currentTick;
+
+    private volatile boolean running = true;
+    private final Thread worker;
+
+    /**
+     * @param tick 刻度长度
+     * @param unit 时间单位
+     * @param threadName 时间轮线程名称
+     */
+    public HashedTimingWheel(long tick, TimeUnit unit, String threadName) {
+        this.tickNanos = Math.max(1, unit.toNanos(tick));
+        this.startNanos = System.nanoTime();
+        Arrays.fill(this.heads, NIL);
+        allocate(1024);
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 注册一次性定时任务
+     *
+     * @param task 任务
+     * @param delay 延迟
+     * @param unit 时间单位
+     * @return 任务句柄,时间轮已停止时返回INVALID_HANDLE
+     */
+    public long schedule(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        // 限制最大延迟,避免计算到期刻度时溢出
+        long delayNanos = Math.min(unit.toNanos(Math.max(0, delay)), Long.MAX_VALUE >> 2);
+        lock.lock();
+        try {
+            if (!this.running) {
+                return INVALID_HANDLE;
+            }
+            // 按实际时间向上取整计算到期刻度,不会提前执行,时间轮线程落后时也不会推迟
+            long elapsedNanos = System.nanoTime() - this.startNanos;
+            if (this.size == 0) {
+                // 时间轮为空时直接跳到当前刻度,避免时间轮线程被唤醒后在锁内逐个刻度追赶整个空闲期
+                this.currentTick = Math.max(this.currentTick, elapsedNanos / this.tickNanos);
+            }
+            long deadlineTick = Math.max(this.currentTick + 1, (elapsedNanos + delayNanos + this.tickNanos - 1) / this.tickNanos);
+            int index = acquire();
+            this.deadlines[index] = deadlineTick;
+            this.tasks[index] = task;
+            insert(index);
+            if (this.size++ == 0) {
+                this.scheduled.signal();
+            }
+            return ((long) this.generations[index] << 32) | index;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取消定时任务
+     *
+     * @param handle 任务句柄
+     * @return 任务尚未执行并已取消时返回true
+     */
+    public boolean cancel(long handle) {
+        if (handle < 0) {
+            return false;
+        }
+        int index = (int) handle;
+        int generation = (int) (handle >>> 32);
+        lock.lock();
+        try {
+            if (index >= this.used || this.generations[index] != generation || this.slots[index] == NIL) {
+                return false;
+            }
+            unlink(index);
+            release(index);
+            this.size--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 未到期的任务数
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return this.size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停止时间轮线程,未到期的任务不再执行
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            this.running = false;
+            this.scheduled.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(this.worker);
+    }
+
+    /**
+     * 时间轮线程: 推进到当前刻度,执行到期任务
+     */
+    private void run() {
+        List<Runnable> expired = new ArrayList<>();
+        while (this.running) {
+            long targetTick = (System.nanoTime() - this.startNanos) / this.tickNanos;
+            lock.lock();
+            try {
+                if (this.size == 0) {
+                    // 没有任务时直接跳到当前刻度并挂起
+                    this.currentTick = Math.max(this.currentTick, targetTick);
+                    this.scheduled.await();
+                    continue;
+                }
+                while (this.currentTick < targetTick) {
+                    advance(++this.currentTick, expired);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            for (Runnable task : expired) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("定时任务执行异常", e);
+                }
+            }
+            expired.clear();
+
+            long nextTickNanos = this.startNanos + (this.currentTick + 1) * this.tickNanos;
+            long sleepNanos = nextTickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+        }
+    }
+
+    /**
+     * 处理一个刻度: 先把高层转到的槽重新分配到低层,再取出第0层当前槽的到期任务
+     */
+    private void advance(long tick, List<Runnable> expired) {
+        for (int level = LEVELS - 1; level > 0; level--) {
+            long span = 1L << (SLOT_BITS * level);
+            if ((tick & (span - 1)) == 0) {
+                int slot = level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                int index = detach(slot);
+                while (index != NIL) {
+                    int following = this.next[index];
+                    if (this.deadlines[index] <= tick) {
+                        expire(index, expired);
+                    } else {
+                        insert(index);
+                    }
+                    index = following;
+                }
+            }
+        }
+        int index = detach((int) (tick & SLOT_MASK));
+        while (index != NIL) {
+            int following = this.next[index];
+            expire(index, expired);
+            index = following;
+        }
+    }
+
+    private void expire(int index, List<Runnable> expired) {
+        expired.add(this.tasks[index]);
+        release(index);
+        this.size--;
+    }
+
+    /**
+     * 按到期刻度与当前刻度的距离选择层和槽
+     */
+    private void insert(int index) {
+        long deadline = this.deadlines[index];
+        long ticks = deadline - this.currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && ticks >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = level * SLOTS + (int) ((deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+        int head = this.heads[slot];
+        this.next[index] = head;
+        this.prev[index] = NIL;
+        if (head != NIL) {
+            this.prev[head] = index;
+        }
+        this.heads[slot] = index;
+        this.slots[index] = slot;
+    }
+
+    private void unlink(int index) {
+        int slot = this.slots[index];
+        int before = this.prev[index];
+        int after = this.next[index];
+        if (before == NIL) {
+            this.heads[slot] = after;
+        } else {
+            this.next[before] = after;
+        }
+        if (after != NIL) {
+            this.prev[after] = before;
+        }
+        this.slots[index] = NIL;
+    }
+
+    /**
+     * 取下整个槽的链表
+     */
+    private int detach(int slot) {
+        int head = this.heads[slot];
+        this.heads[slot] = NIL;
+        for (int index = head; index != NIL; index = this.next[index]) {
+            this.slots[index] = NIL;
+        }
+        return head;
+    }
+
+    private int acquire() {
+        if (this.freeHead != NIL) {
+            int index = this.freeHead;
+            this.freeHead = this.next[index];
+            return index;
+        }
+        if (this.used == this.deadlines.length) {
+            allocate(this.used << 1);
+        }
+        return this.used++;
+    }
+
+    private void release(int index) {
+        this.tasks[index] = null;
+        this.slots[index] = NIL;
+        // 代数保持非负,句柄始终为正数
+        this.generations[index] = (this.generations[index] + 1) & Integer.MAX_VALUE;
+        this.next[index] = this.freeHead;
+        this.freeHead = index;
+    }
+
+    private void allocate(int capacity) {
+        int previous = this.deadlines == null ? 0 : this.deadlines.length;
+        this.deadlines = this.deadlines == null ? new long[capacity] : Arrays.copyOf(this.deadlines, capacity);
+        this.tasks = this.tasks == null ? new Runnable[capacity] : Arrays.copyOf(this.tasks, capacity);
+        this.next = this.next == null ? new int[capacity] : Arrays.copyOf(this.next, capacity);
+        this.prev = this.prev == null ? new int[capacity] : Arrays.copyOf(this.prev, capacity);
+        this.slots = this.slots == null ? new int[capacity] : Arrays.copyOf(this.slots, capacity);
+        this.generations = this.generations == null ? new int[capacity] : Arrays.copyOf(this.generations, capacity);
+        Arrays.fill(this.slots, previous, capacity, NIL);
+    }
+}
@@ -11,8 +11,8 @@ import java.util.concurrent.*;
  * 功能:
  * - 单例模式实现(使用静态内部类实现)
  * - 支持定时任务的注册和取消
- * - 基于ScheduledExecutorService实现
- * - 使用UUID标识每个任务
+ * - 周期任务基于ScheduledExecutorService实现,使用UUID标识每个任务
+ * - 一次性任务基于分层哈希时间轮,注册和取消都是O(1),使用long句柄标识
  * - 支持优雅关闭
  */
 @Slf4j
@@ -22,12 +22,16 @@ public class TimeScheduler {
     private final ScheduledExecutorService scheduler;
     private final ConcurrentHashMap<String, ScheduledFuture<?>> taskHandleMap;
     
+    // 一次性任务时间轮,1毫秒刻度
+    private final HashedTimingWheel timingWheel;
+    
     // 关闭超时时间(秒)
     private static final int SHUTDOWN_TIMEOUT = 60;
 
     private TimeScheduler(int threadPoolSize) {
         this.scheduler = Executors.newScheduledThreadPool(threadPoolSize);
         this.taskHandleMap = new ConcurrentHashMap<>();
+        this.timingWheel = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, "tqf-timing-wheel");
         log.info("初始化调度器, 线程池大小[{}]", threadPoolSize);
     }
 
@@ -73,6 +77,36 @@ public class TimeScheduler {
         }
     }
 
+    /**
+     * 注册一次性定时任务
+     * 任务在时间轮线程中执行,只应做投递消息之类的短操作,耗时操作应投递到队列中处理
+     *
+     * @param command 任务
+     * @param delay 延迟
+     * @param unit 时间单位
+     * @return 任务句柄,调度器已关闭时返回HashedTimingWheel.INVALID_HANDLE
+     */
+    public long schedule(Runnable command, long delay, TimeUnit unit) {
+        return timingWheel.schedule(command, delay, unit);
+    }
+
+    /**
+     * 取消一次性定时任务
+     *
+     * @param handle 任务句柄
+     * @return 任务尚未执行并已取消时返回true
+     */
+    public boolean cancel(long handle) {
+        return timingWheel.cancel(handle);
+    }
+
+    /**
+     * 未到期的一次性任务数
+     */
+    public int getPendingTimerCount() {
+        return timingWheel.size();
+    }
+
     /**
      * 优雅关闭调度器
      * 等待所有任务完成或超时
@@ -85,6 +119,7 @@ public class TimeScheduler {
             cancelScheduledTask(taskId);
         }
         taskHandleMap.clear();
+        timingWheel.stop();
         
         // 关闭线程池
         scheduler.shutdown();
@@ -0,0 +1,76 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.WatermarkListener;
+import com.example.demo.queue.exception.QueueFullException;
+import com.example.demo.queue.exception.QueueTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackpressureTest {
+
+    @Test
+    void fullQueueRejectsOrTimesOutAndNotifiesWatermarks() throws Exception {
+        QueueFixtures.GatedQueue<Integer> queue = new QueueFixtures.GatedQueue<>();
+        AtomicInteger high = new AtomicInteger();
+        CountDownLatch low = new CountDownLatch(1);
+        queue.addWatermarkListener(new WatermarkListener() {
+            @Override
+            public void onHighWatermark(String queueName, int queueIndex, int size, int capacity) {
+                high.incrementAndGet();
+            }
+
+            @Override
+            public void onLowWatermark(String queueName, int queueIndex, int size, int capacity) {
+                low.countDown();
+            }
+        });
+        queue.start("backpressure-test", 1, 10);
+
+        for (int i = 0; i < 7; i++) {
+            queue.putq(i);
+        }
+        assertTrue(queue.isCanPut());
+        assertEquals(0, high.get());
+        for (int i = 7; i < 10; i++) {
+            queue.putq(i);
+        }
+        assertFalse(queue.isCanPut());
+        // 高水位只通知一次
+        assertEquals(1, high.get());
+
+        assertThrows(QueueFullException.class, () -> queue.putq(10, 0));
+        assertThrows(QueueTimeoutException.class, () -> queue.putq(10, 20));
+
+        queue.gate.open();
+        assertEquals(0, queue.putq(10, 5000));
+        assertTrue(low.await(5, TimeUnit.SECONDS));
+        assertEquals(1, high.get());
+    }
+
+    @Test
+    void delayedMessagesAreDeliveredOrReportedWhenRejected() throws Exception {
+        QueueFixtures.GatedQueue<Integer> queue = new QueueFixtures.GatedQueue<>();
+        queue.start("delayed-put-test", 1, 2);
+        List<Integer> rejected = new CopyOnWriteArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            queue.putqDelayed(i, 20, TimeUnit.MILLISECONDS, rejected::add);
+        }
+        assertEquals(0, queue.getQueueSize());
+
+        // 容量为2,第3条到期时队列已满,通过回调报告
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((queue.getQueueSize() < 2 || rejected.isEmpty()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, queue.getQueueSize());
+        assertEquals(1, rejected.size());
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.Queue;
+import com.example.demo.queue.absqueue.SequenceQueue;
+import com.example.demo.queue.config.QueueStorageType;
+import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.QueueStatisticsMgr;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchQueueApiTest {
+
+    /**
+     * 工作线程直接退出,测试线程自己调用批量getq
+     */
+    static class ManualQueue extends Queue<Integer> {
+        @Override
+        public void svc() {
+        }
+    }
+
+    @Test
+    void putqAllAcceptsUntilTheQueueIsFull() {
+        for (QueueStorageType storageType : new QueueStorageType[]{QueueStorageType.LINKED, QueueStorageType.RING_BUFFER}) {
+            String name = "batch-putq-all-" + storageType;
+            QueueFixtures.GatedQueue<Integer> queue = new QueueFixtures.GatedQueue<>();
+            queue.setStorageType(storageType);
+            queue.start(name, 1, 4);
+            QueueStatistics statistics = QueueStatisticsMgr.getInstance().getStatistic(name);
+
+            // 只接受能放下的前4条,剩余的不入队
+            assertEquals(4, queue.putqAll(Arrays.asList(0, 1, 2, 3, 4, 5)));
+            assertEquals(4, queue.getQueueSize());
+            assertEquals(4, statistics.getReceivedMessageCount().sum());
+
+            assertEquals(0, queue.putqAll(Arrays.asList(6, 7)));
+            assertEquals(0, queue.putqAll(new ArrayList<>()));
+            assertEquals(4, statistics.getReceivedMessageCount().sum());
+            queue.gate.open();
+        }
+    }
+
+    @Test
+    void batchGetqIsBoundedByMaxBatch() {
+        ManualQueue queue = new ManualQueue();
+        queue.start("batch-getq-max-test", 1, 16);
+        QueueStatistics statistics = QueueStatisticsMgr.getInstance().getStatistic("batch-getq-max-test");
+        assertEquals(5, queue.putqAll(Arrays.asList(0, 1, 2, 3, 4)));
+
+        List<Integer> buffer = new ArrayList<>();
+        assertEquals(3, queue.getq(buffer, 3, 0));
+        assertEquals(Arrays.asList(0, 1, 2), buffer);
+        assertEquals(3, statistics.getProcessedMessageCount().sum());
+
+        buffer.clear();
+        assertEquals(2, queue.getq(buffer, 3, 0));
+        assertEquals(Arrays.asList(3, 4), buffer);
+        assertEquals(5, statistics.getProcessedMessageCount().sum());
+
+        // 不等待时空队列立即返回
+        assertTrue(queue.getq(3, 0).isEmpty());
+        assertEquals(0, queue.getQueueSize());
+    }
+
+    @Test
+    void batchGetqLingersForMoreMessages() throws Exception {
+        ManualQueue queue = new ManualQueue();
+        queue.start("batch-getq-linger-test", 1, 16);
+        queue.putq(0);
+        Thread producer = new Thread(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.putqAll(Arrays.asList(1, 2));
+        });
+        producer.start();
+
+        // 已有1条,不足maxBatch时等待后到的消息凑满一批
+        long start = System.nanoTime();
+        List<Integer> batch = queue.getq(3, 5000);
+        assertEquals(Arrays.asList(0, 1, 2), batch);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        producer.join();
+
+        // 凑不满时等到lingerMillis后返回已取到的消息
+        queue.putq(3);
+        start = System.nanoTime();
+        assertEquals(Arrays.asList(3), queue.getq(3, 100));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void sequencePutqAllKeepsOrderPerTaskSeq() throws Exception {
+        int keys = 8;
+        int batches = 50;
+        int batchSize = 4;
+        QueueFixtures.OrderChecker checker = new QueueFixtures.OrderChecker(keys * batches * batchSize);
+        SequenceQueue<int[]> queue = new SequenceQueue<int[]>() {
+            @Override
+            public void svc() {
+                List<int[]> buffer = new ArrayList<>();
+                while (true) {
+                    buffer.clear();
+                    getq(buffer, 16, 1);
+                    for (int[] message : buffer) {
+                        checker.record(message[0], message[1]);
+                    }
+                }
+            }
+        };
+        queue.start("batch-sequence-putq-all-test", 3, keys * batches * batchSize);
+        QueueStatistics statistics = QueueStatisticsMgr.getInstance().getStatistic("batch-sequence-putq-all-test");
+
+        for (int b = 0; b < batches; b++) {
+            for (int key = 0; key < keys; key++) {
+                List<int[]> messages = new ArrayList<>();
+                for (int i = 0; i < batchSize; i++) {
+                    messages.add(new int[]{key, b * batchSize + i});
+                }
+                assertEquals(batchSize, queue.putqAll(key, messages));
+            }
+        }
+        assertTrue(checker.await(10, TimeUnit.SECONDS));
+        assertEquals(0, checker.getOutOfOrder());
+        assertEquals(keys * batches * batchSize, statistics.getReceivedMessageCount().sum());
+    }
+
+    @Test
+    void sequencePutqAllAcceptsUntilTheLaneIsFull() {
+        QueueFixtures.GatedSequenceQueue<Integer> queue = new QueueFixtures.GatedSequenceQueue<>();
+        queue.start("batch-sequence-full-test", 1, 4);
+        QueueStatistics statistics = QueueStatisticsMgr.getInstance().getStatistic("batch-sequence-full-test");
+
+        assertEquals(4, queue.putqAll(7, Arrays.asList(0, 1, 2, 3, 4, 5)));
+        assertEquals(0, queue.putqAll(7, Arrays.asList(6)));
+        assertEquals(4, queue.getQueueStatus().get(0).getPendingCount());
+        assertEquals(4, statistics.getReceivedMessageCount().sum());
+        queue.gate.open();
+    }
+}
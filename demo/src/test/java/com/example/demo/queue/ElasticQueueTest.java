@@ -0,0 +1,57 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.Queue;
+import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.QueueStatisticsMgr;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticQueueTest {
+
+    static class SlowQueue extends Queue<Integer> {
+        @Override
+        public void svc() {
+            while (true) {
+                Integer message = getq();
+                if (message == null) {
+                    continue;
+                }
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Test
+    void workersScaleWithBacklog() throws Exception {
+        SlowQueue queue = new SlowQueue();
+        queue.enableElastic(1, 4, 0, 0);
+        queue.start("elastic-test", 1, 10000);
+        QueueStatistics statistics = QueueStatisticsMgr.getInstance().getStatistic("elastic-test");
+        assertEquals(1, queue.getActiveWorkerCount());
+
+        for (int i = 0; i < 2000; i++) {
+            queue.putq(i);
+        }
+        statistics.makeSnap();
+        statistics.makeSnap();
+        assertTrue(queue.getActiveWorkerCount() > 1);
+
+        while (queue.getQueueSize() > 0) {
+            Thread.sleep(10);
+        }
+        // 连续两次采样无积压后每次采样回收一个线程
+        for (int i = 0; i < 10; i++) {
+            statistics.makeSnap();
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (queue.getActiveWorkerCount() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, queue.getActiveWorkerCount());
+    }
+}
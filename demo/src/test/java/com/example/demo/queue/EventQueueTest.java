@@ -0,0 +1,83 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.EventQueue;
+import com.example.demo.queue.exception.QueueFullException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventQueueTest {
+
+    static class ValueEvent {
+        long value;
+    }
+
+    /**
+     * 累加事件值并记录见过的事件对象
+     */
+    static class SummingQueue extends EventQueue<ValueEvent> {
+        final QueueFixtures.Gate gate = new QueueFixtures.Gate();
+        final AtomicLong sum = new AtomicLong();
+        final Set<ValueEvent> seen = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        CountDownLatch done;
+
+        @Override
+        protected ValueEvent newEvent() {
+            return new ValueEvent();
+        }
+
+        @Override
+        public void svc() {
+            if (!gate.pass()) {
+                return;
+            }
+            while (true) {
+                ValueEvent event = getq();
+                if (event == null) {
+                    continue;
+                }
+                sum.addAndGet(event.value);
+                seen.add(event);
+                done.countDown();
+            }
+        }
+    }
+
+    @Test
+    void eventsAreReusedAcrossPublishes() throws Exception {
+        SummingQueue queue = new SummingQueue();
+        queue.done = new CountDownLatch(4 + 10000);
+        queue.start("event-queue-test", 2, 4);
+
+        for (int i = 1; i <= 4; i++) {
+            long sequence = queue.claim();
+            assertTrue(sequence >= 0);
+            queue.getEvent(sequence).value = i;
+            queue.publish(sequence);
+        }
+        // 槽位未释放前不能再占用
+        assertEquals(-1, queue.claim());
+        assertThrows(QueueFullException.class, () -> queue.claim(0));
+        assertFalse(queue.isCanPut());
+
+        queue.gate.open();
+        long expected = 10;
+        for (int i = 1; i <= 10000; i++) {
+            long sequence = queue.claim(5000);
+            queue.getEvent(sequence).value = i;
+            queue.publish(sequence);
+            expected += i;
+        }
+        assertTrue(queue.done.await(10, TimeUnit.SECONDS));
+        assertEquals(expected, queue.sum.get());
+        assertTrue(queue.seen.size() <= 4);
+        assertEquals(0, queue.putq((event, value) -> event.value = value, 5L));
+    }
+}
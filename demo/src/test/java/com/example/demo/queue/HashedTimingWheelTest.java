@@ -0,0 +1,78 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.timer.HashedTimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    @Test
+    void tasksFireAfterTheirDelay() throws Exception {
+        HashedTimingWheel wheel = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, "wheel-test");
+        long[] delays = {1, 5, 63, 64, 65, 200, 4096 + 7};
+        CountDownLatch fired = new CountDownLatch(delays.length);
+        AtomicInteger early = new AtomicInteger();
+        for (long delay : delays) {
+            long start = System.nanoTime();
+            wheel.schedule(() -> {
+                if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delay)) {
+                    early.incrementAndGet();
+                }
+                fired.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(fired.await(10, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+        assertEquals(0, wheel.size());
+        wheel.stop();
+    }
+
+    @Test
+    void cancelledTasksDoNotFireAndStaleHandlesAreRejected() throws Exception {
+        HashedTimingWheel wheel = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, "wheel-test");
+        AtomicLong fired = new AtomicLong();
+        long[] handles = new long[10000];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = wheel.schedule(fired::incrementAndGet, 50 + i % 100, TimeUnit.MILLISECONDS);
+        }
+        for (int i = 0; i < handles.length; i += 2) {
+            assertTrue(wheel.cancel(handles[i]));
+        }
+        assertFalse(wheel.cancel(handles[0]));
+        assertEquals(5000, wheel.size());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (wheel.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(20);
+        assertEquals(5000, fired.get());
+        // 下标已复用,旧句柄不能取消新任务
+        long reused = wheel.schedule(fired::incrementAndGet, 1, TimeUnit.HOURS);
+        assertFalse(wheel.cancel(handles[1]));
+        assertTrue(wheel.cancel(reused));
+        wheel.stop();
+    }
+
+    @Test
+    void scheduleAfterIdleDoesNotReplayIdleTicks() throws Exception {
+        // 1纳秒刻度,空闲期内累积上亿个刻度,逐个追赶时注册和执行都会被长时间阻塞
+        HashedTimingWheel wheel = new HashedTimingWheel(1, TimeUnit.NANOSECONDS, "wheel-test");
+        for (int round = 0; round < 2; round++) {
+            Thread.sleep(300);
+            CountDownLatch fired = new CountDownLatch(1);
+            long start = System.nanoTime();
+            wheel.schedule(fired::countDown, 0, TimeUnit.MILLISECONDS);
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        }
+        assertEquals(0, wheel.size());
+        wheel.stop();
+    }
+}
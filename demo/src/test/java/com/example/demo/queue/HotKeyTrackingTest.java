@@ -0,0 +1,53 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.model.HotKey;
+import com.example.demo.queue.model.QueueSnapshot;
+import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.QueueStatisticsMgr;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyTrackingTest {
+
+    @Test
+    void snapshotReportsHotKeysAndLaneSkew() throws Exception {
+        QueueFixtures.GatedSequenceQueue<Integer> queue = new QueueFixtures.GatedSequenceQueue<>();
+        queue.setHotKeyTracking(1);
+        queue.start("hot-key-test", 4, 10000);
+        QueueStatistics statistics = QueueStatisticsMgr.getInstance().getStatistic("hot-key-test");
+
+        // 序号4占一半消息,都落在第0个线程队列
+        for (int i = 0; i < 1000; i++) {
+            queue.putq(4, i);
+            queue.putq(i % 200, i);
+        }
+        statistics.makeSnap();
+        List<QueueSnapshot> snapshots = statistics.getSnaps();
+        QueueSnapshot snapshot = snapshots.get(snapshots.size() - 1);
+
+        HotKey top = snapshot.getHotKeys().get(0);
+        assertEquals(4, top.getKey());
+        assertTrue(top.getCount() >= 1000);
+        assertEquals(0.5, top.getShare(), 0.05);
+        assertEquals(1250, snapshot.getMaxLaneDepth());
+        assertEquals(500.0, snapshot.getMeanLaneDepth(), 0.001);
+        assertEquals(2.5, snapshot.getLaneDepthSkew(), 0.001);
+        assertEquals(4, snapshot.getLaneBusyRatios().length);
+
+        queue.gate.open();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.getQueueStatus().stream().anyMatch(s -> s.getPendingCount() > 0)
+                && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        statistics.makeSnap();
+        snapshots = statistics.getSnaps();
+        snapshot = snapshots.get(snapshots.size() - 1);
+        assertTrue(snapshot.getHotKeys().isEmpty());
+        assertEquals(0, snapshot.getLaneDepthSkew(), 0.001);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.KeyedSequenceQueue;
+import com.example.demo.queue.model.QueueStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedSequenceQueueTest {
+
+    private static final int KEYS = 64;
+    private static final int MESSAGES_PER_KEY = 500;
+
+    /**
+     * 消息为{序号, 编号},检查同一序号的编号顺序
+     */
+    static class OrderCheckingQueue extends KeyedSequenceQueue<int[]> {
+        final QueueFixtures.OrderChecker checker = new QueueFixtures.OrderChecker(KEYS * MESSAGES_PER_KEY);
+
+        @Override
+        public void svc() {
+            while (true) {
+                int[] message = getq();
+                if (message == null) {
+                    continue;
+                }
+                // 序号0是慢热点,其余序号应被其他线程窃取处理
+                if (message[0] == 0) {
+                    try {
+                        Thread.sleep(0, 200_000);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                checker.record(message[0], message[1]);
+            }
+        }
+    }
+
+    @Test
+    void messagesOfSameKeyAreProcessedInOrder() throws Exception {
+        OrderCheckingQueue queue = new OrderCheckingQueue();
+        queue.start("keyed-test", 4, KEYS * MESSAGES_PER_KEY);
+
+        for (int i = 0; i < MESSAGES_PER_KEY; i++) {
+            for (int key = 0; key < KEYS; key++) {
+                assertEquals(0, queue.putq(key, new int[]{key, i}));
+            }
+        }
+
+        assertTrue(queue.checker.await(30, TimeUnit.SECONDS));
+        assertEquals(0, queue.checker.getOutOfOrder());
+        assertEquals(0, queue.getQueueSize());
+
+        long processed = 0;
+        for (QueueStatus status : queue.getQueueStatus()) {
+            processed += status.getProcessedCount();
+        }
+        assertEquals(KEYS * MESSAGES_PER_KEY, processed);
+    }
+
+    @Test
+    void mailboxIsReleasedWhenSvcThrows() throws Exception {
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(10);
+        KeyedSequenceQueue<Integer> queue = new KeyedSequenceQueue<Integer>() {
+            @Override
+            public void svc() {
+                while (true) {
+                    Integer message = getq();
+                    if (message == null) {
+                        continue;
+                    }
+                    if (message == 0 && failures.getAndIncrement() == 0) {
+                        throw new IllegalStateException("处理失败");
+                    }
+                    done.countDown();
+                }
+            }
+        };
+        queue.start("keyed-failure-test", 2, 100);
+
+        // 第一条消息使工作线程退出,同一序号的后续消息由另一个工作线程处理
+        for (int i = 0; i <= 10; i++) {
+            assertEquals(0, queue.putq(7, i));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, queue.getQueueSize());
+    }
+}
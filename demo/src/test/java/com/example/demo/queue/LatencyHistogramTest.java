@@ -0,0 +1,36 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.model.LatencyHistogram;
+import com.example.demo.queue.model.LatencySummary;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+        LatencySummary summary = histogram.summarize(false);
+
+        assertEquals(100000, summary.getCount());
+        assertEquals(100_000_000L, summary.getMax());
+        assertEquals(50_000_000L, summary.getP50(), 50_000_000L * 0.04);
+        assertEquals(99_000_000L, summary.getP99(), 99_000_000L * 0.04);
+        assertEquals(99_900_000L, summary.getP999(), 99_900_000L * 0.04);
+    }
+
+    @Test
+    void summarizeWithResetStartsNewInterval() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        assertEquals(42, histogram.summarize(true).getP50());
+
+        LatencySummary empty = histogram.summarize(false);
+        assertEquals(0, empty.getCount());
+        assertEquals(0, empty.getMax());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.buffer.MpmcRingBlockingQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpmcRingBlockingQueueTest {
+
+    @Test
+    void capacityIsRoundedToPowerOfTwo() {
+        MpmcRingBlockingQueue<Integer> queue = new MpmcRingBlockingQueue<>(1000);
+        assertEquals(1024, queue.capacity());
+        assertEquals(1024, queue.remainingCapacity());
+    }
+
+    @Test
+    void offerAndPollKeepFifoOrderUntilFull() {
+        MpmcRingBlockingQueue<Integer> queue = new MpmcRingBlockingQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void drainToRespectsMaxElements() {
+        MpmcRingBlockingQueue<Integer> queue = new MpmcRingBlockingQueue<>(8);
+        for (int i = 0; i < 6; i++) {
+            queue.offer(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, queue.drainTo(drained, 4));
+        assertEquals(4, drained.size());
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void offerBatchClaimsOnlyFreeSlots() {
+        MpmcRingBlockingQueue<Integer> queue = new MpmcRingBlockingQueue<>(4);
+        assertEquals(3, queue.offerBatch(Arrays.asList(1, 2, 3)));
+        assertEquals(1, queue.offerBatch(Arrays.asList(4, 5, 6)));
+        assertEquals(0, queue.offerBatch(Arrays.asList(7)));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, queue.drainTo(drained));
+        assertEquals(Arrays.asList(1, 2, 3, 4), drained);
+    }
+
+    @Test
+    void takeWakesUpWhenElementArrives() throws Exception {
+        MpmcRingBlockingQueue<String> queue = new MpmcRingBlockingQueue<>(2);
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                queue.put("A");
+            } catch (InterruptedException ignored) {
+            }
+        });
+        producer.start();
+        assertEquals("A", queue.take());
+        producer.join();
+    }
+
+    @Test
+    void concurrentProducersAndConsumersLoseNothing() throws Exception {
+        final int producers = 4;
+        final int consumers = 4;
+        final int perProducer = 50000;
+        MpmcRingBlockingQueue<Long> queue = new MpmcRingBlockingQueue<>(256);
+        AtomicLong sum = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(producers * perProducer);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            threads.add(new Thread(() -> {
+                for (long i = 1; i <= perProducer; i++) {
+                    try {
+                        queue.put(i);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            Thread consumer = new Thread(() -> {
+                try {
+                    while (true) {
+                        sum.addAndGet(queue.take());
+                        done.countDown();
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            });
+            consumer.setDaemon(true);
+            threads.add(consumer);
+        }
+        threads.forEach(Thread::start);
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        long expected = (long) producers * perProducer * (perProducer + 1) / 2;
+        assertEquals(expected, sum.get());
+        assertTrue(queue.isEmpty());
+    }
+}
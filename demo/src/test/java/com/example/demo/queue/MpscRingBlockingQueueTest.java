@@ -0,0 +1,74 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.buffer.MpscRingBlockingQueue;
+import com.example.demo.queue.buffer.SpscRingBlockingQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscRingBlockingQueueTest {
+
+    @Test
+    void singleConsumerSeesEveryProducerInOrder() throws Exception {
+        final int producers = 4;
+        final int perProducer = 20000;
+        MpscRingBlockingQueue<long[]> queue = new MpscRingBlockingQueue<>(128);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producerId = p;
+            threads.add(new Thread(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    try {
+                        queue.put(new long[]{producerId, i});
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        long[] next = new long[producers];
+        for (int i = 0; i < producers * perProducer; i++) {
+            long[] message = queue.take();
+            int producerId = (int) message[0];
+            assertEquals(next[producerId]++, message[1]);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void spscWrapsAroundWithoutLosingElements() throws Exception {
+        SpscRingBlockingQueue<Integer> queue = new SpscRingBlockingQueue<>(8);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100000; i++) {
+                try {
+                    queue.put(i);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        producer.start();
+
+        List<Integer> batch = new ArrayList<>();
+        int expected = 0;
+        while (expected < 100000) {
+            batch.clear();
+            batch.add(queue.take());
+            queue.drainTo(batch, 7);
+            for (Integer value : batch) {
+                assertEquals(expected++, value);
+            }
+        }
+        producer.join();
+        assertNull(queue.poll());
+    }
+}
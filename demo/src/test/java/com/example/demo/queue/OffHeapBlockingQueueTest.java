@@ -0,0 +1,145 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.Queue;
+import com.example.demo.queue.buffer.OffHeapBlockingQueue;
+import com.example.demo.queue.codec.MessageCodec;
+import com.example.demo.queue.exception.QueueException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapBlockingQueueTest {
+
+    static class StringCodec implements MessageCodec<String> {
+        @Override
+        public byte[] encode(String message) {
+            return message.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void recordsWrapAroundAndCapacityIsBoundedInBytes() throws Exception {
+        OffHeapBlockingQueue<String> queue = new OffHeapBlockingQueue<>(new StringCodec(), 1000, 64);
+
+        // 长度不同的记录反复写读,记录头和消息体都会跨过缓冲区末尾
+        for (int i = 0; i < 500; i++) {
+            String message = "m" + i + "-" + "xxxxxxx".substring(0, i % 7);
+            assertTrue(queue.offer(message));
+            assertTrue(queue.offer(message + "!"));
+            assertEquals(message, queue.poll());
+            assertEquals(message + "!", queue.take());
+        }
+        assertEquals(0, queue.getUsedBytes());
+
+        // 每条记录12字节,64字节只能放5条
+        for (int i = 0; i < 5; i++) {
+            assertTrue(queue.offer("abcdefgh"));
+        }
+        assertFalse(queue.offer("abcdefgh"));
+        assertFalse(queue.offer("abcdefgh", 10, TimeUnit.MILLISECONDS));
+        assertEquals(60, queue.getUsedBytes());
+        assertEquals(5, queue.size());
+        assertThrows(IllegalArgumentException.class, () -> queue.offer(new String(new char[100])));
+    }
+
+    @Test
+    void queueDecodesMessagesInWorkerThreads() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(100);
+        Queue<String> queue = new Queue<String>() {
+            @Override
+            public void svc() {
+                while (true) {
+                    String message = getq();
+                    if (message != null) {
+                        received.add(message);
+                        done.countDown();
+                    }
+                }
+            }
+        };
+        queue.setMessageCodec(new StringCodec());
+        queue.enableOffHeap(1024 * 1024);
+        queue.start("off-heap-test", 1, 1000);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, queue.putq("message-" + i));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message-" + i, received.get(i));
+        }
+    }
+
+    /**
+     * "unencodable"编码失败,"undecodable"解码失败
+     */
+    static class FaultyCodec extends StringCodec {
+        @Override
+        public byte[] encode(String message) {
+            if ("unencodable".equals(message)) {
+                throw new QueueException("消息编码失败");
+            }
+            return super.encode(message);
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer) {
+            String message = super.decode(buffer);
+            if ("undecodable".equals(message)) {
+                throw new IllegalStateException("消息解码失败");
+            }
+            return message;
+        }
+    }
+
+    @Test
+    void codecFailuresAreRejectedOrSkipped() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        Queue<String> queue = new Queue<String>() {
+            @Override
+            public void svc() {
+                while (true) {
+                    String message = getq();
+                    if (message != null) {
+                        received.add(message);
+                        done.countDown();
+                    }
+                }
+            }
+        };
+        queue.setMessageCodec(new FaultyCodec());
+        queue.enableOffHeap(64);
+        queue.start("off-heap-codec-test", 1, 100);
+
+        // 编码失败和编码后超过缓冲区容量的消息在putq中拒绝
+        String oversized = new String(new char[100]);
+        assertEquals(-1, queue.putq("unencodable"));
+        assertEquals(-1, queue.putq(oversized));
+        assertThrows(QueueException.class, () -> queue.putq("unencodable", 100));
+        assertThrows(QueueException.class, () -> queue.putqBlocking(oversized));
+
+        // 解码失败的消息被丢弃,工作线程继续处理后面的消息
+        assertEquals(0, queue.putq("first"));
+        assertEquals(0, queue.putq("undecodable"));
+        assertEquals(0, queue.putq("second"));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("first", received.get(0));
+        assertEquals("second", received.get(1));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.IntSequenceQueue;
+import com.example.demo.queue.absqueue.LongQueue;
+import com.example.demo.queue.exception.QueueFullException;
+import com.example.demo.queue.model.QueueStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveQueueTest {
+
+    static class SummingLongQueue extends LongQueue {
+        final QueueFixtures.Gate gate = new QueueFixtures.Gate();
+        final AtomicLong sum = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(1000);
+
+        @Override
+        public void svc() {
+            if (!gate.pass()) {
+                return;
+            }
+            while (true) {
+                sum.addAndGet(getq());
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * 消息为 序号 * 10000 + 编号,检查同一序号的编号递增
+     */
+    static class OrderCheckingIntQueue extends IntSequenceQueue {
+        final QueueFixtures.OrderChecker checker = new QueueFixtures.OrderChecker(16 * 1000);
+
+        @Override
+        public void svc() {
+            while (true) {
+                int value = getq();
+                checker.record(value / 10000, value % 10000);
+            }
+        }
+    }
+
+    @Test
+    void longQueueRejectsWhenFullAndDeliversAll() throws Exception {
+        SummingLongQueue queue = new SummingLongQueue();
+        queue.start("long-queue-test", 2, 1000);
+        for (long i = 0; i < 1024; i++) {
+            assertEquals(0, queue.putq(i));
+        }
+        assertEquals(-1, queue.putq(5L));
+        assertThrows(QueueFullException.class, () -> queue.putq(5L, 0));
+        assertFalse(queue.isCanPut());
+        queue.gate.open();
+        assertTrue(queue.done.await(10, TimeUnit.SECONDS));
+        while (queue.getQueueSize() > 0) {
+            Thread.sleep(1);
+        }
+        assertEquals(1023L * 1024 / 2, queue.sum.get());
+    }
+
+    @Test
+    void intSequenceQueueKeepsOrderPerKey() throws Exception {
+        OrderCheckingIntQueue queue = new OrderCheckingIntQueue();
+        queue.start("int-sequence-queue-test", 4, 20000);
+        for (int i = 0; i < 1000; i++) {
+            for (int key = 0; key < 16; key++) {
+                assertEquals(0, queue.putq(key, key * 10000 + i));
+            }
+        }
+        assertTrue(queue.checker.await(10, TimeUnit.SECONDS));
+        assertEquals(0, queue.checker.getOutOfOrder());
+        long processed = 0;
+        for (QueueStatus status : queue.getQueueStatus()) {
+            processed += status.getProcessedCount();
+        }
+        assertEquals(4, queue.getQueueStatus().size());
+        assertEquals(16 * 1000, processed);
+    }
+
+    @Test
+    void messagesEqualToEmptyValueAreCounted() {
+        LongQueue queue = new LongQueue() {
+            @Override
+            public void svc() {
+            }
+        };
+        queue.start("long-queue-empty-value-test", 1, 16);
+
+        // 等于emptyValue的消息也计入处理数
+        assertEquals(0, queue.putq(-1L));
+        assertEquals(-1L, queue.getq(10, -1L));
+        assertEquals(1, queue.getQueueStatus().get(0).getProcessedCount());
+        assertEquals(-1L, queue.getq(10, -1L));
+        assertEquals(1, queue.getQueueStatus().get(0).getProcessedCount());
+
+        // tryGetq能区分超时和任意取值的消息
+        AtomicLong received = new AtomicLong();
+        assertFalse(queue.tryGetq(10, received::set));
+        assertEquals(0, queue.putq(-1L));
+        assertTrue(queue.tryGetq(10, received::set));
+        assertEquals(-1L, received.get());
+        assertEquals(2, queue.getQueueStatus().get(0).getProcessedCount());
+    }
+}
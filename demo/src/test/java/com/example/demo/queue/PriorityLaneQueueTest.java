@@ -0,0 +1,68 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.PriorityLaneQueue;
+import com.example.demo.queue.model.QueueStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriorityLaneQueueTest {
+
+    /**
+     * 放行之前不消费消息,记录处理顺序
+     */
+    static class RecordingQueue extends PriorityLaneQueue<String> {
+        final QueueFixtures.Gate gate = new QueueFixtures.Gate();
+        final CountDownLatch done = new CountDownLatch(110);
+        final List<String> processed = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void svc() {
+            if (!gate.pass()) {
+                return;
+            }
+            while (true) {
+                String message = getq();
+                if (message != null) {
+                    processed.add(message);
+                    done.countDown();
+                }
+            }
+        }
+    }
+
+    @Test
+    void highPriorityLaneIsDrainedFirstWithoutStarvingLowLane() throws Exception {
+        RecordingQueue queue = new RecordingQueue();
+        queue.setLaneWeights(4, 1);
+        queue.start("priority-test", 1, 1000);
+
+        for (int i = 0; i < 100; i++) {
+            queue.putq(1, "low-" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            queue.putq(0, "high-" + i);
+        }
+        List<QueueStatus> status = queue.getQueueStatus();
+        assertEquals(10, status.get(0).getPendingCount());
+        assertEquals(100, status.get(1).getPendingCount());
+
+        queue.gate.open();
+        assertTrue(queue.done.await(10, TimeUnit.SECONDS));
+
+        // 权重4:1,每取4条高优先级消息取1条低优先级消息
+        List<String> head = queue.processed.subList(0, 12);
+        assertEquals(
+                Arrays.asList("high-0", "high-1", "high-2", "high-3", "low-0",
+                        "high-4", "high-5", "high-6", "high-7", "low-1",
+                        "high-8", "high-9"),
+                head);
+        assertEquals(100, queue.getQueueStatus().get(1).getProcessedCount());
+    }
+}
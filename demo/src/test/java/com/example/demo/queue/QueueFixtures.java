@@ -0,0 +1,111 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.Queue;
+import com.example.demo.queue.absqueue.SequenceQueue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 队列测试共用的消费闸门、顺序检查和只消费不处理的队列
+ */
+final class QueueFixtures {
+
+    private QueueFixtures() {
+    }
+
+    /**
+     * 消费闸门,svc先调用pass等待放行,测试检查完积压后调用open
+     */
+    static final class Gate {
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        /**
+         * 等待放行
+         *
+         * @return 等待被中断时返回false,svc应直接退出
+         */
+        boolean pass() {
+            try {
+                latch.await();
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        void open() {
+            latch.countDown();
+        }
+    }
+
+    /**
+     * 记录每个序号最后处理的消息编号,检查同一序号的编号从0开始连续递增
+     */
+    static final class OrderChecker {
+        private final Map<Integer, Integer> lastSeen = new ConcurrentHashMap<>();
+        private final AtomicInteger outOfOrder = new AtomicInteger();
+        private final CountDownLatch done;
+
+        /**
+         * @param expected 预期处理的消息数
+         */
+        OrderChecker(int expected) {
+            this.done = new CountDownLatch(expected);
+        }
+
+        void record(int key, int number) {
+            Integer previous = lastSeen.put(key, number);
+            if (previous == null ? number != 0 : previous + 1 != number) {
+                outOfOrder.incrementAndGet();
+            }
+            done.countDown();
+        }
+
+        boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return done.await(timeout, unit);
+        }
+
+        int getOutOfOrder() {
+            return outOfOrder.get();
+        }
+    }
+
+    /**
+     * 放行之前不消费消息,放行后取出并丢弃
+     */
+    static class GatedQueue<M> extends Queue<M> {
+        final Gate gate = new Gate();
+
+        @Override
+        public void svc() {
+            if (!gate.pass()) {
+                return;
+            }
+            while (true) {
+                getq();
+            }
+        }
+    }
+
+    /**
+     * 放行之前不消费消息,放行后取出并丢弃
+     */
+    static class GatedSequenceQueue<M> extends SequenceQueue<M> {
+        final Gate gate = new Gate();
+
+        @Override
+        public void svc() {
+            if (!gate.pass()) {
+                return;
+            }
+            while (true) {
+                getq();
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.PriorityLaneQueue;
+import com.example.demo.queue.absqueue.Queue;
+import com.example.demo.queue.absqueue.SequenceQueue;
+import com.example.demo.queue.exception.QueueTimeoutException;
+import com.example.demo.queue.jfr.QueueEvents;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueJfrEventTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void hotPathEventsAreRecordedWhenEnabled() throws Exception {
+        QueueFixtures.Gate gate = new QueueFixtures.Gate();
+        CountDownLatch handled = new CountDownLatch(4);
+        Queue<Integer> queue = new Queue<Integer>() {
+            @Override
+            public void svc() {
+                if (!gate.pass()) {
+                    return;
+                }
+                List<Integer> batch = new ArrayList<>();
+                while (true) {
+                    batch.clear();
+                    for (int i = getq(batch, 2, 10); i > 0; i--) {
+                        handled.countDown();
+                    }
+                }
+            }
+        };
+        queue.start("jfr-test", 1, 4);
+
+        // 没有记录开启事件时不创建事件对象
+        assertNull(QueueEvents.beginEnqueue());
+        assertNull(QueueEvents.beginDequeue());
+
+        Path file = directory.resolve("queue.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.demo.queue.Enqueue").withThreshold(Duration.ZERO);
+            recording.enable("com.example.demo.queue.Dequeue").withThreshold(Duration.ZERO);
+            recording.enable("com.example.demo.queue.Reject");
+            recording.enable("com.example.demo.queue.SvcBatch").withThreshold(Duration.ZERO);
+            recording.start();
+
+            for (int i = 0; i < 4; i++) {
+                queue.putqBlocking(i);
+            }
+            assertEquals(-1, queue.putq(4));
+            gate.open();
+            assertTrue(handled.await(5, TimeUnit.SECONDS));
+            TimeUnit.MILLISECONDS.sleep(50);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<String> names = eventNames(file, "jfr-test");
+        // 不等待的putq同样记录Enqueue事件
+        assertEquals(5, names.stream().filter("com.example.demo.queue.Enqueue"::equals).count());
+        assertEquals(1, names.stream().filter("com.example.demo.queue.Reject"::equals).count());
+        assertTrue(names.contains("com.example.demo.queue.Dequeue"));
+        assertTrue(names.contains("com.example.demo.queue.SvcBatch"));
+    }
+
+    @Test
+    void sequenceAndPriorityQueuesRecordEvents() throws Exception {
+        QueueFixtures.Gate gate = new QueueFixtures.Gate();
+        CountDownLatch handled = new CountDownLatch(4);
+        SequenceQueue<Integer> sequenceQueue = new SequenceQueue<Integer>() {
+            @Override
+            public void svc() {
+                if (!gate.pass()) {
+                    return;
+                }
+                List<Integer> batch = new ArrayList<>();
+                while (true) {
+                    batch.clear();
+                    for (int i = getq(batch, 2, 10); i > 0; i--) {
+                        handled.countDown();
+                    }
+                }
+            }
+        };
+        sequenceQueue.start("jfr-sequence-test", 1, 4);
+        QueueFixtures.Gate priorityGate = new QueueFixtures.Gate();
+        PriorityLaneQueue<Integer> priorityQueue = new PriorityLaneQueue<Integer>() {
+            @Override
+            public void svc() {
+                if (priorityGate.pass()) {
+                    getq();
+                }
+            }
+        };
+        priorityQueue.start("jfr-priority-test", 1, 1);
+
+        Path file = directory.resolve("sequence.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.demo.queue.Enqueue").withThreshold(Duration.ZERO);
+            recording.enable("com.example.demo.queue.Dequeue").withThreshold(Duration.ZERO);
+            recording.enable("com.example.demo.queue.Reject");
+            recording.enable("com.example.demo.queue.SvcBatch").withThreshold(Duration.ZERO);
+            recording.start();
+
+            for (int i = 0; i < 3; i++) {
+                sequenceQueue.putqBlocking(1, i);
+            }
+            assertEquals(0, sequenceQueue.putq(1, 3, 10));
+            assertEquals(-1, sequenceQueue.putq(1, 4));
+            assertThrows(QueueTimeoutException.class, () -> sequenceQueue.putq(1, 4, 10));
+            gate.open();
+            assertTrue(handled.await(5, TimeUnit.SECONDS));
+
+            assertEquals(0, priorityQueue.putq(0, 1));
+            assertEquals(-1, priorityQueue.putq(0, 2));
+            priorityGate.open();
+            TimeUnit.MILLISECONDS.sleep(50);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<String> names = eventNames(file, "jfr-sequence-test");
+        assertEquals(6, names.stream().filter("com.example.demo.queue.Enqueue"::equals).count());
+        assertEquals(2, names.stream().filter("com.example.demo.queue.Reject"::equals).count());
+        assertTrue(names.contains("com.example.demo.queue.Dequeue"));
+        assertTrue(names.contains("com.example.demo.queue.SvcBatch"));
+
+        names = eventNames(file, "jfr-priority-test");
+        assertEquals(1, names.stream().filter("com.example.demo.queue.Reject"::equals).count());
+        assertTrue(names.contains("com.example.demo.queue.Dequeue"));
+    }
+
+    @Test
+    void svcBatchIsCommittedOnAck() throws Exception {
+        CountDownLatch acked = new CountDownLatch(1);
+        Queue<Integer> queue = new Queue<Integer>() {
+            @Override
+            public void svc() {
+                List<Integer> batch = new ArrayList<>();
+                while (getq(batch, 4, 10) == 0) {
+                    batch.clear();
+                }
+                // 处理完最后一批后不再批量获取,ack时提交SvcBatch事件
+                ack();
+                acked.countDown();
+            }
+        };
+        queue.start("jfr-ack-test", 1, 4);
+
+        Path file = directory.resolve("ack.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.demo.queue.SvcBatch").withThreshold(Duration.ZERO);
+            recording.start();
+            queue.putq(1);
+            assertTrue(acked.await(5, TimeUnit.SECONDS));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<String> names = eventNames(file, "jfr-ack-test");
+        assertEquals(1, names.stream().filter("com.example.demo.queue.SvcBatch"::equals).count());
+    }
+
+    private static List<String> eventNames(Path file, String queueName) throws Exception {
+        List<String> names = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            if (queueName.equals(event.getString("queueName"))) {
+                names.add(event.getEventType().getName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.Queue;
+import com.example.demo.queue.absqueue.ThreadSequenceQueue;
+import com.example.demo.queue.model.QueueStatisticsMgr;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueMXBeanTest {
+
+    @Test
+    void queueIsExposedAndCanBePausedOverJmx() throws Exception {
+        CountDownLatch handled = new CountDownLatch(20);
+        Queue<Integer> queue = new Queue<Integer>() {
+            @Override
+            public void svc() {
+                while (true) {
+                    if (getq() != null) {
+                        handled.countDown();
+                    }
+                }
+            }
+        };
+        queue.start("jmx-test", 2, 100);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = QueueStatisticsMgr.objectName("jmx-test");
+        assertTrue(server.isRegistered(name));
+        assertEquals(2, server.getAttribute(name, "ThreadCount"));
+        assertEquals(100, server.getAttribute(name, "Capacity"));
+
+        server.invoke(name, "pause", null, null);
+        assertEquals(true, server.getAttribute(name, "Paused"));
+        // 工作线程可能各自已在等待中取走一条消息
+        for (int i = 0; i < 20; i++) {
+            queue.putq(i);
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertTrue((Long) server.getAttribute(name, "QueueSize") >= 18);
+        assertArrayEquals(new int[]{queue.getQueueSize()}, (int[]) server.getAttribute(name, "LaneDepths"));
+        assertEquals(20L, server.getAttribute(name, "ReceivedCount"));
+
+        server.invoke(name, "resume", null, null);
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertEquals(0L, server.getAttribute(name, "QueueSize"));
+        assertEquals(false, server.invoke(name, "resize", new Object[]{4}, new String[]{int.class.getName()}));
+        assertEquals(0, ((long[]) server.getAttribute(name, "WaitTimePercentiles")).length);
+    }
+
+    @Test
+    void threadSequenceQueueHonoursPauseAndRejectsResize() throws Exception {
+        CountDownLatch handled = new CountDownLatch(10);
+        ThreadSequenceQueue<Integer> queue = new ThreadSequenceQueue<Integer>() {
+            @Override
+            public void svc() {
+                while (true) {
+                    if (getq() != null) {
+                        handled.countDown();
+                    }
+                }
+            }
+        };
+        queue.start("jmx-thread-sequence-test", 1, 100);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = QueueStatisticsMgr.objectName("jmx-thread-sequence-test");
+        server.invoke(name, "pause", null, null);
+        assertEquals(true, server.getAttribute(name, "Paused"));
+        // 工作线程可能已在等待中取走一条消息
+        for (int i = 0; i < 10; i++) {
+            queue.putq(i, i);
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertTrue(handled.getCount() >= 9);
+
+        // 线程队列不是由单个线程独占消费,不支持调整线程数
+        assertEquals(false, server.invoke(name, "resize", new Object[]{2}, new String[]{int.class.getName()}));
+        server.invoke(name, "resume", null, null);
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void workerUtilizationIsReportedWithoutHotKeyTracking() throws Exception {
+        CountDownLatch handled = new CountDownLatch(10);
+        Queue<Integer> queue = new Queue<Integer>() {
+            @Override
+            public void svc() {
+                while (true) {
+                    if (getq() != null) {
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(10);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        handled.countDown();
+                    }
+                }
+            }
+        };
+        queue.start("jmx-utilization-test", 1, 100);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = QueueStatisticsMgr.objectName("jmx-utilization-test");
+
+        QueueStatisticsMgr.getInstance().getStatistic("jmx-utilization-test").makeSnap();
+        for (int i = 0; i < 10; i++) {
+            queue.putq(i);
+        }
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        // 工作线程回到getq后才累计最后一条消息的处理时间
+        TimeUnit.MILLISECONDS.sleep(20);
+        QueueStatisticsMgr.getInstance().getStatistic("jmx-utilization-test").makeSnap();
+        double utilization = (Double) server.getAttribute(name, "WorkerUtilization");
+        assertTrue(utilization > 0.2 && utilization <= 1.0, "utilization: " + utilization);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.config.QueueWaitStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueWaitStrategyTest {
+
+    @Test
+    void takeAndPollReceiveMessagesPublishedWhileWaiting() throws Exception {
+        for (QueueWaitStrategy strategy : QueueWaitStrategy.values()) {
+            BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+            queue.offer(1);
+            assertEquals(Integer.valueOf(1), strategy.take(queue), strategy.name());
+            assertEquals(null, strategy.poll(queue, 0, TimeUnit.MILLISECONDS), strategy.name());
+
+            publishLater(queue, 20, 2);
+            assertEquals(Integer.valueOf(2), strategy.take(queue), strategy.name());
+            publishLater(queue, 20, 3);
+            assertEquals(Integer.valueOf(3), strategy.poll(queue, 5, TimeUnit.SECONDS), strategy.name());
+        }
+    }
+
+    @Test
+    void pollReturnsNullAfterTimeout() throws Exception {
+        for (QueueWaitStrategy strategy : QueueWaitStrategy.values()) {
+            BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+            long start = System.nanoTime();
+            assertNull(strategy.poll(queue, 30, TimeUnit.MILLISECONDS), strategy.name());
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis >= 25, strategy.name() + " 提前返回: " + elapsedMillis);
+            assertTrue(elapsedMillis < 2000, strategy.name() + " 超时未返回: " + elapsedMillis);
+        }
+    }
+
+    @Test
+    void takeAndPollStopWhenInterrupted() throws Exception {
+        for (QueueWaitStrategy strategy : QueueWaitStrategy.values()) {
+            assertInterrupted(strategy, () -> strategy.take(new LinkedBlockingQueue<>()));
+            assertInterrupted(strategy, () -> strategy.poll(new LinkedBlockingQueue<>(), 1, TimeUnit.MINUTES));
+        }
+    }
+
+    @Test
+    void drainLingersForMoreMessagesUpToLimit() throws Exception {
+        for (QueueWaitStrategy strategy : QueueWaitStrategy.values()) {
+            BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+            List<Integer> buffer = new ArrayList<>();
+
+            // 超时为0时只取已有消息
+            queue.offer(1);
+            queue.offer(2);
+            assertEquals(2, strategy.drain(queue, buffer, 10, 0, TimeUnit.MILLISECONDS), strategy.name());
+
+            // 等待期间到达的消息也会取走,取满maxElements立即返回
+            buffer.clear();
+            queue.offer(1);
+            publishLater(queue, 20, 2, 3);
+            long start = System.nanoTime();
+            assertEquals(2, strategy.drain(queue, buffer, 2, 5, TimeUnit.SECONDS), strategy.name());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), strategy.name());
+            assertEquals(Integer.valueOf(1), buffer.get(0));
+            assertEquals(Integer.valueOf(2), buffer.get(1));
+
+            // 不足maxElements时等到超时返回已取到的消息
+            buffer.clear();
+            assertEquals(Integer.valueOf(3), strategy.take(queue));
+            queue.offer(4);
+            start = System.nanoTime();
+            assertEquals(1, strategy.drain(queue, buffer, 10, 30, TimeUnit.MILLISECONDS), strategy.name());
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(25), strategy.name());
+        }
+    }
+
+    private interface Waiter {
+        Object await() throws InterruptedException;
+    }
+
+    private static void assertInterrupted(QueueWaitStrategy strategy, Waiter waiter) throws Exception {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch waiting = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            waiting.countDown();
+            try {
+                waiter.await();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        thread.start();
+        waiting.await();
+        Thread.sleep(20);
+        thread.interrupt();
+        thread.join(2000);
+        assertFalse(thread.isAlive(), strategy.name() + " 中断后未返回");
+        assertTrue(failure.get() instanceof InterruptedException, strategy.name() + ": " + failure.get());
+    }
+
+    /**
+     * 在同一个线程中每隔delayMillis依次放入消息,保证消息顺序
+     */
+    private static void publishLater(BlockingQueue<Integer> queue, long delayMillis, int... messages) {
+        Thread thread = new Thread(() -> {
+            try {
+                for (int message : messages) {
+                    Thread.sleep(delayMillis);
+                    queue.offer(message);
+                }
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.Queue;
+import com.example.demo.queue.config.QueueWaitStrategy;
+import com.example.demo.queue.config.QueueWorkerMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueWorkerModeTest {
+
+    @Test
+    void virtualModeProcessesMessagesOnNamedWorkers() throws Exception {
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        Set<Boolean> virtualFlags = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(200);
+        Queue<Integer> queue = new Queue<Integer>() {
+            @Override
+            public void svc() {
+                while (true) {
+                    Integer message = getq();
+                    if (message != null) {
+                        threadNames.add(Thread.currentThread().getName());
+                        virtualFlags.add(isVirtual(Thread.currentThread()));
+                        done.countDown();
+                    }
+                }
+            }
+        };
+        queue.setWorkerMode(QueueWorkerMode.VIRTUAL);
+        queue.setWaitStrategy(QueueWaitStrategy.YIELDING);
+        queue.start("worker-mode-test", 4, 1000);
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(0, queue.putq(i));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (String name : threadNames) {
+            assertTrue(name.startsWith(QueueWorkerMode.THREAD_NAME_PREFIX + "worker-mode-test-"), name);
+        }
+
+        if (QueueWorkerMode.isVirtualThreadSupported()) {
+            // 虚拟线程不能独占载体线程自旋
+            assertEquals(QueueWorkerMode.VIRTUAL, QueueWorkerMode.VIRTUAL.effective());
+            assertEquals(QueueWaitStrategy.BLOCKING, queue.getWaitStrategy());
+            assertFalse(virtualFlags.contains(Boolean.FALSE));
+        } else {
+            // 低版本JDK退化为平台线程池,等待策略保持不变
+            assertEquals(QueueWorkerMode.PLATFORM, QueueWorkerMode.VIRTUAL.effective());
+            assertEquals(QueueWaitStrategy.YIELDING, queue.getWaitStrategy());
+            assertFalse(virtualFlags.contains(Boolean.TRUE));
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.absqueue.SequenceQueue;
+import com.example.demo.queue.codec.SerializableCodec;
+import com.example.demo.queue.config.QueueStorageType;
+import com.example.demo.queue.exception.QueueException;
+import com.example.demo.queue.exception.QueueTimeoutException;
+import com.example.demo.queue.store.JournalRecord;
+import com.example.demo.queue.store.WriteAheadJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceRepartitionTest {
+
+    private static final int KEYS = 256;
+    private static final int MESSAGES_PER_KEY = 200;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 消息为{序号, 编号},检查同一序号的编号顺序
+     */
+    static class OrderCheckingQueue extends SequenceQueue<int[]> {
+        final QueueFixtures.OrderChecker checker = new QueueFixtures.OrderChecker(KEYS * MESSAGES_PER_KEY);
+
+        @Override
+        public void svc() {
+            while (true) {
+                int[] message = getq();
+                if (message != null) {
+                    checker.record(message[0], message[1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void messagesStayInOrderWhileLanesGrowAndShrink() throws Exception {
+        OrderCheckingQueue queue = new OrderCheckingQueue();
+        queue.setMaxThreadCount(6);
+        queue.start("repartition-test", 2, KEYS * MESSAGES_PER_KEY);
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < MESSAGES_PER_KEY; i++) {
+                for (int key = 0; key < KEYS; key++) {
+                    queue.putq(key, new int[]{key, i});
+                }
+            }
+        });
+        producer.start();
+
+        assertTrue(queue.repartition(6));
+        while (queue.isRepartitioning()) {
+            Thread.sleep(1);
+        }
+        assertEquals(6, queue.getQueueStatus().size());
+        assertTrue(queue.repartition(3));
+        assertThrows(IllegalArgumentException.class, () -> queue.repartition(7));
+
+        producer.join();
+        assertTrue(queue.checker.await(30, TimeUnit.SECONDS));
+        assertEquals(0, queue.checker.getOutOfOrder());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.isRepartitioning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(queue.isRepartitioning());
+        assertEquals(3, queue.getQueueStatus().size());
+    }
+
+    @Test
+    void singleProducerLanesAreNotSharedWithRepartitioning() throws Exception {
+        // 可以重新分区时SPSC_RING退化为MPSC_RING,迁移过程中多个线程写入线程队列也不会丢消息
+        OrderCheckingQueue elastic = new OrderCheckingQueue();
+        elastic.setStorageType(QueueStorageType.SPSC_RING);
+        elastic.setMaxThreadCount(4);
+        elastic.start("repartition-spsc-test", 2, KEYS * MESSAGES_PER_KEY);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < MESSAGES_PER_KEY; i++) {
+                for (int key = 0; key < KEYS; key++) {
+                    elastic.putq(key, new int[]{key, i});
+                }
+            }
+        });
+        producer.start();
+        assertTrue(elastic.repartition(4));
+        producer.join();
+        assertTrue(elastic.checker.await(30, TimeUnit.SECONDS));
+        assertEquals(0, elastic.checker.getOutOfOrder());
+
+        // 线程队列数固定时保留SPSC_RING,不允许增加生产线程
+        QueueFixtures.GatedSequenceQueue<Integer> fixed = new QueueFixtures.GatedSequenceQueue<>();
+        fixed.setStorageType(QueueStorageType.SPSC_RING);
+        fixed.start("repartition-spsc-fixed-test", 2, 16);
+        assertThrows(QueueException.class, () -> fixed.repartition(1));
+        assertFalse(fixed.resize(1));
+        assertThrows(QueueException.class, () -> fixed.putqDelayed(1, 1, 10, TimeUnit.MILLISECONDS));
+        fixed.gate.open();
+    }
+
+    @Test
+    void blockedPutsDoNotStallRepartitioning() throws Exception {
+        QueueFixtures.GatedSequenceQueue<Integer> queue = new QueueFixtures.GatedSequenceQueue<>();
+        queue.start("repartition-blocked-put-test", 3, 16);
+
+        // 序号0所在的线程队列写满,阻塞的putq一直在等待空间
+        for (int i = 0; i < 16; i++) {
+            assertEquals(0, queue.putq(0, i));
+        }
+        Thread producer = new Thread(() -> queue.putqBlocking(0, 16));
+        producer.start();
+        Thread.sleep(50);
+        assertTrue(producer.isAlive());
+
+        // 缩容只从被移除的线程队列迁出分区,不需要等待已满的线程队列
+        Thread resize = new Thread(() -> assertTrue(queue.repartition(2)));
+        resize.start();
+        resize.join(2000);
+        assertFalse(resize.isAlive());
+
+        queue.gate.open();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.isRepartitioning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // 暂停消费时迁移标记可能放不进线程队列,直接返回false
+        queue.pause();
+        assertFalse(queue.repartition(1));
+        queue.resume();
+        assertTrue(queue.repartition(1));
+    }
+
+    @Test
+    void heldMessagesAreJournaledAndBoundedByTargetLane() throws Exception {
+        QueueFixtures.GatedSequenceQueue<Integer> queue = new QueueFixtures.GatedSequenceQueue<>();
+        queue.enableJournal(directory.toString(), 1024 * 1024, 5, true);
+        queue.setMaxThreadCount(2);
+        queue.start("repartition-hold-test", 1, 8);
+
+        // 扩容后分区0-511迁往线程队列1,旧线程队列不消费时这些分区的消息一直暂存
+        assertTrue(queue.repartition(2));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(0, queue.putq(5, i));
+        }
+        assertEquals(-1, queue.putq(5, 8));
+        assertThrows(QueueTimeoutException.class, () -> queue.putq(5, 8, 20));
+
+        // 暂存的消息已写入预写日志
+        WriteAheadJournal<Integer> reopened = new WriteAheadJournal<>(directory.resolve("repartition-hold-test"),
+                1024 * 1024, 5, false, new SerializableCodec<>());
+        List<JournalRecord<Integer>> recovered = reopened.recover();
+        reopened.close();
+        assertEquals(8, recovered.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(5, recovered.get(i).getKey());
+            assertEquals(Integer.valueOf(i), recovered.get(i).getMessage());
+        }
+
+        // 迁移完成后暂存的消息转入新线程队列,又可以继续添加
+        queue.gate.open();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.isRepartitioning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(queue.isRepartitioning());
+        assertEquals(0, queue.putq(5, 8, 1000));
+    }
+}
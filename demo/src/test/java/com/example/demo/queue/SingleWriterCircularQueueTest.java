@@ -0,0 +1,49 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.model.SingleWriterCircularQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleWriterCircularQueueTest {
+
+    @Test
+    void readersSeeContiguousSnapshotsWhileWriterOverwrites() throws Exception {
+        SingleWriterCircularQueue<Long> queue = new SingleWriterCircularQueue<>(6);
+        assertEquals(8, queue.capacity());
+        for (long i = 0; i < 10; i++) {
+            queue.add(i);
+        }
+        assertEquals(Arrays.asList(2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), queue.snapshot());
+        assertEquals(9L, queue.latest());
+
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[2];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                for (int n = 0; n < 20000 && failure.get() == null; n++) {
+                    List<Long> snapshot = queue.snapshot();
+                    for (int i = 1; i < snapshot.size(); i++) {
+                        if (snapshot.get(i) != snapshot.get(i - 1) + 1) {
+                            failure.set("不连续的快照: " + snapshot);
+                        }
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        for (long i = 10; i < 500000; i++) {
+            queue.add(i);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        assertEquals(8, queue.size());
+        assertEquals(499999L, queue.latest());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.buffer.SpillingBlockingQueue;
+import com.example.demo.queue.codec.MessageCodec;
+import com.example.demo.queue.codec.SerializableCodec;
+import com.example.demo.queue.exception.QueueException;
+import com.example.demo.queue.store.SpillLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillingBlockingQueueTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void overflowIsSpilledAndReadBackInOrder() throws Exception {
+        SpillLog<String> spillLog = new SpillLog<>(directory, 1024, 1024 * 1024, new SerializableCodec<>());
+        SpillingBlockingQueue<String> queue = new SpillingBlockingQueue<>(new LinkedBlockingQueue<>(4), spillLog);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(queue.offer("message-" + i));
+        }
+        assertEquals(1000, queue.size());
+        assertTrue(queue.getSpilledCount() > 0);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("message-" + i, queue.take());
+        }
+        assertNull(queue.poll());
+        assertEquals(0, queue.getSpilledCount());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void offerFailsWhenSpillLimitIsReached() throws Exception {
+        SpillLog<String> spillLog = new SpillLog<>(directory, 256, 256, new SerializableCodec<>());
+        SpillingBlockingQueue<String> queue = new SpillingBlockingQueue<>(new LinkedBlockingQueue<>(1), spillLog);
+
+        int accepted = 0;
+        while (queue.offer("message-" + accepted)) {
+            accepted++;
+        }
+        assertTrue(accepted > 1);
+        assertEquals("message-0", queue.poll());
+        queue.close();
+    }
+
+    @Test
+    void codecFailuresRejectOrSkipSingleMessages() throws Exception {
+        // "unencodable"无法编码,"undecodable"写入后无法读回
+        MessageCodec<String> codec = new MessageCodec<String>() {
+            @Override
+            public byte[] encode(String message) {
+                if (message.equals("unencodable")) {
+                    throw new QueueException("编码失败");
+                }
+                return message.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                String message = new String(bytes, StandardCharsets.UTF_8);
+                if (message.equals("undecodable")) {
+                    throw new QueueException("解码失败");
+                }
+                return message;
+            }
+        };
+        SpillLog<String> spillLog = new SpillLog<>(directory, 1024, 1024 * 1024, codec);
+        SpillingBlockingQueue<String> queue = new SpillingBlockingQueue<>(new LinkedBlockingQueue<>(1), spillLog);
+
+        assertTrue(queue.offer("first"));
+        assertFalse(queue.offer("unencodable"));
+        assertThrows(QueueException.class, () -> queue.put("unencodable"));
+        assertTrue(queue.offer("undecodable"));
+        assertTrue(queue.offer("last"));
+
+        assertEquals("first", queue.take());
+        assertEquals("last", queue.take());
+        assertNull(queue.poll());
+        assertEquals(0, queue.getSpilledCount());
+        queue.close();
+    }
+}
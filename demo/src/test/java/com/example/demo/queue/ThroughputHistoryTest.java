@@ -0,0 +1,69 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.model.QueueSnapshot;
+import com.example.demo.queue.model.QueueStatistics;
+import com.example.demo.queue.model.ThroughputHistory;
+import com.example.demo.queue.model.TimeSeriesRing;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThroughputHistoryTest {
+
+    @Test
+    void samplesAreRolledUpIntoCoarserLevels() {
+        ThroughputHistory history = new ThroughputHistory(5, 30);
+        assertEquals(3, history.levels());
+        assertEquals(10, history.resolutionSeconds(1));
+        assertEquals(60, history.resolutionSeconds(2));
+
+        // 5秒一个采样,共10分钟
+        for (int i = 0; i < 120; i++) {
+            history.add(i * 5000L, (i + 1) * 5000L, 50, 40);
+        }
+        TimeSeriesRing finest = history.finest();
+        assertEquals(30, finest.size());
+        assertEquals(10.0, finest.ratePerSecond(QueueStatistics.RECEIVED_COLUMN), 1e-9);
+
+        TimeSeriesRing tenSeconds = history.level(1);
+        assertEquals(60, tenSeconds.size());
+        assertEquals(100, tenSeconds.value(0, QueueStatistics.RECEIVED_COLUMN));
+        assertEquals(10000L, tenSeconds.endTime(0));
+
+        TimeSeriesRing minutes = history.coarsest();
+        assertEquals(10, minutes.size());
+        assertEquals(120 * 40, minutes.sum(QueueStatistics.HANDLED_COLUMN));
+        assertEquals(8.0, minutes.ratePerSecond(QueueStatistics.HANDLED_COLUMN), 1e-9);
+
+        assertEquals(1, new ThroughputHistory(60, 30).levels());
+    }
+
+    @Test
+    void readingSnapshotsDoesNotDrainThem() {
+        QueueStatistics statistics = new QueueStatistics();
+        statistics.configureHistory(5, 4);
+        for (int i = 0; i < 6; i++) {
+            statistics.addReceived(i);
+            statistics.makeSnap();
+        }
+        List<QueueSnapshot> first = statistics.getSnaps();
+        List<QueueSnapshot> second = statistics.getSnaps();
+        assertEquals(4, first.size());
+        assertEquals(first, second);
+        assertEquals(5, first.get(3).getReceivedCount());
+        assertSame(first.get(3), statistics.getLatestSnap());
+
+        // 快照队列容量取整为8,读取时只返回最近historySize个
+        statistics.configureHistory(5, 5);
+        for (int i = 0; i < 10; i++) {
+            statistics.addReceived(i);
+            statistics.makeSnap();
+        }
+        List<QueueSnapshot> trimmed = statistics.getSnaps();
+        assertEquals(5, trimmed.size());
+        assertEquals(5, trimmed.get(0).getReceivedCount());
+        assertEquals(9, trimmed.get(4).getReceivedCount());
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.model.TimeSeriesRing;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSeriesRingTest {
+
+    @Test
+    void windowAggregatesMatchRecomputedValues() {
+        TimeSeriesRing ring = new TimeSeriesRing(7, 2);
+        assertEquals(0, ring.min(0));
+        assertEquals(0, ring.ratePerSecond(0));
+
+        Random random = new Random(42);
+        long[][] history = new long[2][1000];
+        for (int i = 0; i < 1000; i++) {
+            history[0][i] = random.nextInt(100);
+            history[1][i] = random.nextInt(1000) - 500;
+            ring.add(i * 1000L, (i + 1) * 1000L, history[0][i], history[1][i]);
+
+            int from = Math.max(0, i - 6);
+            assertEquals(i - from + 1, ring.size());
+            for (int column = 0; column < 2; column++) {
+                long sum = 0;
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (int j = from; j <= i; j++) {
+                    sum += history[column][j];
+                    min = Math.min(min, history[column][j]);
+                    max = Math.max(max, history[column][j]);
+                }
+                assertEquals(sum, ring.sum(column));
+                assertEquals(min, ring.min(column));
+                assertEquals(max, ring.max(column));
+                assertEquals(sum / (double) (i - from + 1), ring.ratePerSecond(column), 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.demo.queue;
+
+import com.example.demo.queue.buffer.JournaledBlockingQueue;
+import com.example.demo.queue.codec.SerializableCodec;
+import com.example.demo.queue.exception.QueueException;
+import com.example.demo.queue.store.JournalRecord;
+import com.example.demo.queue.store.WriteAheadJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void unackedMessagesAreRecoveredInOrder() throws Exception {
+        WriteAheadJournal<String> journal = new WriteAheadJournal<>(directory, 1024, 5, false, new SerializableCodec<>());
+        assertTrue(journal.recover().isEmpty());
+        JournaledBlockingQueue<String> queue = new JournaledBlockingQueue<>(new LinkedBlockingQueue<>(), journal, 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(queue.offer(i % 3, "message-" + i));
+        }
+        // 处理并确认前40条
+        for (int i = 0; i < 40; i++) {
+            assertEquals("message-" + i, queue.poll());
+        }
+        journal.ackTaken();
+        assertEquals(60, journal.getOutstanding());
+        journal.close();
+
+        WriteAheadJournal<String> reopened = new WriteAheadJournal<>(directory, 1024, 5, false, new SerializableCodec<>());
+        List<JournalRecord<String>> recovered = reopened.recover();
+        assertEquals(60, recovered.size());
+        for (int i = 0; i < 60; i++) {
+            JournalRecord<String> record = recovered.get(i);
+            assertEquals("message-" + (i + 40), record.getMessage());
+            assertEquals((i + 40) % 3, record.getKey());
+        }
+        reopened.close();
+    }
+
+    @Test
+    void fullyAckedSegmentsAreDeleted() throws Exception {
+        WriteAheadJournal<String> journal = new WriteAheadJournal<>(directory, 512, 1, true, new SerializableCodec<>());
+        journal.recover();
+        JournaledBlockingQueue<String> queue = new JournaledBlockingQueue<>(new LinkedBlockingQueue<>(), journal, 0);
+
+        for (int i = 0; i < 200; i++) {
+            assertTrue(queue.offer("message-" + i));
+            assertEquals("message-" + i, queue.poll());
+            journal.ackTaken();
+        }
+        assertEquals(0, journal.getOutstanding());
+        // 强制刷盘一次,让刷盘线程删除已封存的段
+        queue.offer("last");
+        journal.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            // 只剩当前写入段的数据文件和确认文件
+            assertEquals(2, files.count());
+        }
+        WriteAheadJournal<String> reopened = new WriteAheadJournal<>(directory, 512, 1, false, new SerializableCodec<>());
+        List<JournalRecord<String>> recovered = reopened.recover();
+        assertEquals(1, recovered.size());
+        assertEquals("last", recovered.get(0).getMessage());
+        reopened.close();
+    }
+
+    @Test
+    void unencodableMessagesAreRejectedWithoutWaiting() throws Exception {
+        WriteAheadJournal<Object> journal = new WriteAheadJournal<>(directory, 1024, 5, false, new SerializableCodec<>());
+        journal.recover();
+        JournaledBlockingQueue<Object> queue = new JournaledBlockingQueue<>(new LinkedBlockingQueue<>(), journal, 0);
+
+        // Object没有实现Serializable,Java序列化编码失败
+        assertEquals(-1, journal.append(0, new Object()));
+        assertFalse(queue.offer(new Object()));
+        long start = System.nanoTime();
+        assertThrows(QueueException.class, () -> queue.offer(new Object(), 5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertThrows(QueueException.class, () -> queue.put(new Object()));
+
+        assertTrue(queue.offer("message"));
+        assertEquals("message", queue.poll());
+        assertTrue(queue.isEmpty());
+        journal.close();
+    }
+
+    @Test
+    void invalidAcksDoNotReleaseOtherSegments() throws Exception {
+        WriteAheadJournal<String> journal = new WriteAheadJournal<>(directory, 512, 1, false, new SerializableCodec<>());
+        journal.recover();
+        long[] ids = new long[100];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = journal.append(0, "message-" + i);
+        }
+        for (int i = 0; i < 90; i++) {
+            journal.ack(ids[i]);
+        }
+        // 等刷盘线程删除已全部确认的段
+        Thread.sleep(50);
+        // 重复确认、已删除段的确认和不存在的ID都不能减少剩余段的未确认数
+        for (int i = 0; i < 90; i++) {
+            journal.ack(ids[i]);
+        }
+        journal.ack(0);
+        journal.ack(ids[ids.length - 1] + 100);
+        assertEquals(10, journal.getOutstanding());
+        Thread.sleep(50);
+        journal.close();
+
+        WriteAheadJournal<String> reopened = new WriteAheadJournal<>(directory, 512, 1, false, new SerializableCodec<>());
+        List<JournalRecord<String>> recovered = reopened.recover();
+        assertEquals(10, recovered.size());
+        assertEquals("message-90", recovered.get(0).getMessage());
+        reopened.close();
+    }
+}